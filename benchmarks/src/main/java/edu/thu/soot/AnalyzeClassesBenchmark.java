@@ -0,0 +1,50 @@
+package edu.thu.soot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 索引提取基准：从加载好的Scene出发执行 analyzeClasses
+ * 每次调用前重新初始化Soot，因此测量结果包含方法体的构建
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Dorg.slf4j.simpleLogger.defaultLogLevel=warn",
+        "--add-opens", "java.base/java.lang=ALL-UNNAMED"})
+public class AnalyzeClassesBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    int methods;
+
+    @Param({"1", "4"})
+    int threads;
+
+    private SootCodeAnalyzer analyzer;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        SyntheticProject project = SyntheticProject.create(methods);
+        analyzer = new SootCodeAnalyzer(project.getClassesDir().toString(),
+                Files.createTempDirectory("code-index-bench").toString());
+        analyzer.setGenerateIndex(true);
+        analyzer.setThreads(threads);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        analyzer.clearIndex();
+        analyzer.initializeSoot();
+    }
+
+    @Benchmark
+    public int analyzeClasses() {
+        analyzer.analyzeClasses();
+        return analyzer.getMethodDefinitions().size();
+    }
+}
@@ -0,0 +1,49 @@
+package edu.thu.soot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 调用图生成基准：CHA、RTA、VTA与SPARK的完整流程，包括加载类、收集行号、构建调用图和保存结果
+ * threads 参数控制收集行号的线程数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Dorg.slf4j.simpleLogger.defaultLogLevel=warn",
+        "--add-opens", "java.base/java.lang=ALL-UNNAMED"})
+public class CallGraphBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    int methods;
+
+    @Param({"CHA", "RTA", "VTA", "SPARK"})
+    String algorithm;
+
+    @Param({"1", "4"})
+    int threads;
+
+    private String classesDir;
+    private String outputDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        classesDir = SyntheticProject.create(methods).getClassesDir().toString();
+        outputDir = Files.createTempDirectory("code-index-bench").toString();
+    }
+
+    @Benchmark
+    public boolean generate() {
+        CallGraphGenerator generator = new CallGraphGenerator(classesDir, outputDir, algorithm);
+        generator.addEntryPoint("bench.Main", "main");
+        generator.setThreads(threads);
+        // 每次都重新收集行号，不复用上一次迭代的缓存
+        generator.setLineNumberCache(false);
+        return generator.generate();
+    }
+}
@@ -0,0 +1,55 @@
+package edu.thu.soot;
+
+import org.openjdk.jmh.annotations.*;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jimple输出基准：方法体只构建一次，每次调用把所有应用方法的Jimple写出一遍
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Dorg.slf4j.simpleLogger.defaultLogLevel=warn",
+        "--add-opens", "java.base/java.lang=ALL-UNNAMED"})
+public class JimpleBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    int methods;
+
+    private SootCodeAnalyzer analyzer;
+    private final List<SootMethod> bodies = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticProject project = SyntheticProject.create(methods);
+        analyzer = new SootCodeAnalyzer(project.getClassesDir().toString(),
+                Files.createTempDirectory("code-index-bench").toString());
+        analyzer.initializeSoot();
+
+        for (SootClass sootClass : Scene.v().getApplicationClasses()) {
+            for (SootMethod method : sootClass.getMethods()) {
+                if (method.isConcrete()) {
+                    method.retrieveActiveBody();
+                    bodies.add(method);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void emitJimple() {
+        for (SootMethod method : bodies) {
+            analyzer.generateJimpleIR(method);
+        }
+    }
+}
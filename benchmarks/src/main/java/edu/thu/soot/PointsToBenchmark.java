@@ -0,0 +1,46 @@
+package edu.thu.soot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指针分析结果提取基准：SPARK只在准备阶段运行一次，每次调用从PAG中提取全部变量、字段的指向集合并保存
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Dorg.slf4j.simpleLogger.defaultLogLevel=warn",
+        "--add-opens", "java.base/java.lang=ALL-UNNAMED"})
+public class PointsToBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    int methods;
+
+    @Param({"1", "4"})
+    int ptaThreads;
+
+    private SootCodeAnalyzer analyzer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticProject project = SyntheticProject.create(methods);
+        analyzer = new SootCodeAnalyzer(project.getClassesDir().toString(),
+                Files.createTempDirectory("code-index-bench").toString());
+        analyzer.setGeneratePointsToAnalysis(true);
+        analyzer.setPtaThreads(ptaThreads);
+        analyzer.initializeSoot();
+
+        // 第一次调用会运行SPARK构建调用图和PAG
+        analyzer.generatePointsToAnalysis();
+    }
+
+    @Benchmark
+    public void extractPointsTo() {
+        analyzer.generatePointsToAnalysis();
+    }
+}
@@ -0,0 +1,45 @@
+package edu.thu.soot;
+
+import edu.thu.soot.SootCodeAnalyzer.IndexFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 索引保存基准：索引只构建一次，每次调用把它完整写出一遍
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Dorg.slf4j.simpleLogger.defaultLogLevel=warn",
+        "--add-opens", "java.base/java.lang=ALL-UNNAMED"})
+public class SaveIndexBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    int methods;
+
+    @Param({"JSON", "BINARY"})
+    IndexFormat format;
+
+    private SootCodeAnalyzer analyzer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticProject project = SyntheticProject.create(methods);
+        analyzer = new SootCodeAnalyzer(project.getClassesDir().toString(),
+                Files.createTempDirectory("code-index-bench").toString());
+        analyzer.setGenerateIndex(true);
+        analyzer.setIndexFormat(format);
+        analyzer.initializeSoot();
+        analyzer.analyzeClasses();
+    }
+
+    @Benchmark
+    public void saveIndexResults() {
+        analyzer.saveIndexResults();
+    }
+}
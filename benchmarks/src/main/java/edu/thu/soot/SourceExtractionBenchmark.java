@@ -0,0 +1,62 @@
+package edu.thu.soot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 方法源码提取基准
+ * cold 系列每次调用都新建提取器，测量从解析源码开始的完整耗时；warm 复用已缓存模型的提取器
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+public class SourceExtractionBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1000", "10000", "50000"})
+    int methods;
+
+    private String sourceDir;
+    private List<String> signatures;
+    private SpoonMethodSourceExtractor warmExtractor;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticProject project = SyntheticProject.create(methods);
+        sourceDir = project.getSourceDir().toString();
+        signatures = project.signatures(BATCH_SIZE);
+
+        warmExtractor = new SpoonMethodSourceExtractor(sourceDir);
+        for (String signature : signatures) {
+            warmExtractor.getMethodSource(signature);
+        }
+    }
+
+    @Benchmark
+    public String singleCold() {
+        return new SpoonMethodSourceExtractor(sourceDir).getMethodSource(signatures.get(0));
+    }
+
+    @Benchmark
+    public int batchCold() {
+        SpoonMethodSourceExtractor extractor = new SpoonMethodSourceExtractor(sourceDir);
+        int length = 0;
+        for (String signature : signatures) {
+            length += extractor.getMethodSource(signature).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public String singleWarm() {
+        next = (next + 1) % signatures.size();
+        return warmExtractor.getMethodSource(signatures.get(next));
+    }
+}
@@ -0,0 +1,166 @@
+package edu.thu.soot;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试使用的合成Java项目
+ * 按方法数生成源码并用javac编译，生成结果缓存在工作目录中，同样规模的项目只生成一次
+ *
+ * 每个类包含 {@value #METHODS_PER_CLASS} 个方法（含构造函数），方法之间链式调用，
+ * 通过接口调用串联下一个类，因此从 Main.main 出发整个项目都可达，CHA和SPARK都能得到完整的调用图
+ */
+final class SyntheticProject {
+    static final int METHODS_PER_CLASS = 20;
+    private static final int CLASSES_PER_PACKAGE = 100;
+
+    // 链式调用的普通方法数：去掉 execute 和构造函数
+    private static final int CHAIN_METHODS = METHODS_PER_CLASS - 2;
+
+    private static final String COMPLETE_MARKER = ".complete";
+
+    private final Path sourceDir;
+    private final Path classesDir;
+    private final int classCount;
+
+    private SyntheticProject(Path root, int classCount) {
+        this.sourceDir = root.resolve("src");
+        this.classesDir = root.resolve("classes");
+        this.classCount = classCount;
+    }
+
+    /**
+     * 获取指定方法数的合成项目，不存在时生成并编译
+     * 工作目录由系统属性 bench.workdir 指定，默认为 target/synthetic-projects
+     */
+    static synchronized SyntheticProject create(int methods) throws IOException {
+        int classCount = Math.max(1, methods / METHODS_PER_CLASS);
+        Path workDir = Paths.get(System.getProperty("bench.workdir", "target/synthetic-projects"));
+        SyntheticProject project = new SyntheticProject(workDir.resolve("methods-" + methods).toAbsolutePath(), classCount);
+        if (!Files.exists(project.classesDir.resolve(COMPLETE_MARKER))) {
+            project.generate();
+            project.compile();
+            Files.createFile(project.classesDir.resolve(COMPLETE_MARKER));
+        }
+        return project;
+    }
+
+    Path getSourceDir() {
+        return sourceDir;
+    }
+
+    Path getClassesDir() {
+        return classesDir;
+    }
+
+    int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * 在整个项目中均匀选取的方法签名（Soot格式）
+     */
+    List<String> signatures(int count) {
+        List<String> signatures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int classIndex = (int) ((long) i * classCount / count);
+            signatures.add("<" + className(classIndex) + ": int m" + (i % CHAIN_METHODS) + "(int)>");
+        }
+        return signatures;
+    }
+
+    static String className(int classIndex) {
+        return "bench.p" + (classIndex / CLASSES_PER_PACKAGE) + ".C" + classIndex;
+    }
+
+    private void generate() throws IOException {
+        writeSource("bench.Task",
+                "package bench;\n\n" +
+                "public interface Task {\n" +
+                "    void execute();\n" +
+                "}\n");
+        writeSource("bench.Main",
+                "package bench;\n\n" +
+                "public class Main {\n" +
+                "    public static void main(String[] args) {\n" +
+                "        new " + className(0) + "().execute();\n" +
+                "    }\n" +
+                "}\n");
+
+        for (int i = 0; i < classCount; i++) {
+            String className = className(i);
+            int dot = className.lastIndexOf('.');
+
+            StringBuilder source = new StringBuilder();
+            source.append("package ").append(className, 0, dot).append(";\n\n")
+                    .append("import java.util.ArrayList;\n")
+                    .append("import java.util.List;\n\n")
+                    .append("public class ").append(className.substring(dot + 1)).append(" implements bench.Task {\n")
+                    .append("    private static int instances;\n")
+                    .append("    private final List<Object> items = new ArrayList<>();\n")
+                    .append("    private int counter;\n")
+                    .append("    private bench.Task next;\n\n")
+                    .append("    public ").append(className.substring(dot + 1)).append("() {\n")
+                    .append("        instances++;\n")
+                    .append("    }\n\n");
+
+            for (int m = 0; m < CHAIN_METHODS; m++) {
+                source.append("    public int m").append(m).append("(int value) {\n")
+                        .append("        counter += value;\n")
+                        .append("        items.add(new StringBuilder().append(value));\n");
+                if (m + 1 < CHAIN_METHODS) {
+                    source.append("        return m").append(m + 1).append("(value + 1);\n");
+                } else {
+                    source.append("        return items.size() + instances;\n");
+                }
+                source.append("    }\n\n");
+            }
+
+            source.append("    @Override\n")
+                    .append("    public void execute() {\n");
+            if (i + 1 < classCount) {
+                source.append("        if (next == null) {\n")
+                        .append("            next = new ").append(className(i + 1)).append("();\n")
+                        .append("        }\n")
+                        .append("        next.execute();\n");
+            }
+            source.append("        m0(counter);\n")
+                    .append("    }\n")
+                    .append("}\n");
+
+            writeSource(className, source.toString());
+        }
+    }
+
+    private void writeSource(String className, String source) throws IOException {
+        Path file = sourceDir.resolve(className.replace('.', '/') + ".java");
+        Files.createDirectories(file.getParent());
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(source);
+        }
+    }
+
+    private void compile() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("需要在JDK上运行基准测试");
+        }
+        Files.createDirectories(classesDir);
+
+        List<String> arguments = new ArrayList<>(List.of("-g", "-nowarn", "-d", classesDir.toString()));
+        try (var files = Files.walk(sourceDir)) {
+            files.filter(file -> file.toString().endsWith(".java")).forEach(file -> arguments.add(file.toString()));
+        }
+        if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("编译合成项目失败：" + sourceDir);
+        }
+    }
+}
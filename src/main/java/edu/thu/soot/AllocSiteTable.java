@@ -0,0 +1,419 @@
+package edu.thu.soot;
+
+import com.google.gson.stream.JsonWriter;
+import soot.ArrayType;
+import soot.PointsToSet;
+import soot.RefType;
+import soot.SootMethod;
+import soot.Type;
+import soot.jimple.ClassConstant;
+import soot.jimple.NewArrayExpr;
+import soot.jimple.NewExpr;
+import soot.jimple.NewMultiArrayExpr;
+import soot.jimple.spark.ondemand.AllocAndContext;
+import soot.jimple.spark.ondemand.AllocAndContextSet;
+import soot.jimple.spark.ondemand.LazyContextSensitivePointsToSet;
+import soot.jimple.spark.ondemand.WrappedPointsToSet;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.StringConstantNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 指针分析的分配点表
+ * 每个分配点（Spark的分配节点，非Spark分析时为可能的类型）分配一个从0开始的编号，只记录一次种类、类型和创建方法；
+ * 变量的指向集合保存为升序排列的编号数组，内容相同的数组只保留一份
+ *
+ * 表不是线程安全的，并行提取时每个线程使用自己的表，再按顺序合并到总表中。
+ * 编号先按遇到的顺序分配，最后由 {@link #compact} 按分配节点编号（类型按名称）重新编号，
+ * 因此输出与提取的顺序和线程数无关
+ */
+final class AllocSiteTable {
+    static final int[] EMPTY = new int[0];
+
+    // Spark分配节点编号 → 分配点编号 + 1，0表示尚未见过，-1表示被过滤
+    private int[] nodeSites = new int[1024];
+    // 非Spark分析时类型名 → 分配点编号
+    private final Map<String, Integer> typeSites = new HashMap<>();
+
+    // 分配点对应的Spark分配节点编号，类型分配点为-1
+    private int[] siteNodes = new int[64];
+    private final List<String> kinds = new ArrayList<>();
+    private final List<String> types = new ArrayList<>();
+    private final List<String> values = new ArrayList<>();
+    private final List<String> methods = new ArrayList<>();
+
+    private final Map<IntArray, int[]> internedSets = new HashMap<>();
+    private int[] buffer = new int[64];
+    private int bufferSize;
+
+    /**
+     * 分配点数量
+     */
+    int size() {
+        return kinds.size();
+    }
+
+    /**
+     * 分配点的种类：Object、Array、String、Class、Allocation 或 Type
+     */
+    String getKind(int site) {
+        return kinds.get(site);
+    }
+
+    /**
+     * 分配的类型
+     */
+    String getType(int site) {
+        return types.get(site);
+    }
+
+    /**
+     * 创建对象的方法签名，未知时为null
+     */
+    String getMethod(int site) {
+        return methods.get(site);
+    }
+
+    /**
+     * 指向集合中分配点的编号，升序排列且不重复
+     * Spark的指向集合用 P2SetVisitor 直接遍历分配节点，DemandCSPointsTo 的结果取其中的分配节点，
+     * 其他指针分析器只能给出可能的类型
+     *
+     * @param pts 指向集合
+     * @return 编号数组，内容相同时返回同一个数组，调用者不能修改
+     */
+    int[] pointsTo(PointsToSet pts) {
+        if (pts == null || pts.isEmpty()) {
+            return EMPTY;
+        }
+
+        // DemandCSPointsTo 返回的集合：延迟细化的集合先完成细化，超出预算时为包装的SPARK结果
+        if (pts instanceof LazyContextSensitivePointsToSet) {
+            LazyContextSensitivePointsToSet lazy = (LazyContextSensitivePointsToSet) pts;
+            lazy.computeContextSensitiveInfo();
+            pts = lazy.getDelegate();
+        }
+        if (pts instanceof WrappedPointsToSet) {
+            pts = ((WrappedPointsToSet) pts).getWrapped();
+        }
+
+        bufferSize = 0;
+        if (pts instanceof PointsToSetInternal) {
+            ((PointsToSetInternal) pts).forall(new P2SetVisitor() {
+                @Override
+                public void visit(Node node) {
+                    if (node instanceof AllocNode) {
+                        add(getSite((AllocNode) node));
+                    }
+                }
+            });
+        } else if (pts instanceof AllocAndContextSet) {
+            // DemandCSPointsTo 细化后的集合，不区分上下文
+            for (AllocAndContext allocAndContext : (AllocAndContextSet) pts) {
+                add(getSite(allocAndContext.alloc));
+            }
+        } else {
+            for (Type type : pts.possibleTypes()) {
+                add(getTypeSite(type));
+            }
+        }
+        return intern(buffer, bufferSize);
+    }
+
+    private void add(int site) {
+        if (site < 0) {
+            return;
+        }
+        if (bufferSize == buffer.length) {
+            buffer = Arrays.copyOf(buffer, bufferSize * 2);
+        }
+        buffer[bufferSize++] = site;
+    }
+
+    /**
+     * 排序去重后返回共享的数组
+     */
+    private int[] intern(int[] sites, int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(sites, 0, length);
+        int unique = 1;
+        for (int i = 1; i < length; i++) {
+            if (sites[i] != sites[unique - 1]) {
+                sites[unique++] = sites[i];
+            }
+        }
+        IntArray key = new IntArray(Arrays.copyOf(sites, unique));
+        return internedSets.computeIfAbsent(key, k -> k.values);
+    }
+
+    /**
+     * 分配节点对应的分配点编号，被过滤的节点返回-1
+     */
+    private int getSite(AllocNode allocNode) {
+        int number = allocNode.getNumber();
+        if (number >= nodeSites.length) {
+            nodeSites = Arrays.copyOf(nodeSites, Math.max(number + 1, nodeSites.length * 2));
+        }
+        if (nodeSites[number] == 0) {
+            int site = addAllocNode(allocNode);
+            if (site >= 0) {
+                siteNodes[site] = number;
+            }
+            nodeSites[number] = site >= 0 ? site + 1 : -1;
+        }
+        return nodeSites[number] > 0 ? nodeSites[number] - 1 : -1;
+    }
+
+    private int addAllocNode(AllocNode allocNode) {
+        Object newExpr = allocNode.getNewExpr();
+        SootMethod method = allocNode.getMethod();
+        String signature = method != null ? method.getSignature() : null;
+
+        if (newExpr instanceof NewExpr) {
+            // 普通对象创建
+            return addSite("Object", ((NewExpr) newExpr).getBaseType().getClassName(), null, signature);
+        } else if (newExpr instanceof NewArrayExpr) {
+            return addSite("Array", ((NewArrayExpr) newExpr).getBaseType() + "[]", null, signature);
+        } else if (newExpr instanceof NewMultiArrayExpr) {
+            return addSite("Array", ((NewMultiArrayExpr) newExpr).getBaseType().toString(), null, signature);
+        } else if (newExpr instanceof RefType) {
+            // types-for-sites 时同一类型的分配点合并为一个节点
+            return addSite("Object", ((RefType) newExpr).getClassName(), null, null);
+        } else if (newExpr instanceof ArrayType) {
+            return addSite("Array", newExpr.toString(), null, null);
+        } else if (allocNode instanceof StringConstantNode) {
+            // 字符串常量
+            String value = ((StringConstantNode) allocNode).getString();
+            if (value.length() > 30) {
+                value = value.substring(0, 27) + "...";
+            }
+            return addSite("String", "java.lang.String", value, null);
+        } else if (newExpr instanceof ClassConstant) {
+            return addSite("Class", "java.lang.Class", ((ClassConstant) newExpr).getValue(), null);
+        } else if (newExpr != null) {
+            // 其他类型的分配点
+            String value = newExpr.toString();
+            if (value.length() > 100) {
+                value = value.substring(0, 97) + "...";
+            }
+            return addSite("Allocation", allocNode.getType().toString(), value, signature);
+        }
+        return -1;
+    }
+
+    private int getTypeSite(Type type) {
+        if (!(type instanceof RefType) && !(type instanceof ArrayType)) {
+            return -1;
+        }
+        String typeName = type instanceof RefType ? ((RefType) type).getClassName() : type.toString();
+        Integer site = typeSites.get(typeName);
+        if (site == null) {
+            site = addSite("Type", typeName, null, null);
+            typeSites.put(typeName, site);
+        }
+        return site;
+    }
+
+    private int addSite(String kind, String type, String value, String method) {
+        // 过滤掉异常和堆栈相关的对象
+        if (isIgnoredType(type) || (value != null && kind.equals("Allocation") && isIgnoredType(value))) {
+            return -1;
+        }
+        return appendSite(-1, kind, type, value, method);
+    }
+
+    private int appendSite(int node, String kind, String type, String value, String method) {
+        int site = kinds.size();
+        if (site == siteNodes.length) {
+            siteNodes = Arrays.copyOf(siteNodes, site * 2);
+        }
+        siteNodes[site] = node;
+        kinds.add(kind);
+        types.add(type);
+        values.add(value);
+        methods.add(method);
+        return kinds.size() - 1;
+    }
+
+    /**
+     * 将另一个表中的分配点合并到本表，已有的分配点（同一个分配节点或同一个类型）沿用原编号
+     *
+     * @param other 另一个表
+     * @return 另一个表中的编号 → 本表中的编号
+     */
+    int[] addAll(AllocSiteTable other) {
+        int[] mapping = new int[other.size()];
+        for (int site = 0; site < mapping.length; site++) {
+            int node = other.siteNodes[site];
+            String type = other.types.get(site);
+            Integer existing;
+            if (node >= 0) {
+                existing = node < nodeSites.length && nodeSites[node] > 0 ? nodeSites[node] - 1 : null;
+            } else {
+                existing = typeSites.get(type);
+            }
+            if (existing == null) {
+                existing = appendSite(node, other.kinds.get(site), type, other.values.get(site), other.methods.get(site));
+                if (node >= 0) {
+                    if (node >= nodeSites.length) {
+                        nodeSites = Arrays.copyOf(nodeSites, Math.max(node + 1, nodeSites.length * 2));
+                    }
+                    nodeSites[node] = existing + 1;
+                } else {
+                    typeSites.put(type, existing);
+                }
+            }
+            mapping[site] = existing;
+        }
+        return mapping;
+    }
+
+    /**
+     * 按编号映射转换指向集合，映射为-1的编号被丢弃
+     *
+     * @return 本表中共享的编号数组
+     */
+    int[] translate(int[] sites, int[] mapping) {
+        int length = 0;
+        int[] translated = new int[sites.length];
+        for (int site : sites) {
+            if (mapping[site] >= 0) {
+                translated[length++] = mapping[site];
+            }
+        }
+        return intern(translated, length);
+    }
+
+    /**
+     * 只保留被引用的分配点，并按分配节点编号、类型名称的顺序重新编号
+     * 之后需要用返回的映射通过 {@link #translate} 转换所有指向集合
+     *
+     * @param referenced 被引用的分配点
+     * @return 旧编号 → 新编号，未被引用的为-1
+     */
+    int[] compact(BitSet referenced) {
+        List<Integer> retained = new ArrayList<>(referenced.cardinality());
+        for (int site = referenced.nextSetBit(0); site >= 0; site = referenced.nextSetBit(site + 1)) {
+            retained.add(site);
+        }
+        retained.sort((a, b) -> {
+            int nodeA = siteNodes[a];
+            int nodeB = siteNodes[b];
+            if (nodeA >= 0 || nodeB >= 0) {
+                // 分配节点在前，按节点编号排序
+                return nodeA < 0 ? 1 : nodeB < 0 ? -1 : Integer.compare(nodeA, nodeB);
+            }
+            return types.get(a).compareTo(types.get(b));
+        });
+
+        int[] mapping = new int[size()];
+        Arrays.fill(mapping, -1);
+        List<String> oldKinds = new ArrayList<>(kinds);
+        List<String> oldTypes = new ArrayList<>(types);
+        List<String> oldValues = new ArrayList<>(values);
+        List<String> oldMethods = new ArrayList<>(methods);
+        int[] oldNodes = siteNodes;
+
+        kinds.clear();
+        types.clear();
+        values.clear();
+        methods.clear();
+        siteNodes = new int[Math.max(64, retained.size())];
+        for (int node = 0; node < nodeSites.length; node++) {
+            // 保留被过滤节点的标记
+            if (nodeSites[node] > 0) {
+                nodeSites[node] = 0;
+            }
+        }
+        typeSites.clear();
+        internedSets.clear();
+        for (int site : retained) {
+            int node = oldNodes[site];
+            int newSite = appendSite(node, oldKinds.get(site), oldTypes.get(site), oldValues.get(site), oldMethods.get(site));
+            if (node >= 0) {
+                nodeSites[node] = newSite + 1;
+            } else {
+                typeSites.put(oldTypes.get(site), newSite);
+            }
+            mapping[site] = newSite;
+        }
+        return mapping;
+    }
+
+    private static boolean isIgnoredType(String typeName) {
+        return typeName.contains("Exception") ||
+                typeName.contains("Error") ||
+                typeName.contains("Throwable") ||
+                typeName.contains("Stack");
+    }
+
+    /**
+     * 写出全部分配点：[{"id": 0, "kind": "Object", "type": "...", "method": "..."}, ...]，null值省略
+     */
+    void writeJson(JsonWriter writer) throws IOException {
+        writer.beginArray();
+        for (int site = 0; site < kinds.size(); site++) {
+            writer.beginObject();
+            writer.name("id").value(site);
+            writer.name("kind").value(kinds.get(site));
+            writer.name("type").value(types.get(site));
+            if (values.get(site) != null) {
+                writer.name("value").value(values.get(site));
+            }
+            if (methods.get(site) != null) {
+                writer.name("method").value(methods.get(site));
+            }
+            writer.endObject();
+        }
+        writer.endArray();
+    }
+
+    /**
+     * 以单行形式写出编号数组，美化输出时也不会每个编号占一行
+     */
+    static void writeIds(JsonWriter writer, int[] sites) throws IOException {
+        StringBuilder json = new StringBuilder(sites.length * 4 + 2).append('[');
+        for (int i = 0; i < sites.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(sites[i]);
+        }
+        writer.jsonValue(json.append(']').toString());
+    }
+
+    /**
+     * 以内容比较的int数组，用于共享相同的指向集合
+     */
+    private static final class IntArray {
+        final int[] values;
+        private final int hash;
+
+        IntArray(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof IntArray && Arrays.equals(values, ((IntArray) other).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package edu.thu.soot;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import edu.thu.soot.SootCodeAnalyzer.IndexEntry;
+import org.apache.commons.cli.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import soot.Unit;
+import soot.toolkits.graph.UnitGraph;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 常驻分析服务
+ * 只加载一次目标代码，之后Soot的Scene、索引和调用图常驻内存，通过本地HTTP接口低延迟地回答查询
+ *
+ * 接口（只监听回环地址）：
+ * <pre>
+ * GET  /status
+ * GET  /index/method-definitions?name=方法名
+ * GET  /index/method-invocations?name=方法名
+ * GET  /index/field-definitions?name=字段名
+ * GET  /index/field-references?name=字段名
+ * GET  /callgraph/callees?method=方法签名
+ * GET  /callgraph/callers?method=方法签名
+ * GET  /cfg?signature=方法签名             （或 class=类名&amp;method=方法名，方法名有重载时返回400并列出候选签名）
+ * GET  /source?signature=方法签名          （需要指定源码路径）
+ * POST /reload
+ * </pre>
+ * 重新加载失败时Soot可能已被重置，之后除 /reload 外的请求都返回503，直到重新加载成功
+ */
+public class AnalysisServer {
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisServer.class);
+
+    private final String targetPath;
+    private final String sourcePath;
+    private final int port;
+    private int threads = 1;
+
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
+    // 查询使用读锁；重新加载以及会修改Soot状态的请求（如控制流图）使用写锁
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private SootCodeAnalyzer analyzer;
+    private CallGraphStore callers = new CallGraphStore();
+    private SpoonMethodSourceExtractor sourceExtractor;
+    // 最近一次加载失败的原因，为null表示已加载的目标可用
+    private String loadError;
+
+    /**
+     * 创建分析服务
+     *
+     * @param targetPath 目标Java项目路径（字节码）
+     * @param sourcePath 源代码路径，不需要提取源码时可以为null
+     * @param port       监听端口，0表示自动分配
+     */
+    public AnalysisServer(String targetPath, String sourcePath, int port) {
+        this.targetPath = targetPath;
+        this.sourcePath = sourcePath;
+        this.port = port;
+    }
+
+    /**
+     * 设置加载目标时分析应用类的线程数
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * 加载目标并启动服务
+     *
+     * @throws IOException 如果无法监听端口
+     */
+    public void start() throws IOException {
+        reload();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/status", exchange -> handle(exchange, false, this::status));
+        server.createContext("/index/method-definitions", exchange -> handle(exchange, false,
+                () -> lookup(analyzer.getMethodDefinitions(), requireParameter(exchange, "name"))));
+        server.createContext("/index/method-invocations", exchange -> handle(exchange, false,
+                () -> lookup(analyzer.getMethodInvocations(), requireParameter(exchange, "name"))));
+        server.createContext("/index/field-definitions", exchange -> handle(exchange, false,
+                () -> lookup(analyzer.getFieldDefinitions(), requireParameter(exchange, "name"))));
+        server.createContext("/index/field-references", exchange -> handle(exchange, false,
+                () -> lookup(analyzer.getFieldReferences(), requireParameter(exchange, "name"))));
+        server.createContext("/callgraph/callees", exchange -> handle(exchange, false,
+                () -> neighbours(analyzer.getCallGraph(), requireParameter(exchange, "method"))));
+        server.createContext("/callgraph/callers", exchange -> handle(exchange, false,
+                () -> neighbours(callers, requireParameter(exchange, "method"))));
+        server.createContext("/cfg", exchange -> handle(exchange, true, () -> cfg(exchange)));
+        server.createContext("/source", exchange -> handle(exchange, true,
+                () -> source(requireParameter(exchange, "signature"))));
+        server.createContext("/reload", new ReloadHandler());
+
+        executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        server.setExecutor(executor);
+        server.start();
+
+        logger.info("分析服务已启动：http://{}:{}", server.getAddress().getHostString(), getPort());
+    }
+
+    /**
+     * 停止服务
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        logger.info("分析服务已停止");
+    }
+
+    /**
+     * 返回实际监听的端口
+     */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    /**
+     * 重新加载目标代码，重建Scene、索引和调用图
+     * 加载会先重置Soot，失败时原来的索引和调用图已经与Scene不一致，服务在重新加载成功前不可用
+     *
+     * @return 加载后的状态
+     * @throws IllegalStateException 如果加载失败
+     */
+    public JsonObject reload() {
+        lock.writeLock().lock();
+        try {
+            SootCodeAnalyzer newAnalyzer = new SootCodeAnalyzer(targetPath, null);
+            newAnalyzer.setThreads(threads);
+            try {
+                newAnalyzer.load();
+            } catch (RuntimeException e) {
+                analyzer = null;
+                callers = new CallGraphStore();
+                sourceExtractor = null;
+                loadError = e.getMessage() != null ? e.getMessage() : e.toString();
+                throw new IllegalStateException("加载目标代码失败：" + loadError, e);
+            }
+
+            // 建立反向调用关系，用于查询调用者
+            CallGraphStore newCallers = newAnalyzer.getCallGraph().reverse();
+
+            analyzer = newAnalyzer;
+            callers = newCallers;
+            loadError = null;
+            sourceExtractor = null;
+            if (sourcePath != null) {
+                // 源码可能随class一起变化，丢弃缓存的Spoon模型
+                SpoonMethodSourceExtractor.evict(sourcePath);
+            }
+            return status();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private JsonObject status() {
+        JsonObject result = new JsonObject();
+        result.addProperty("target", targetPath);
+        result.addProperty("methodNames", analyzer.getMethodDefinitions().size());
+        result.addProperty("fieldNames", analyzer.getFieldDefinitions().size());
+        result.addProperty("callers", analyzer.getCallGraph().callerCount());
+        result.addProperty("sourceAvailable", sourcePath != null);
+        return result;
+    }
+
+    private Object lookup(Map<String, List<IndexEntry>> index, String name) {
+        return index.getOrDefault(name, Collections.emptyList());
+    }
+
+    private Object neighbours(CallGraphStore graph, String method) {
+        return graph.getCallees(method);
+    }
+
+    private Object cfg(HttpExchange exchange) {
+        String signature = parseQuery(exchange.getRequestURI().getRawQuery()).get("signature");
+        UnitGraph cfg;
+        if (signature != null && !signature.isEmpty()) {
+            cfg = analyzer.buildCFG(signature);
+            if (cfg == null) {
+                throw new NoSuchElementException("未找到方法: " + signature);
+            }
+        } else {
+            String className = requireParameter(exchange, "class");
+            String methodName = requireParameter(exchange, "method");
+            cfg = analyzer.buildCFG(className, methodName);
+            if (cfg == null) {
+                throw new NoSuchElementException("未找到方法: " + className + "." + methodName);
+            }
+        }
+
+        Map<Unit, Integer> ids = new HashMap<>();
+        JsonArray nodes = new JsonArray();
+        for (Unit unit : cfg) {
+            ids.put(unit, ids.size());
+            nodes.add(unit.toString());
+        }
+
+        JsonArray edges = new JsonArray();
+        for (Unit unit : cfg) {
+            for (Unit succ : cfg.getSuccsOf(unit)) {
+                JsonArray edge = new JsonArray();
+                edge.add(ids.get(unit));
+                edge.add(ids.get(succ));
+                edges.add(edge);
+            }
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("method", cfg.getBody().getMethod().getSignature());
+        result.add("nodes", nodes);
+        result.add("edges", edges);
+        return result;
+    }
+
+    private Object source(String signature) {
+        if (sourcePath == null) {
+            throw new IllegalStateException("服务启动时未指定源代码路径");
+        }
+        if (sourceExtractor == null) {
+            sourceExtractor = SpoonMethodSourceExtractor.forSourceRoot(sourcePath);
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("signature", signature);
+        SpoonMethodSourceExtractor.MethodSource method = sourceExtractor.extract(signature);
+        result.addProperty("source", method.getSource());
+        result.addProperty("sourceFile", method.getSourceFile());
+        result.addProperty("startLine", method.getStartLine());
+        result.addProperty("endLine", method.getEndLine());
+        return result;
+    }
+
+    /**
+     * 查询处理函数
+     */
+    private interface Query {
+        Object run() throws Exception;
+    }
+
+    /**
+     * 在锁保护下执行查询并以JSON返回结果
+     */
+    private void handle(HttpExchange exchange, boolean exclusive, Query query) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendError(exchange, 405, "只支持GET请求");
+            return;
+        }
+
+        Lock held = exclusive ? lock.writeLock() : lock.readLock();
+        held.lock();
+        try {
+            if (loadError != null) {
+                sendError(exchange, 503, "目标代码加载失败，请重新加载：" + loadError);
+                return;
+            }
+            send(exchange, 200, gson.toJson(query.run()));
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (NoSuchElementException e) {
+            sendError(exchange, 404, e.getMessage());
+        } catch (Exception e) {
+            logger.error("处理请求失败：{}", exchange.getRequestURI(), e);
+            sendError(exchange, 500, e.getMessage());
+        } finally {
+            held.unlock();
+        }
+    }
+
+    /**
+     * 重新加载请求处理
+     */
+    private class ReloadHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "只支持POST请求");
+                return;
+            }
+            try {
+                long start = System.currentTimeMillis();
+                JsonObject result = reload();
+                result.addProperty("reloadMillis", System.currentTimeMillis() - start);
+                send(exchange, 200, gson.toJson(result));
+            } catch (Exception e) {
+                logger.error("重新加载失败", e);
+                sendError(exchange, 500, e.getMessage());
+            }
+        }
+    }
+
+    private static String requireParameter(HttpExchange exchange, String name) {
+        String value = parseQuery(exchange.getRequestURI().getRawQuery()).get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("缺少参数：" + name);
+        }
+        return value;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        send(exchange, status, gson.toJson(error));
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * 主方法
+     */
+    public static void main(String[] args) {
+        org.apache.commons.cli.Options cliOptions = new org.apache.commons.cli.Options();
+        cliOptions.addOption(Option.builder("t")
+                .longOpt("target")
+                .desc("目标Java项目路径")
+                .hasArg()
+                .required(true)
+                .build());
+        cliOptions.addOption(Option.builder("s")
+                .longOpt("source-path")
+                .desc("源代码路径，用于提取方法源码")
+                .hasArg()
+                .build());
+        cliOptions.addOption(Option.builder()
+                .longOpt("port")
+                .desc("监听端口（默认8765，0表示自动分配）")
+                .hasArg()
+                .build());
+        cliOptions.addOption(Option.builder()
+                .longOpt("threads")
+                .desc("加载目标时分析应用类的线程数（默认1）")
+                .hasArg()
+                .build());
+
+        HelpFormatter formatter = new HelpFormatter();
+        try {
+            CommandLine cmd = new DefaultParser().parse(cliOptions, args);
+            int port = Integer.parseInt(cmd.getOptionValue("port", "8765"));
+
+            AnalysisServer server = new AnalysisServer(cmd.getOptionValue("t"), cmd.getOptionValue("s"), port);
+            server.setThreads(Integer.parseInt(cmd.getOptionValue("threads", "1")));
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        } catch (ParseException | NumberFormatException e) {
+            System.err.println("解析命令行参数出错：" + e.getMessage());
+            formatter.printHelp("SootCodeAnalyzer serve", cliOptions);
+        } catch (IOException e) {
+            System.err.println("启动分析服务失败：" + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
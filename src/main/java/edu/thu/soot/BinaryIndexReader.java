@@ -0,0 +1,206 @@
+package edu.thu.soot;
+
+import edu.thu.soot.BinaryIndexWriter.Section;
+import edu.thu.soot.SootCodeAnalyzer.IndexEntry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 二进制代码索引读取工具
+ * 将 {@link BinaryIndexWriter} 生成的文件内存映射后直接在映射区上二分查找，
+ * 只解码命中的条目，不需要反序列化整个索引
+ */
+public class BinaryIndexReader implements Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final MappedStringTable strings;
+    private final int[] sectionOffsets = new int[Section.values().length];
+
+    private BinaryIndexReader(Path file, FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+
+        if (buffer.getInt(0) != BinaryIndexWriter.MAGIC) {
+            throw new IOException("不是有效的二进制索引文件：" + file);
+        }
+        int version = buffer.getInt(4);
+        if (version != BinaryIndexWriter.VERSION) {
+            throw new IOException("不支持的二进制索引版本：" + version);
+        }
+
+        int stringTableOffset = buffer.getInt(8);
+        for (int i = 0; i < sectionOffsets.length; i++) {
+            sectionOffsets[i] = buffer.getInt(12 + i * 4);
+        }
+
+        strings = new MappedStringTable(buffer, stringTableOffset, "二进制索引已损坏：" + file);
+    }
+
+    /**
+     * 打开并内存映射二进制索引文件
+     *
+     * @param file 索引文件
+     * @return 索引读取器
+     * @throws IOException 如果文件无法读取或格式不正确
+     */
+    public static BinaryIndexReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BinaryIndexReader(file, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 查询方法的定义位置
+     *
+     * @param methodName 方法名
+     * @return 索引条目，没有匹配时返回空列表
+     */
+    public List<IndexEntry> findMethodDefinitions(String methodName) {
+        return find(Section.METHOD_DEFINITIONS, methodName);
+    }
+
+    /**
+     * 查询方法的调用位置
+     *
+     * @param methodName 方法名
+     * @return 索引条目，没有匹配时返回空列表
+     */
+    public List<IndexEntry> findMethodInvocations(String methodName) {
+        return find(Section.METHOD_INVOCATIONS, methodName);
+    }
+
+    /**
+     * 查询字段的定义位置
+     *
+     * @param fieldName 字段名
+     * @return 索引条目，没有匹配时返回空列表
+     */
+    public List<IndexEntry> findFieldDefinitions(String fieldName) {
+        return find(Section.FIELD_DEFINITIONS, fieldName);
+    }
+
+    /**
+     * 查询字段的引用位置
+     *
+     * @param fieldName 字段名
+     * @return 索引条目，没有匹配时返回空列表
+     */
+    public List<IndexEntry> findFieldReferences(String fieldName) {
+        return find(Section.FIELD_REFERENCES, fieldName);
+    }
+
+    /**
+     * 在指定索引段中查询名称对应的条目
+     */
+    List<IndexEntry> find(Section section, String name) {
+        int sectionOffset = sectionOffsets[section.ordinal()];
+        int keyCount = buffer.getInt(sectionOffset);
+        int keysPosition = sectionOffset + 4;
+
+        int keyIndex = binarySearch(keysPosition, keyCount, name.getBytes(StandardCharsets.UTF_8));
+        if (keyIndex < 0) {
+            return Collections.emptyList();
+        }
+
+        int keyPosition = keysPosition + keyIndex * BinaryIndexWriter.KEY_RECORD_SIZE;
+        int firstEntry = buffer.getInt(keyPosition + 4);
+        int entryCount = buffer.getInt(keyPosition + 8);
+        int entriesPosition = keysPosition + keyCount * BinaryIndexWriter.KEY_RECORD_SIZE + 4;
+
+        List<IndexEntry> entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            entries.add(readEntry(entriesPosition + (firstEntry + i) * BinaryIndexWriter.ENTRY_RECORD_SIZE));
+        }
+        return entries;
+    }
+
+    /**
+     * 读取指定索引段的全部内容
+     *
+     * @param section 索引段
+     * @return 名称到索引条目的映射，按键在文件中的顺序排列
+     */
+    Map<String, List<IndexEntry>> readAll(Section section) {
+        int sectionOffset = sectionOffsets[section.ordinal()];
+        int keyCount = buffer.getInt(sectionOffset);
+        int keysPosition = sectionOffset + 4;
+        int entriesPosition = keysPosition + keyCount * BinaryIndexWriter.KEY_RECORD_SIZE + 4;
+
+        Map<String, List<IndexEntry>> index = new LinkedHashMap<>();
+        for (int k = 0; k < keyCount; k++) {
+            int keyPosition = keysPosition + k * BinaryIndexWriter.KEY_RECORD_SIZE;
+            int firstEntry = buffer.getInt(keyPosition + 4);
+            int entryCount = buffer.getInt(keyPosition + 8);
+
+            List<IndexEntry> entries = new ArrayList<>(entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                entries.add(readEntry(entriesPosition + (firstEntry + i) * BinaryIndexWriter.ENTRY_RECORD_SIZE));
+            }
+            index.put(readString(buffer.getInt(keyPosition)), entries);
+        }
+        return index;
+    }
+
+    /**
+     * 返回指定索引段中键的数量
+     */
+    int keyCount(Section section) {
+        return buffer.getInt(sectionOffsets[section.ordinal()]);
+    }
+
+    /**
+     * 在排序后的键记录中二分查找，直接比较映射区中的UTF-8字节
+     */
+    private int binarySearch(int keysPosition, int keyCount, byte[] target) {
+        int low = 0;
+        int high = keyCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int stringId = buffer.getInt(keysPosition + mid * BinaryIndexWriter.KEY_RECORD_SIZE);
+            int cmp = strings.compare(stringId, target);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private IndexEntry readEntry(int position) {
+        return new IndexEntry(
+                readString(buffer.getInt(position)),
+                readString(buffer.getInt(position + 4)),
+                readString(buffer.getInt(position + 8)),
+                readString(buffer.getInt(position + 12)),
+                buffer.getInt(position + 16));
+    }
+
+    private String readString(int stringId) {
+        return stringId == BinaryIndexWriter.NULL_STRING ? null : strings.get(stringId);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
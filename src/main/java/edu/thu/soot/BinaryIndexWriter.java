@@ -0,0 +1,185 @@
+package edu.thu.soot;
+
+import edu.thu.soot.SootCodeAnalyzer.IndexEntry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * 二进制代码索引输出工具
+ * 将四类索引写入一个紧凑的二进制文件，供 {@link BinaryIndexReader} 内存映射后直接查询
+ *
+ * 文件格式（大端序）：
+ * <pre>
+ * 文件头:   magic(int) version(int) stringTableOffset(int) sectionOffset[4](int)
+ * 字符串表: count(int) offsets[count + 1](int) UTF-8字节
+ * 索引段:   keyCount(int) keys[keyCount]{nameId, firstEntry, entryCount}(int)
+ *           entryCount(int) entries[entryCount]{classNameId, memberNameId, signatureId, sourceFileId, lineNumber}(int)
+ * </pre>
+ * 索引段按 {@link Section} 的顺序排列，键按UTF-8字节序排序以便二分查找；sourceFileId为-1表示null
+ */
+class BinaryIndexWriter {
+    static final int MAGIC = 0x43494458; // "CIDX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 3 * 4 + Section.values().length * 4;
+    static final int KEY_RECORD_SIZE = 3 * 4;
+    static final int ENTRY_RECORD_SIZE = 5 * 4;
+    static final int NULL_STRING = -1;
+
+    /**
+     * 索引段，顺序即文件中的存储顺序
+     */
+    enum Section {
+        METHOD_DEFINITIONS,
+        METHOD_INVOCATIONS,
+        FIELD_DEFINITIONS,
+        FIELD_REFERENCES
+    }
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<byte[]> strings = new ArrayList<>();
+
+    /**
+     * 写出二进制索引
+     *
+     * @param file              输出文件
+     * @param methodDefinitions 方法定义索引
+     * @param methodInvocations 方法调用索引
+     * @param fieldDefinitions  字段定义索引
+     * @param fieldReferences   字段引用索引
+     * @throws IOException 如果写入文件时发生IO错误
+     */
+    void write(Path file,
+                      Map<String, List<IndexEntry>> methodDefinitions,
+                      Map<String, List<IndexEntry>> methodInvocations,
+                      Map<String, List<IndexEntry>> fieldDefinitions,
+                      Map<String, List<IndexEntry>> fieldReferences) throws IOException {
+        List<Map<String, List<IndexEntry>>> sections = Arrays.asList(
+                methodDefinitions, methodInvocations, fieldDefinitions, fieldReferences);
+
+        // 先收集所有字符串并对键排序，才能预先算出每个段的偏移
+        List<List<String>> sortedKeys = new ArrayList<>();
+        for (Map<String, List<IndexEntry>> section : sections) {
+            sortedKeys.add(internSection(section));
+        }
+
+        long stringBytes = 0;
+        for (byte[] bytes : strings) {
+            stringBytes += bytes.length;
+        }
+
+        long offset = HEADER_SIZE;
+        long stringTableOffset = offset;
+        offset += 4 + 4L * (strings.size() + 1) + stringBytes;
+
+        long[] sectionOffsets = new long[sections.size()];
+        for (int i = 0; i < sections.size(); i++) {
+            sectionOffsets[i] = offset;
+            offset += 4 + (long) KEY_RECORD_SIZE * sortedKeys.get(i).size() + 4 + (long) ENTRY_RECORD_SIZE * countEntries(sections.get(i));
+        }
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("索引过大，无法使用二进制格式保存：" + offset + " 字节");
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+            // 文件头
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt((int) stringTableOffset);
+            for (long sectionOffset : sectionOffsets) {
+                out.writeInt((int) sectionOffset);
+            }
+
+            // 字符串表
+            out.writeInt(strings.size());
+            int stringOffset = 0;
+            out.writeInt(stringOffset);
+            for (byte[] bytes : strings) {
+                stringOffset += bytes.length;
+                out.writeInt(stringOffset);
+            }
+            for (byte[] bytes : strings) {
+                out.write(bytes);
+            }
+
+            // 索引段
+            for (int i = 0; i < sections.size(); i++) {
+                writeSection(out, sections.get(i), sortedKeys.get(i));
+            }
+        }
+    }
+
+    /**
+     * 为一个索引段中的所有字符串分配编号，返回按UTF-8字节序排序的键
+     */
+    private List<String> internSection(Map<String, List<IndexEntry>> section) {
+        List<String> keys = new ArrayList<>(section.keySet());
+        for (String key : keys) {
+            intern(key);
+            for (IndexEntry entry : section.get(key)) {
+                intern(entry.className);
+                intern(entry.memberName);
+                intern(entry.signature);
+                intern(entry.sourceFile);
+            }
+        }
+        keys.sort((a, b) -> compareUtf8(strings.get(stringIds.get(a)), strings.get(stringIds.get(b))));
+        return keys;
+    }
+
+    private void writeSection(DataOutputStream out, Map<String, List<IndexEntry>> section, List<String> sortedKeys) throws IOException {
+        out.writeInt(sortedKeys.size());
+        int firstEntry = 0;
+        for (String key : sortedKeys) {
+            int entryCount = section.get(key).size();
+            out.writeInt(stringIds.get(key));
+            out.writeInt(firstEntry);
+            out.writeInt(entryCount);
+            firstEntry += entryCount;
+        }
+
+        out.writeInt(firstEntry);
+        for (String key : sortedKeys) {
+            for (IndexEntry entry : section.get(key)) {
+                out.writeInt(intern(entry.className));
+                out.writeInt(intern(entry.memberName));
+                out.writeInt(intern(entry.signature));
+                out.writeInt(intern(entry.sourceFile));
+                out.writeInt(entry.lineNumber);
+            }
+        }
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return NULL_STRING;
+        }
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            stringIds.put(value, id);
+            strings.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    private static long countEntries(Map<String, List<IndexEntry>> section) {
+        long count = 0;
+        for (List<IndexEntry> entries : section.values()) {
+            count += entries.size();
+        }
+        return count;
+    }
+
+    /**
+     * 按无符号字节比较两个UTF-8字符串，读取端使用相同的顺序进行二分查找
+     */
+    static int compareUtf8(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b);
+    }
+}
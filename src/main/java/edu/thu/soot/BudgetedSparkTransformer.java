@@ -0,0 +1,115 @@
+package edu.thu.soot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import soot.jimple.spark.SparkTransformer;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.solver.PropIter;
+import soot.jimple.spark.solver.PropWorklist;
+import soot.options.SparkOptions;
+
+import java.util.Map;
+
+/**
+ * 带时间和堆内存预算的SPARK
+ * 传播时每处理一批节点检查一次预算，超出时抛出 BudgetExceededException 中止传播，由调用方退回CHA
+ * 只有 worklist 和 iter 传播器会检查预算；构建PAG的阶段不检查
+ */
+class BudgetedSparkTransformer extends SparkTransformer {
+    private static final Logger logger = LoggerFactory.getLogger(BudgetedSparkTransformer.class);
+
+    // 每处理这么多个节点检查一次预算
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final long timeoutMillis;
+    private final long maxHeapBytes;
+    private long deadline;
+    private long handledNodes;
+    // 使用的堆内存超过该值时才触发GC确认是否超出预算
+    private long gcThreshold;
+
+    /**
+     * SPARK超出预算
+     */
+    static class BudgetExceededException extends RuntimeException {
+        BudgetExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * @param timeoutMillis 从SPARK开始计算的时间预算，0表示不限
+     * @param maxHeapBytes  堆内存预算，0表示不限
+     */
+    BudgetedSparkTransformer(long timeoutMillis, long maxHeapBytes) {
+        // SparkTransformer的构造参数只用于限制由G创建单例，不会被使用
+        super(null);
+        this.timeoutMillis = timeoutMillis;
+        this.maxHeapBytes = maxHeapBytes;
+    }
+
+    @Override
+    protected void internalTransform(String phaseName, Map<String, String> options) {
+        deadline = timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE;
+        handledNodes = 0;
+        gcThreshold = maxHeapBytes;
+        super.internalTransform(phaseName, options);
+    }
+
+    @Override
+    protected void propagatePAG(SparkOptions opts, PAG pag) {
+        switch (opts.propagator()) {
+            case SparkOptions.propagator_worklist:
+                new PropWorklist(pag) {
+                    @Override
+                    protected boolean handleVarNode(VarNode src) {
+                        checkBudget();
+                        return super.handleVarNode(src);
+                    }
+                }.propagate();
+                break;
+            case SparkOptions.propagator_iter:
+                new PropIter(pag) {
+                    @Override
+                    protected boolean handleSimples(VarNode src) {
+                        checkBudget();
+                        return super.handleSimples(src);
+                    }
+                }.propagate();
+                break;
+            default:
+                logger.warn("传播器 {} 不检查预算", opts.propagator());
+                super.propagatePAG(opts, pag);
+                break;
+        }
+    }
+
+    /**
+     * 检查是否超出预算；堆内存超出时先触发一次GC，排除尚未回收的垃圾
+     * GC后仍在预算内时，要在GC后的用量基础上再分配四分之一预算才会再次GC，避免接近预算时每次检查都GC；
+     * 代价是堆内存最多可能超出预算四分之一才被发现
+     */
+    private void checkBudget() {
+        if (handledNodes++ % CHECK_INTERVAL != 0) {
+            return;
+        }
+        if (System.currentTimeMillis() > deadline) {
+            throw new BudgetExceededException("SPARK传播超过 " + timeoutMillis / 1000 + " 秒的时间预算");
+        }
+        if (maxHeapBytes > 0 && usedHeap() > gcThreshold) {
+            System.gc();
+            long used = usedHeap();
+            if (used > maxHeapBytes) {
+                throw new BudgetExceededException("SPARK传播使用了 " + used / (1024 * 1024) + " MB堆内存，超过 "
+                        + maxHeapBytes / (1024 * 1024) + " MB的预算");
+            }
+            gcThreshold = Math.max(maxHeapBytes, used + maxHeapBytes / 4);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,143 @@
+package edu.thu.soot;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 调用图算法对比报告
+ * 记录每种算法的边数、可达方法数、构建耗时和构建期间的堆内存峰值，用于按项目权衡精度和开销
+ */
+public class CallGraphComparison {
+
+    /**
+     * 单个算法的结果
+     */
+    public static class Result {
+        final String algorithm;
+        final int edgeCount;
+        // 跳过库方法之间的调用后的边数，与输出的调用图一致
+        final int applicationEdgeCount;
+        final int reachableMethodCount;
+        final long buildMillis;
+        final long peakHeapBytes;
+        final String error;
+
+        Result(String algorithm, int edgeCount, int applicationEdgeCount, int reachableMethodCount,
+               long buildMillis, long peakHeapBytes, String error) {
+            this.algorithm = algorithm;
+            this.edgeCount = edgeCount;
+            this.applicationEdgeCount = applicationEdgeCount;
+            this.reachableMethodCount = reachableMethodCount;
+            this.buildMillis = buildMillis;
+            this.peakHeapBytes = peakHeapBytes;
+            this.error = error;
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        public int getEdgeCount() {
+            return edgeCount;
+        }
+
+        public int getApplicationEdgeCount() {
+            return applicationEdgeCount;
+        }
+
+        public int getReachableMethodCount() {
+            return reachableMethodCount;
+        }
+
+        public long getBuildMillis() {
+            return buildMillis;
+        }
+
+        public long getPeakHeapBytes() {
+            return peakHeapBytes;
+        }
+
+        /**
+         * 构建失败时的错误信息，成功时为null
+         */
+        public String getError() {
+            return error;
+        }
+    }
+
+    private final List<Result> results = new ArrayList<>();
+
+    void add(Result result) {
+        results.add(result);
+    }
+
+    public List<Result> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * 以表格形式输出报告
+     */
+    public String toTable() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-8s %10s %10s %10s %10s %12s%n",
+                "算法", "边数", "应用边数", "可达方法", "耗时(ms)", "堆峰值(MB)"));
+        for (Result result : results) {
+            if (result.error != null) {
+                table.append(String.format("%-8s 失败：%s%n", result.algorithm, result.error));
+                continue;
+            }
+            table.append(String.format("%-8s %10d %10d %10d %10d %12d%n",
+                    result.algorithm, result.edgeCount, result.applicationEdgeCount, result.reachableMethodCount,
+                    result.buildMillis, result.peakHeapBytes / (1024 * 1024)));
+        }
+        return table.toString();
+    }
+
+    /**
+     * 以JSON格式保存报告
+     */
+    void write(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            gson.toJson(results, writer);
+        }
+    }
+
+    /**
+     * 重置各堆内存池的峰值，之后用 {@link #peakHeapBytes()} 读取这段时间内的峰值
+     */
+    static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * 各堆内存池峰值之和，各池的峰值不一定同时出现，因此是实际峰值的上界
+     */
+    static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,333 @@
+package edu.thu.soot;
+
+import com.google.gson.stream.JsonWriter;
+import org.apache.commons.cli.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * 调用图的强连通分量
+ * 用迭代实现的Tarjan算法计算强连通分量，不会因调用链过深而栈溢出，并将其缩点为DAG。
+ *
+ * 分量按Tarjan算法完成的顺序编号，缩点后的边总是从编号大的分量指向编号小的分量，
+ * 因此按编号从小到大处理即为自底向上（被调用者先于调用者）的拓扑顺序，
+ * 自底向上的摘要分析只需按此顺序遍历一次，只有递归分量内部需要迭代到不动点
+ */
+public class CallGraphComponents {
+    private final CsrCallGraphReader graph;
+    private final int nodeCount;
+
+    private final int[] component;
+    private int componentCount;
+    // 分量的成员：memberOffsets[c] 到 memberOffsets[c + 1] 为 members 中分量c的节点
+    private int[] memberOffsets;
+    private int[] members;
+    // 缩点后的DAG，分量之间的重复边只保留一条；CallGraphQuery 在其上直接建立区间标签
+    int[] dagOffsets;
+    int[] dagTargets;
+    private boolean[] recursive;
+
+    private CallGraphComponents(CsrCallGraphReader graph) {
+        this.graph = graph;
+        this.nodeCount = graph.getNodeCount();
+        this.component = new int[nodeCount];
+    }
+
+    /**
+     * 计算调用图的强连通分量及缩点后的DAG
+     *
+     * @param graph CSR调用图
+     * @return 强连通分量
+     */
+    public static CallGraphComponents compute(CsrCallGraphReader graph) {
+        CallGraphComponents components = new CallGraphComponents(graph);
+        components.computeComponents();
+        components.buildCondensation();
+        return components;
+    }
+
+    /**
+     * 强连通分量的数量
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * 节点所在的分量编号
+     */
+    public int getComponent(int node) {
+        return component[node];
+    }
+
+    /**
+     * 分量包含的节点
+     */
+    public int[] getMembers(int component) {
+        return Arrays.copyOfRange(members, memberOffsets[component], memberOffsets[component + 1]);
+    }
+
+    /**
+     * 分量是否为递归：包含多个方法（相互递归），或唯一的方法调用了自身
+     */
+    public boolean isRecursive(int component) {
+        return recursive[component];
+    }
+
+    /**
+     * 递归分量的数量
+     */
+    public int getRecursiveComponentCount() {
+        int count = 0;
+        for (boolean value : recursive) {
+            if (value) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 缩点后分量c的后继分量数量
+     */
+    public int getSuccessorCount(int component) {
+        return dagOffsets[component + 1] - dagOffsets[component];
+    }
+
+    /**
+     * 缩点后分量c的第 index 个后继分量，编号总是小于c
+     */
+    public int getSuccessor(int component, int index) {
+        if (index < 0 || index >= getSuccessorCount(component)) {
+            throw new IndexOutOfBoundsException("后继编号越界：" + index);
+        }
+        return dagTargets[dagOffsets[component] + index];
+    }
+
+    /**
+     * 自底向上的拓扑顺序（被调用者在前），即分量编号从小到大
+     */
+    public int[] bottomUpOrder() {
+        int[] order = new int[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            order[c] = c;
+        }
+        return order;
+    }
+
+    /**
+     * 自顶向下的拓扑顺序（调用者在前），即分量编号从大到小
+     */
+    public int[] topologicalOrder() {
+        int[] order = new int[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            order[c] = componentCount - 1 - c;
+        }
+        return order;
+    }
+
+    /**
+     * 迭代实现的Tarjan算法，以显式的栈帧数组代替递归
+     */
+    private void computeComponents() {
+        int[] index = new int[nodeCount];
+        int[] lowLink = new int[nodeCount];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[nodeCount];
+        int[] stack = new int[nodeCount];
+        int stackSize = 0;
+        int[] frames = new int[nodeCount];
+        int[] edgePositions = new int[nodeCount];
+        int counter = 0;
+
+        for (int root = 0; root < nodeCount; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            frames[0] = root;
+            edgePositions[0] = 0;
+            index[root] = lowLink[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int node = frames[depth];
+                if (edgePositions[depth] < graph.getOutDegree(node)) {
+                    int next = graph.getSuccessor(node, edgePositions[depth]++);
+                    if (index[next] < 0) {
+                        index[next] = lowLink[next] = counter++;
+                        stack[stackSize++] = next;
+                        onStack[next] = true;
+                        depth++;
+                        frames[depth] = next;
+                        edgePositions[depth] = 0;
+                    } else if (onStack[next]) {
+                        lowLink[node] = Math.min(lowLink[node], index[next]);
+                    }
+                    continue;
+                }
+
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        component[member] = componentCount;
+                    } while (member != node);
+                    componentCount++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int parent = frames[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+    }
+
+    private void buildCondensation() {
+        // 按分量对节点做计数排序
+        memberOffsets = new int[componentCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            memberOffsets[component[node] + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            memberOffsets[c + 1] += memberOffsets[c];
+        }
+        members = new int[nodeCount];
+        int[] next = Arrays.copyOf(memberOffsets, componentCount);
+        for (int node = 0; node < nodeCount; node++) {
+            members[next[component[node]]++] = node;
+        }
+
+        recursive = new boolean[componentCount];
+        int[] lastSource = new int[componentCount];
+        Arrays.fill(lastSource, -1);
+        dagOffsets = new int[componentCount + 1];
+        int[] targets = new int[Math.max(16, componentCount)];
+        int edgeCount = 0;
+        for (int c = 0; c < componentCount; c++) {
+            recursive[c] = memberOffsets[c + 1] - memberOffsets[c] > 1;
+            for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+                int node = members[m];
+                int degree = graph.getOutDegree(node);
+                for (int i = 0; i < degree; i++) {
+                    int successor = graph.getSuccessor(node, i);
+                    int target = component[successor];
+                    if (target == c) {
+                        if (successor == node) {
+                            recursive[c] = true;
+                        }
+                        continue;
+                    }
+                    if (lastSource[target] == c) {
+                        continue;
+                    }
+                    lastSource[target] = c;
+                    if (edgeCount == targets.length) {
+                        targets = Arrays.copyOf(targets, edgeCount * 2);
+                    }
+                    targets[edgeCount++] = target;
+                }
+            }
+            dagOffsets[c + 1] = edgeCount;
+        }
+        dagTargets = Arrays.copyOf(targets, edgeCount);
+    }
+
+    /**
+     * 以自底向上的顺序写出分量，每个分量包含成员方法签名、是否递归以及被调用的分量编号
+     *
+     * @param file           输出文件
+     * @param prettyPrinting 是否美化输出
+     * @throws IOException 如果写入文件时发生IO错误
+     */
+    public void writeJson(Path file, boolean prettyPrinting) throws IOException {
+        try (JsonWriter writer = IndexJsonWriter.open(file, prettyPrinting)) {
+            writer.beginObject();
+            writer.name("methodCount").value(nodeCount);
+            writer.name("componentCount").value(componentCount);
+            writer.name("recursiveComponentCount").value(getRecursiveComponentCount());
+            writer.name("components");
+            writer.beginArray();
+            for (int c = 0; c < componentCount; c++) {
+                writer.beginObject();
+                writer.name("id").value(c);
+                writer.name("recursive").value(recursive[c]);
+                writer.name("methods");
+                writer.beginArray();
+                for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+                    writer.value(graph.getSignature(members[m]));
+                }
+                writer.endArray();
+                writer.name("callees");
+                writer.beginArray();
+                for (int i = dagOffsets[c]; i < dagOffsets[c + 1]; i++) {
+                    writer.value(dagTargets[i]);
+                }
+                writer.endArray();
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+    }
+
+    /**
+     * 命令行入口：SootCodeAnalyzer scc -g 调用图文件 [-o 输出文件] [--compact-json]
+     */
+    public static void main(String[] args) {
+        org.apache.commons.cli.Options cliOptions = new org.apache.commons.cli.Options();
+        cliOptions.addOption(Option.builder("g")
+                .longOpt("graph")
+                .desc("调用图文件：call_graph.csr，或 call_graph.json / call_graph.ndjson（可以是 .gz）")
+                .hasArg()
+                .required(true)
+                .build());
+        cliOptions.addOption(Option.builder("o")
+                .longOpt("output")
+                .desc("输出文件（默认为调用图所在目录下的 call_graph_scc.json）")
+                .hasArg()
+                .build());
+        cliOptions.addOption(Option.builder()
+                .longOpt("compact-json")
+                .desc("以紧凑格式输出（默认美化输出）")
+                .build());
+
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(cliOptions, args);
+        } catch (ParseException e) {
+            System.err.println("解析命令行参数出错：" + e.getMessage());
+            new HelpFormatter().printHelp("SootCodeAnalyzer scc", cliOptions);
+            return;
+        }
+
+        Path graphFile = Paths.get(cmd.getOptionValue("g"));
+        Path output = cmd.hasOption("o")
+                ? Paths.get(cmd.getOptionValue("o"))
+                : graphFile.toAbsolutePath().resolveSibling("call_graph_scc.json");
+        try (CallGraphQuery query = CallGraphQuery.open(graphFile)) {
+            long start = System.nanoTime();
+            CallGraphComponents components = compute(query.getGraph());
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            components.writeJson(output, !cmd.hasOption("compact-json"));
+
+            int largest = 0;
+            for (int c = 0; c < components.componentCount; c++) {
+                largest = Math.max(largest, components.memberOffsets[c + 1] - components.memberOffsets[c]);
+            }
+            System.out.printf("%d 个方法，%d 个强连通分量（%d 个递归，最大包含 %d 个方法），耗时 %d ms%n",
+                    components.nodeCount, components.componentCount, components.getRecursiveComponentCount(),
+                    largest, millis);
+            System.out.println("结果已保存到：" + output);
+        } catch (IOException e) {
+            System.err.println("计算强连通分量失败：" + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package edu.thu.soot;
+
+import com.google.gson.stream.JsonWriter;
+import org.apache.commons.cli.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * 两个版本调用图的差异比较
+ * 两个调用图的节点和边分别以流式方式读出，转换为带64位哈希的键后做外部排序：内存中最多保留 maxRecordsInMemory 条记录，
+ * 超出时排序后写入临时文件，最后多路归并。两个有序序列再归并一遍，逐条写出新增和删除的节点与边，
+ * 内存占用与调用图的大小无关。
+ *
+ * 键按（哈希，原文）排序，比较时先比较哈希，只有哈希相同时才比较字符串。
+ * 输出为NDJSON，每行一条 {"change": "added"|"removed", "node": "签名"} 或
+ * {"change": "added"|"removed", "edge": {"source": ..., "target": ..., "type": ...}}
+ */
+public class CallGraphDiff {
+    private static final char NODE_PREFIX = 'N';
+    private static final char EDGE_PREFIX = 'E';
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int maxRecordsInMemory;
+    private final boolean ignoreKind;
+
+    /**
+     * 比较结果的统计
+     */
+    public static class Summary {
+        int addedNodes;
+        int removedNodes;
+        int addedEdges;
+        int removedEdges;
+
+        public int getAddedNodes() {
+            return addedNodes;
+        }
+
+        public int getRemovedNodes() {
+            return removedNodes;
+        }
+
+        public int getAddedEdges() {
+            return addedEdges;
+        }
+
+        public int getRemovedEdges() {
+            return removedEdges;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("新增 %d 个方法、%d 条调用边，删除 %d 个方法、%d 条调用边",
+                    addedNodes, addedEdges, removedNodes, removedEdges);
+        }
+    }
+
+    /**
+     * @param maxRecordsInMemory 外部排序时内存中最多保留的记录数
+     * @param ignoreKind         比较边时忽略调用类型（比较 CallGraphGenerator 与 SootCodeAnalyzer -c 的输出时使用）
+     */
+    public CallGraphDiff(int maxRecordsInMemory, boolean ignoreKind) {
+        this.maxRecordsInMemory = Math.max(1, maxRecordsInMemory);
+        this.ignoreKind = ignoreKind;
+    }
+
+    /**
+     * 比较两个调用图文件（格式见 {@link CallGraphFiles}），以NDJSON写出差异
+     *
+     * @param oldGraph 旧版本调用图
+     * @param newGraph 新版本调用图
+     * @param out      差异输出
+     * @return 差异统计
+     * @throws IOException 如果读写文件时发生IO错误
+     */
+    public Summary diff(Path oldGraph, Path newGraph, Writer out) throws IOException {
+        Path tempDir = Files.createTempDirectory("call_graph_diff");
+        try (ExternalSorter oldKeys = sortKeys(oldGraph, tempDir.resolve("old"));
+             ExternalSorter newKeys = sortKeys(newGraph, tempDir.resolve("new"))) {
+            Summary summary = new Summary();
+            JsonWriter writer = IndexJsonWriter.newJsonWriter(out, false);
+            writer.setLenient(true);
+
+            Key oldKey = oldKeys.next();
+            Key newKey = newKeys.next();
+            while (oldKey != null || newKey != null) {
+                int order = oldKey == null ? 1 : newKey == null ? -1 : Key.ORDER.compare(oldKey, newKey);
+                if (order == 0) {
+                    oldKey = oldKeys.next();
+                    newKey = newKeys.next();
+                } else if (order < 0) {
+                    writeChange(writer, out, "removed", oldKey.text, summary);
+                    oldKey = oldKeys.next();
+                } else {
+                    writeChange(writer, out, "added", newKey.text, summary);
+                    newKey = newKeys.next();
+                }
+            }
+            writer.flush();
+            return summary;
+        } finally {
+            try (Stream<Path> files = Files.walk(tempDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private ExternalSorter sortKeys(Path graph, Path chunkDir) throws IOException {
+        Files.createDirectories(chunkDir);
+        ExternalSorter sorter = new ExternalSorter(chunkDir, maxRecordsInMemory);
+        try {
+            CallGraphFiles.read(graph, new CallGraphFiles.Visitor() {
+                @Override
+                public void node(String signature, int lineNumber, boolean application) throws IOException {
+                    sorter.add(NODE_PREFIX + "\t" + signature);
+                }
+
+                @Override
+                public void edge(String source, String target, String kind) throws IOException {
+                    sorter.add(EDGE_PREFIX + "\t" + source + "\t" + target + (ignoreKind ? "" : "\t" + kind));
+                }
+            });
+            sorter.finish();
+            return sorter;
+        } catch (IOException | RuntimeException e) {
+            sorter.close();
+            throw e;
+        }
+    }
+
+    private static void writeChange(JsonWriter writer, Writer out, String change, String text, Summary summary)
+            throws IOException {
+        String[] parts = text.split("\t");
+        boolean added = change.equals("added");
+
+        writer.beginObject();
+        writer.name("change").value(change);
+        if (parts[0].charAt(0) == NODE_PREFIX) {
+            writer.name("node").value(parts[1]);
+            if (added) {
+                summary.addedNodes++;
+            } else {
+                summary.removedNodes++;
+            }
+        } else {
+            writer.name("edge");
+            writer.beginObject();
+            writer.name("source").value(parts[1]);
+            writer.name("target").value(parts[2]);
+            if (parts.length > 3) {
+                writer.name("type").value(parts[3]);
+            }
+            writer.endObject();
+            if (added) {
+                summary.addedEdges++;
+            } else {
+                summary.removedEdges++;
+            }
+        }
+        writer.endObject();
+        out.write('\n');
+    }
+
+    /**
+     * 64位FNV-1a哈希，再做一次MurmurHash3的finalizer混合，使高位也分布均匀
+     */
+    static long hash(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 带哈希的排序键
+     */
+    private static final class Key {
+        static final Comparator<Key> ORDER = (a, b) -> {
+            int order = Long.compare(a.hash, b.hash);
+            return order != 0 ? order : a.text.compareTo(b.text);
+        };
+
+        final long hash;
+        final String text;
+
+        Key(long hash, String text) {
+            this.hash = hash;
+            this.text = text;
+        }
+    }
+
+    /**
+     * 外部排序：内存中的记录达到上限时排序并写入一个临时文件（块），结束后对所有块做多路归并，
+     * 按顺序逐条返回去重后的键
+     */
+    private static final class ExternalSorter implements Closeable {
+        private final Path chunkDir;
+        private final int maxRecords;
+        private final List<Key> buffer = new ArrayList<>();
+        private final List<Path> chunks = new ArrayList<>();
+
+        private final List<DataInputStream> inputs = new ArrayList<>();
+        private PriorityQueue<ChunkHead> heads;
+        private Key previous;
+        // 块数为0时直接遍历内存中的记录
+        private int bufferPosition = -1;
+
+        ExternalSorter(Path chunkDir, int maxRecords) {
+            this.chunkDir = chunkDir;
+            this.maxRecords = maxRecords;
+        }
+
+        void add(String text) throws IOException {
+            buffer.add(new Key(hash(text), text));
+            if (buffer.size() >= maxRecords) {
+                spill();
+            }
+        }
+
+        private void spill() throws IOException {
+            buffer.sort(Key.ORDER);
+            Path chunk = chunkDir.resolve("chunk-" + chunks.size());
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(chunk), BUFFER_SIZE))) {
+                Key last = null;
+                for (Key key : buffer) {
+                    if (last != null && Key.ORDER.compare(last, key) == 0) {
+                        continue;
+                    }
+                    byte[] bytes = key.text.getBytes(StandardCharsets.UTF_8);
+                    out.writeLong(key.hash);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                    last = key;
+                }
+            }
+            chunks.add(chunk);
+            buffer.clear();
+        }
+
+        /**
+         * 输入结束，准备归并
+         */
+        void finish() throws IOException {
+            if (chunks.isEmpty()) {
+                buffer.sort(Key.ORDER);
+                bufferPosition = 0;
+                return;
+            }
+            if (!buffer.isEmpty()) {
+                spill();
+            }
+            heads = new PriorityQueue<>(chunks.size(), (a, b) -> Key.ORDER.compare(a.key, b.key));
+            for (Path chunk : chunks) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(chunk), BUFFER_SIZE));
+                inputs.add(in);
+                Key key = read(in);
+                if (key != null) {
+                    heads.add(new ChunkHead(key, in));
+                }
+            }
+        }
+
+        /**
+         * 下一个键，已全部返回时为null
+         */
+        Key next() throws IOException {
+            while (true) {
+                Key key;
+                if (bufferPosition >= 0) {
+                    if (bufferPosition == buffer.size()) {
+                        return null;
+                    }
+                    key = buffer.get(bufferPosition++);
+                } else {
+                    ChunkHead head = heads.poll();
+                    if (head == null) {
+                        return null;
+                    }
+                    key = head.key;
+                    Key following = read(head.in);
+                    if (following != null) {
+                        heads.add(new ChunkHead(following, head.in));
+                    }
+                }
+                // 同一个键可能出现在多个块中
+                if (previous == null || Key.ORDER.compare(previous, key) != 0) {
+                    previous = key;
+                    return key;
+                }
+            }
+        }
+
+        private static Key read(DataInputStream in) throws IOException {
+            long hash;
+            try {
+                hash = in.readLong();
+            } catch (EOFException e) {
+                return null;
+            }
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new Key(hash, new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (DataInputStream in : inputs) {
+                in.close();
+            }
+            for (Path chunk : chunks) {
+                Files.deleteIfExists(chunk);
+            }
+        }
+
+        private static final class ChunkHead {
+            final Key key;
+            final DataInputStream in;
+
+            ChunkHead(Key key, DataInputStream in) {
+                this.key = key;
+                this.in = in;
+            }
+        }
+    }
+
+    /**
+     * 命令行入口：SootCodeAnalyzer diff --old 旧调用图 --new 新调用图 [-o 输出文件] [--ignore-kind] [--max-records N]
+     */
+    public static void main(String[] args) {
+        org.apache.commons.cli.Options cliOptions = new org.apache.commons.cli.Options();
+        cliOptions.addOption(Option.builder()
+                .longOpt("old")
+                .desc("旧版本的调用图文件")
+                .hasArg()
+                .required(true)
+                .build());
+        cliOptions.addOption(Option.builder()
+                .longOpt("new")
+                .desc("新版本的调用图文件")
+                .hasArg()
+                .required(true)
+                .build());
+        cliOptions.addOption(Option.builder("o")
+                .longOpt("output")
+                .desc("差异输出文件（NDJSON，以 .gz 结尾时压缩输出，默认输出到标准输出）")
+                .hasArg()
+                .build());
+        cliOptions.addOption(Option.builder()
+                .longOpt("ignore-kind")
+                .desc("比较边时忽略调用类型")
+                .build());
+        cliOptions.addOption(Option.builder()
+                .longOpt("max-records")
+                .desc("外部排序时内存中最多保留的记录数（默认1000000）")
+                .hasArg()
+                .build());
+
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(cliOptions, args);
+        } catch (ParseException e) {
+            System.err.println("解析命令行参数出错：" + e.getMessage());
+            new HelpFormatter().printHelp("SootCodeAnalyzer diff", cliOptions);
+            return;
+        }
+
+        try {
+            CallGraphDiff diff = new CallGraphDiff(Integer.parseInt(cmd.getOptionValue("max-records", "1000000")),
+                    cmd.hasOption("ignore-kind"));
+            Path oldGraph = Paths.get(cmd.getOptionValue("old"));
+            Path newGraph = Paths.get(cmd.getOptionValue("new"));
+            Summary summary;
+            if (cmd.hasOption("o")) {
+                String output = cmd.getOptionValue("o");
+                try (Writer out = IndexJsonWriter.openWriter(Paths.get(output), output.endsWith(".gz"))) {
+                    summary = diff.diff(oldGraph, newGraph, out);
+                }
+            } else {
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BUFFER_SIZE);
+                summary = diff.diff(oldGraph, newGraph, out);
+                out.flush();
+            }
+            System.err.println(summary);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("比较调用图失败：" + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package edu.thu.soot;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 调用图文件的流式读取工具
+ * 逐条回调节点和边，不在内存中保存整个调用图，支持以下格式：
+ * <ul>
+ *     <li>CallGraphGenerator 输出的 call_graph.json（{"nodes": [...], "edges": [...]}）</li>
+ *     <li>CallGraphGenerator 输出的 call_graph.ndjson（每行一条 {"node": {...}} 或 {"edge": {...}}）</li>
+ *     <li>SootCodeAnalyzer -c 输出的 call_graph.json（{"调用者": ["被调用者", ...]}），边没有调用类型</li>
+ *     <li>call_graph.csr</li>
+ * </ul>
+ * JSON格式的文件名以 .gz 结尾时按gzip解压读取
+ */
+final class CallGraphFiles {
+
+    /**
+     * 分析器调用图中的边没有调用类型，使用该名称
+     */
+    static final String UNKNOWN_KIND = "CALL";
+
+    private CallGraphFiles() {
+    }
+
+    /**
+     * 节点和边的访问器
+     */
+    interface Visitor {
+        /**
+         * @param signature   方法签名
+         * @param lineNumber  方法行号，未知时为-1
+         * @param application 是否为应用方法
+         */
+        void node(String signature, int lineNumber, boolean application) throws IOException;
+
+        void edge(String source, String target, String kind) throws IOException;
+    }
+
+    /**
+     * 读取调用图文件，同一个节点可能被回调多次（显式的节点记录，以及分析器格式中作为调用者或被调用者出现时）
+     *
+     * @param file    调用图文件
+     * @param visitor 访问器
+     * @throws IOException 如果文件无法读取或格式不正确
+     */
+    static void read(Path file, Visitor visitor) throws IOException {
+        if (file.getFileName().toString().endsWith(".csr")) {
+            readCsr(file, visitor);
+        } else {
+            readJson(file, visitor);
+        }
+    }
+
+    private static void readCsr(Path file, Visitor visitor) throws IOException {
+        try (CsrCallGraphReader graph = CsrCallGraphReader.open(file)) {
+            for (int node = 0; node < graph.getNodeCount(); node++) {
+                visitor.node(graph.getSignature(node), graph.getLineNumber(node), graph.isApplicationMethod(node));
+            }
+            for (int node = 0; node < graph.getNodeCount(); node++) {
+                String source = graph.getSignature(node);
+                int degree = graph.getOutDegree(node);
+                for (int i = 0; i < degree; i++) {
+                    visitor.edge(source, graph.getSignature(graph.getSuccessor(node, i)),
+                            graph.getKindName(graph.getSuccessorKind(node, i)));
+                }
+            }
+        }
+    }
+
+    private static void readJson(Path file, Visitor visitor) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        try (Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+             JsonReader json = new JsonReader(reader)) {
+            // NDJSON为多个顶层对象
+            json.setLenient(true);
+            while (json.peek() != JsonToken.END_DOCUMENT) {
+                json.beginObject();
+                while (json.hasNext()) {
+                    String name = json.nextName();
+                    if (name.equals("nodes") || name.equals("edges")) {
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            readRecord(json, name.equals("nodes"), visitor);
+                        }
+                        json.endArray();
+                    } else if (name.equals("node") || name.equals("edge")) {
+                        readRecord(json, name.equals("node"), visitor);
+                    } else if (json.peek() == JsonToken.BEGIN_ARRAY) {
+                        // 分析器格式：调用者 → 被调用者数组
+                        visitor.node(name, -1, true);
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            String callee = json.nextString();
+                            visitor.node(callee, -1, false);
+                            visitor.edge(name, callee, UNKNOWN_KIND);
+                        }
+                        json.endArray();
+                    } else {
+                        json.skipValue();
+                    }
+                }
+                json.endObject();
+            }
+        }
+    }
+
+    private static void readRecord(JsonReader json, boolean isNode, Visitor visitor) throws IOException {
+        String id = null;
+        String source = null;
+        String target = null;
+        String type = UNKNOWN_KIND;
+        int lineNumber = -1;
+        boolean application = false;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "id":
+                    id = json.nextString();
+                    break;
+                case "source":
+                    source = json.nextString();
+                    break;
+                case "target":
+                    target = json.nextString();
+                    break;
+                case "type":
+                    type = json.nextString();
+                    break;
+                case "lineNumber":
+                    lineNumber = json.nextInt();
+                    break;
+                case "isApplicationMethod":
+                    application = json.nextBoolean();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+
+        if (isNode) {
+            if (id != null) {
+                visitor.node(id, lineNumber, application);
+            }
+        } else if (source != null && target != null) {
+            visitor.edge(source, target, type);
+        }
+    }
+}
@@ -1,26 +1,25 @@
 package edu.thu.soot;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import soot.*;
-import soot.jimple.spark.SparkTransformer;
 import soot.jimple.toolkits.callgraph.CHATransformer;
 import soot.jimple.toolkits.callgraph.CallGraph;
 import soot.jimple.toolkits.callgraph.Edge;
 import soot.options.Options;
-import soot.tagkit.LineNumberTag;
 import soot.tagkit.SourceFileTag;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * 调用图生成工具
@@ -29,28 +28,65 @@ import java.util.*;
 public class CallGraphGenerator {
     private static final Logger logger = LoggerFactory.getLogger(CallGraphGenerator.class);
 
+    static final String LINE_NUMBER_CACHE_FILE = "line_number_cache.json";
+
     private final String appPath;
     private final String outputPath;
     private final String algorithm;
     private final Set<String> entryPoints = new HashSet<>();
 
-    // 记录方法的行号信息
-    private final Map<SootMethod, Integer> methodLineNumbers = new HashMap<>();
+    // 记录方法的行号信息（并行收集时由多个线程写入）
+    private final Map<SootMethod, Integer> methodLineNumbers = new ConcurrentHashMap<>();
+
+    // 各阶段耗时（毫秒），按执行顺序排列
+    private final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+
+    private OutputFormat outputFormat = OutputFormat.JSON;
+    private boolean jsonLines = false;
+    private boolean gzip = false;
+    private boolean lineNumberCache = true;
+    private int threads = 1;
+
+    // 按需构建调用图时虚调用的解析方式，为null时构建整个程序的调用图
+    private DemandResolution demandResolution;
+    private int maxDepth = -1;
+
+    // SPARK的选项和预算
+    private SparkProfile sparkProfile = SparkProfile.builtin(SparkProfile.DEFAULT);
 
     /**
      * 调用图类型
      */
     public enum CallGraphAlgorithm {
         CHA,   // Class Hierarchy Analysis (快速但不精确)
+        RTA,   // Rapid Type Analysis，只连接到实例化过的类型
+        VTA,   // Variable Type Analysis，按变量可能的类型解析
         SPARK  // Spark points-to analysis (慢但更精确)
     }
 
+    /**
+     * 按需构建调用图时虚调用的解析方式
+     */
+    public enum DemandResolution {
+        CHA, // 接收者静态类型的所有子类型中的实现
+        RTA  // 只考虑可达方法中实例化过的类型
+    }
+
+    /**
+     * 调用图输出格式
+     */
+    public enum OutputFormat {
+        JSON, // call_graph.json
+        CSR,  // call_graph.csr，可由CsrCallGraphReader内存映射查询
+        BOTH
+    }
+
     /**
      * 创建调用图生成器
      *
      * @param appPath    应用路径（类路径或JAR文件）
      * @param outputPath 输出路径
-     * @param algorithm  调用图算法（CHA或SPARK）
+     * @param algorithm  调用图算法（CHA、RTA、VTA或SPARK）
      */
     public CallGraphGenerator(String appPath, String outputPath, String algorithm) {
         this.appPath = appPath;
@@ -68,14 +104,95 @@ public class CallGraphGenerator {
         entryPoints.add(className + ":" + methodName);
     }
 
+    /**
+     * 设置调用图输出格式
+     *
+     * @param outputFormat 输出格式
+     */
+    public void setOutputFormat(OutputFormat outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    /**
+     * 设置是否以NDJSON格式（每行一条节点或边记录）输出 call_graph.ndjson
+     *
+     * @param jsonLines 是否输出NDJSON
+     */
+    public void setJsonLines(boolean jsonLines) {
+        this.jsonLines = jsonLines;
+    }
+
+    /**
+     * 设置JSON调用图是否以gzip压缩输出（文件名追加 .gz）
+     *
+     * @param gzip 是否压缩
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * 设置是否在输出目录中缓存方法行号（line_number_cache.json），默认开启
+     *
+     * @param lineNumberCache 是否缓存
+     */
+    public void setLineNumberCache(boolean lineNumberCache) {
+        this.lineNumberCache = lineNumberCache;
+    }
+
+    /**
+     * 设置收集方法行号时使用的线程数，小于等于1时串行收集
+     *
+     * @param threads 线程数
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * 设置按需构建调用图：只从入口点出发遍历可达的方法，不对整个程序运行CHA或SPARK
+     *
+     * @param resolution 虚调用的解析方式（CHA或RTA），为null时构建整个程序的调用图
+     */
+    public void setDemandDriven(DemandResolution resolution) {
+        this.demandResolution = resolution;
+    }
+
+    /**
+     * 设置按需构建调用图时的最大调用深度，入口点的深度为0，小于0表示不限制
+     *
+     * @param maxDepth 最大深度
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * 设置SPARK、RTA和VTA使用的调优配置，配置带预算时SPARK超出预算后退回CHA
+     *
+     * @param sparkProfile 调优配置
+     */
+    public void setSparkProfile(SparkProfile sparkProfile) {
+        this.sparkProfile = sparkProfile;
+    }
+
+    /**
+     * 最近一次生成调用图时各阶段的耗时（毫秒），按执行顺序排列
+     */
+    public Map<String, Long> getPhaseMillis() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(phaseMillis));
+    }
+
     /**
      * 生成调用图
      *
      * @return 是否生成成功
      */
     public boolean generate() {
+        phaseMillis.clear();
         try {
             logger.info("初始化Soot...");
+            long start = System.currentTimeMillis();
 
             // 配置Soot
             configureSoot();
@@ -89,17 +206,35 @@ public class CallGraphGenerator {
             } else {
                 logger.info("未指定入口点，使用默认入口点");
             }
+            start = recordPhase("加载类", start);
 
             // 收集方法行号信息
             collectMethodLineNumbers();
+            start = recordPhase("收集行号", start);
 
             // 生成调用图
             CallGraph callGraph = generateCallGraph();
+            String graphPhase = demandResolution != null ? "DEMAND-" + demandResolution : algorithm.toUpperCase(Locale.ROOT);
+            start = recordPhase("构建调用图(" + graphPhase + ")", start);
 
             // 处理并保存调用图
-            processAndSaveCallGraph(callGraph);
+            if (outputFormat != OutputFormat.CSR) {
+                processAndSaveCallGraph(callGraph);
+                start = recordPhase("保存JSON", start);
+            }
+            if (outputFormat != OutputFormat.JSON) {
+                saveCsrCallGraph(callGraph);
+                recordPhase("保存CSR", start);
+            }
 
-            logger.info("调用图生成完成");
+            StringBuilder timings = new StringBuilder();
+            for (Map.Entry<String, Long> phase : phaseMillis.entrySet()) {
+                if (timings.length() > 0) {
+                    timings.append("，");
+                }
+                timings.append(phase.getKey()).append(' ').append(phase.getValue()).append(" ms");
+            }
+            logger.info("调用图生成完成，各阶段耗时：{}", timings);
             return true;
 
         } catch (Exception e) {
@@ -108,6 +243,65 @@ public class CallGraphGenerator {
         }
     }
 
+    /**
+     * 依次用每种算法构建调用图并对比边数、耗时和内存峰值，不输出调用图
+     * 每种算法都重新加载类，方法体的构建计入各自的耗时；报告保存为输出目录下的 call_graph_comparison.json
+     *
+     * @param algorithms 参与对比的算法
+     * @return 对比报告
+     */
+    public CallGraphComparison compareAlgorithms(List<CallGraphAlgorithm> algorithms) throws IOException {
+        CallGraphComparison comparison = new CallGraphComparison();
+        for (CallGraphAlgorithm candidate : algorithms) {
+            configureSoot();
+            Scene.v().loadNecessaryClasses();
+            if (!entryPoints.isEmpty()) {
+                setupEntryPoints();
+            }
+
+            logger.info("对比：使用 {} 算法构建调用图...", candidate);
+            System.gc();
+            CallGraphComparison.resetPeakHeap();
+            long start = System.currentTimeMillis();
+            try {
+                CallGraph callGraph = buildCallGraph(candidate, sparkProfile);
+                long millis = System.currentTimeMillis() - start;
+                long peakHeap = CallGraphComparison.peakHeapBytes();
+
+                int applicationEdges = 0;
+                for (Edge edge : callGraph) {
+                    if (!isLibraryMethod(edge.src()) || !isLibraryMethod(edge.tgt())) {
+                        applicationEdges++;
+                    }
+                }
+                comparison.add(new CallGraphComparison.Result(candidate.name(), callGraph.size(), applicationEdges,
+                        Scene.v().getReachableMethods().size(), millis, peakHeap, null));
+            } catch (RuntimeException | OutOfMemoryError e) {
+                logger.error("{} 算法构建调用图失败: {}", candidate, e.getMessage());
+                comparison.add(new CallGraphComparison.Result(candidate.name(), 0, 0, 0,
+                        System.currentTimeMillis() - start, CallGraphComparison.peakHeapBytes(), String.valueOf(e)));
+            }
+        }
+        G.reset();
+
+        Path file = Paths.get(outputPath, "call_graph_comparison.json");
+        comparison.write(file);
+        logger.info("调用图算法对比：\n{}", comparison.toTable());
+        logger.info("对比报告已保存: {}", file);
+        return comparison;
+    }
+
+    /**
+     * 记录从 start 到现在的阶段耗时
+     *
+     * @return 当前时间，作为下一阶段的开始时间
+     */
+    private long recordPhase(String phase, long start) {
+        long now = System.currentTimeMillis();
+        phaseMillis.put(phase, now - start);
+        return now;
+    }
+
     /**
      * 配置Soot
      */
@@ -137,6 +331,23 @@ public class CallGraphGenerator {
      * 设置入口点
      */
     private void setupEntryPoints() {
+        List<SootMethod> entryPointList = resolveEntryPoints(entryPoints);
+
+        if (!entryPointList.isEmpty()) {
+            logger.info("设置 {} 个自定义入口点", entryPointList.size());
+            Scene.v().setEntryPoints(entryPointList);
+        } else {
+            logger.info("未找到有效的入口点，使用默认入口点");
+        }
+    }
+
+    /**
+     * 解析入口点
+     *
+     * @param entryPoints 入口点，格式为 类名:方法名 或 类名:*（类的所有非抽象方法）
+     * @return 找到的入口方法，找不到的入口点会被跳过
+     */
+    static List<SootMethod> resolveEntryPoints(Collection<String> entryPoints) {
         List<SootMethod> entryPointList = new ArrayList<>();
 
         for (String entryPoint : entryPoints) {
@@ -171,58 +382,82 @@ public class CallGraphGenerator {
             }
         }
 
-        if (!entryPointList.isEmpty()) {
-            logger.info("设置 {} 个自定义入口点", entryPointList.size());
-            Scene.v().setEntryPoints(entryPointList);
-        } else {
-            logger.info("未找到有效的入口点，使用默认入口点");
-        }
+        return entryPointList;
     }
 
     /**
      * 收集方法行号信息
      */
-    private void collectMethodLineNumbers() {
+    private void collectMethodLineNumbers() throws IOException {
         logger.info("收集方法行号信息...");
 
-        for (SootClass sootClass : Scene.v().getApplicationClasses()) {
-            if (sootClass.isPhantom()) {
-                continue;
-            }
+        // 直接从class文件的LineNumberTable读取行号，内容未变化的类复用上次的结果
+        Path cacheFile = lineNumberCache ? Paths.get(outputPath, LINE_NUMBER_CACHE_FILE) : null;
+        MethodLineNumbers lineNumbers = MethodLineNumbers.load(appPath, cacheFile, threads);
+        logger.info("解析 {} 个类的行号表，复用缓存 {} 个", lineNumbers.getParsedClassCount(), lineNumbers.getReusedClassCount());
 
-            for (SootMethod method : sootClass.getMethods()) {
-                int lineNumber = findMethodLineNumber(method);
-                if (lineNumber > 0) {
-                    methodLineNumbers.put(method, lineNumber);
+        Map<String, List<String>> sourceFiles = new ConcurrentHashMap<>();
+        List<SootClass> applicationClasses = new ArrayList<>(Scene.v().getApplicationClasses());
+
+        if (threads <= 1) {
+            for (SootClass sootClass : applicationClasses) {
+                collectClassLineNumbers(sootClass, lineNumbers, sourceFiles);
+            }
+        } else {
+            // 每个类的行号互不依赖，在有界线程池中并行收集
+            logger.info("使用 {} 个线程并行收集 {} 个应用类的行号", threads, applicationClasses.size());
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>(applicationClasses.size());
+                for (SootClass sootClass : applicationClasses) {
+                    futures.add(executor.submit(() -> collectClassLineNumbers(sootClass, lineNumbers, sourceFiles)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("并行收集行号被中断", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("并行收集行号失败：" + e.getCause().getMessage(), e.getCause());
+            } finally {
+                executor.shutdownNow();
             }
         }
 
+        if (cacheFile != null) {
+            lineNumbers.save(cacheFile);
+        }
+
         logger.info("收集到 {} 个方法的行号信息", methodLineNumbers.size());
     }
 
     /**
-     * 查找方法的行号
+     * 收集单个类中所有方法的行号
      */
-    private int findMethodLineNumber(SootMethod method) {
-        // 首先尝试从方法体中获取行号
-        if (!method.hasActiveBody()) {
-            try {
-                method.retrieveActiveBody();
-            } catch (Exception e) {
-                return -1;
-            }
+    private void collectClassLineNumbers(SootClass sootClass, MethodLineNumbers lineNumbers, Map<String, List<String>> sourceFiles) {
+        if (sootClass.isPhantom()) {
+            return;
         }
 
-        Body body = method.getActiveBody();
-        for (Unit unit : body.getUnits()) {
-            LineNumberTag tag = (LineNumberTag) unit.getTag("LineNumberTag");
-            if (tag != null) {
-                return tag.getLineNumber();
+        for (SootMethod method : sootClass.getMethods()) {
+            String methodKey = MethodLineNumbers.methodKey(method.getBytecodeSignature());
+            int lineNumber = lineNumbers.get(sootClass.getName(), methodKey);
+            if (lineNumber == MethodLineNumbers.NEEDS_SOURCE) {
+                // 有字节码但没有行号表时，从源文件查找
+                lineNumber = findSourceLineNumber(method, sourceFiles);
+                lineNumbers.put(sootClass.getName(), methodKey, lineNumber);
+            }
+            if (lineNumber > 0) {
+                methodLineNumbers.put(method, lineNumber);
             }
         }
+    }
 
-        // 如果从方法体中无法获取行号，尝试从源文件解析
+    /**
+     * 在源文件中查找方法定义的行号，每个源文件只读取一次
+     */
+    private int findSourceLineNumber(SootMethod method, Map<String, List<String>> sourceFiles) {
         try {
             SootClass declaringClass = method.getDeclaringClass();
             SourceFileTag sourceFileTag = (SourceFileTag) declaringClass.getTag("SourceFileTag");
@@ -241,8 +476,14 @@ public class CallGraphGenerator {
                 }
             }
 
-            // 读取源文件内容
-            List<String> lines = Files.readAllLines(file.toPath());
+            // 读取源文件内容，每个源文件只读取一次
+            List<String> lines = sourceFiles.computeIfAbsent(file.getPath(), path -> {
+                try {
+                    return Files.readAllLines(Paths.get(path));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
             String methodName = method.getName();
 
             // 在源文件中查找方法定义
@@ -277,25 +518,80 @@ public class CallGraphGenerator {
      * 生成调用图
      */
     private CallGraph generateCallGraph() {
+        if (demandResolution != null) {
+            // 只从入口点出发遍历可达方法
+            logger.info("按需构建调用图，虚调用解析方式 {}，最大深度 {}", demandResolution, maxDepth < 0 ? "不限" : maxDepth);
+            CallGraph callGraph = new DemandCallGraphBuilder(demandResolution, maxDepth).build(Scene.v().getEntryPoints());
+            Scene.v().setCallGraph(callGraph);
+            return callGraph;
+        }
+
         logger.info("使用 {} 算法生成调用图...", algorithm);
+        try {
+            return buildCallGraph(parseAlgorithm(algorithm), sparkProfile);
+        } catch (BudgetedSparkTransformer.BudgetExceededException e) {
+            logger.warn("{}，退回CHA构建调用图", e.getMessage());
+            return fallBackToCha();
+        }
+    }
 
-        if (CallGraphAlgorithm.SPARK.name().equalsIgnoreCase(algorithm)) {
-            // 使用Spark算法
-            HashMap<String, String> sparkOptions = new HashMap<>();
-            sparkOptions.put("verbose", "true");
-            sparkOptions.put("propagator", "worklist");
-            sparkOptions.put("simple-edges-bidirectional", "false");
-            sparkOptions.put("on-fly-cg", "true");
-            sparkOptions.put("set-impl", "double");
-            sparkOptions.put("double-set-old", "hybrid");
-            sparkOptions.put("double-set-new", "hybrid");
-
-            SparkTransformer.v().transform("", sparkOptions);
-        } else {
-            // 默认使用CHA算法
+    /**
+     * 解析算法名称，无法识别时使用CHA
+     */
+    static CallGraphAlgorithm parseAlgorithm(String algorithm) {
+        try {
+            return CallGraphAlgorithm.valueOf(algorithm.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warn("不支持的调用图算法 {}，使用CHA", algorithm);
+            return CallGraphAlgorithm.CHA;
+        }
+    }
+
+    /**
+     * 用指定算法为当前Scene构建调用图
+     * RTA和VTA是Spark的两种退化配置：RTA所有变量共用一个指向集，VTA按字段和变量的类型传播，
+     * 二者都不能在传播时构建调用图（on-fly-cg），先用CHA得到初始调用图
+     */
+    static CallGraph buildCallGraph(CallGraphAlgorithm algorithm) {
+        return buildCallGraph(algorithm, SparkProfile.builtin(SparkProfile.DEFAULT));
+    }
+
+    /**
+     * 用指定算法和SPARK调优配置为当前Scene构建调用图
+     *
+     * @throws BudgetedSparkTransformer.BudgetExceededException 配置带预算且传播超出预算时
+     */
+    static CallGraph buildCallGraph(CallGraphAlgorithm algorithm, SparkProfile profile) {
+        if (algorithm == CallGraphAlgorithm.CHA) {
             CHATransformer.v().transform();
+            return Scene.v().getCallGraph();
         }
 
+        Map<String, String> sparkOptions = profile.toPhaseOptions();
+        if (algorithm == CallGraphAlgorithm.RTA) {
+            sparkOptions.put("rta", "true");
+            sparkOptions.put("on-fly-cg", "false");
+        } else if (algorithm == CallGraphAlgorithm.VTA) {
+            sparkOptions.put("vta", "true");
+            sparkOptions.put("on-fly-cg", "false");
+        }
+
+        profile.newTransformer().transform("", sparkOptions);
+        return Scene.v().getCallGraph();
+    }
+
+    /**
+     * SPARK中止后丢弃它留下的调用图和指针分析，改用CHA构建调用图
+     * 使用 apponly 的CHA：以所有应用类方法为入口，不展开库方法中的调用，避免退回后在JDK上再次耗时过长
+     */
+    static CallGraph fallBackToCha() {
+        Scene.v().releaseCallGraph();
+        Scene.v().releaseReachableMethods();
+        Scene.v().releasePointsToAnalysis();
+        Map<String, String> chaOptions = new HashMap<>();
+        chaOptions.put("enabled", "true");
+        chaOptions.put("apponly", "true");
+        CHATransformer.v().transform("cg.cha", chaOptions);
         return Scene.v().getCallGraph();
     }
 
@@ -311,17 +607,34 @@ public class CallGraphGenerator {
             Files.createDirectories(outputDir);
         }
 
-        // 准备JSON对象
-        JsonObject rootObject = new JsonObject();
-        JsonArray nodesArray = new JsonArray();
-        JsonArray edgesArray = new JsonArray();
+        // 遍历调用图的同时流式写出节点和边
+        CallGraphJsonWriter writer = new CallGraphJsonWriter(methodLineNumbers, gzip);
+        String fileName = jsonLines ? "call_graph.ndjson" : "call_graph.json";
+        if (gzip) {
+            fileName += ".gz";
+        }
+        Path file = outputDir.resolve(fileName);
+        if (jsonLines) {
+            writer.writeLines(callGraph, file);
+        } else {
+            writer.write(callGraph, file);
+        }
 
-        // 记录已添加的方法
-        Set<SootMethod> addedMethods = new HashSet<>();
-        int methodCount = 0;
-        int edgeCount = 0;
+        logger.info("调用图已保存: {} 个方法, {} 条调用边", writer.getMethodCount(), writer.getEdgeCount());
+    }
+
+    /**
+     * 以CSR格式保存调用图
+     * 节点按首次出现的顺序编号，跳过库方法之间的调用，与JSON输出包含相同的节点和边
+     */
+    private void saveCsrCallGraph(CallGraph callGraph) throws IOException {
+        logger.info("保存CSR格式调用图...");
+
+        Files.createDirectories(Paths.get(outputPath));
+
+        CsrCallGraphWriter writer = new CsrCallGraphWriter();
+        Map<SootMethod, Integer> nodeIds = new HashMap<>();
 
-        // 处理调用关系
         Iterator<Edge> edgeIterator = callGraph.iterator();
         while (edgeIterator.hasNext()) {
             Edge edge = edgeIterator.next();
@@ -333,106 +646,28 @@ public class CallGraphGenerator {
                 continue;
             }
 
-            // 添加源方法节点
-            if (!addedMethods.contains(src)) {
-                addMethodNode(nodesArray, src);
-                addedMethods.add(src);
-                methodCount++;
-            }
-
-            // 添加目标方法节点
-            if (!addedMethods.contains(tgt)) {
-                addMethodNode(nodesArray, tgt);
-                addedMethods.add(tgt);
-                methodCount++;
-            }
-
-            // 添加边
-            addCallEdge(edgesArray, src, tgt, edge.kind());
-            edgeCount++;
+            writer.addEdge(csrNode(writer, nodeIds, src), csrNode(writer, nodeIds, tgt), edge.kind().toString());
         }
 
-        rootObject.add("nodes", nodesArray);
-        rootObject.add("edges", edgesArray);
-
-        // 保存为JSON文件
-        Gson gson = new GsonBuilder()
-                .setPrettyPrinting()
-                .disableHtmlEscaping() // 禁用HTML转义，让<>符号正常显示
-                .create();
-        try (FileWriter writer = new FileWriter(outputPath + "/call_graph.json")) {
-            gson.toJson(rootObject, writer);
-        }
-
-        logger.info("调用图已保存: {} 个方法, {} 条调用边", methodCount, edgeCount);
+        Path file = Paths.get(outputPath, "call_graph.csr");
+        writer.write(file);
+        logger.info("CSR调用图已保存: {} 个方法, {} 条调用边", writer.getNodeCount(), writer.getEdgeCount());
     }
 
-    /**
-     * 添加方法节点
-     */
-    private void addMethodNode(JsonArray nodesArray, SootMethod method) {
-        JsonObject methodObject = new JsonObject();
-
-        methodObject.addProperty("id", method.getSignature());
-        methodObject.addProperty("name", method.getName());
-        methodObject.addProperty("class", method.getDeclaringClass().getName());
-        methodObject.addProperty("returnType", method.getReturnType().toString());
-        methodObject.addProperty("modifier", Modifier.toString(method.getModifiers()));
-        methodObject.addProperty("isApplicationMethod", !isLibraryMethod(method));
-
-        // 添加源文件和行号信息
-        SootClass declaringClass = method.getDeclaringClass();
-        SourceFileTag sourceFileTag = (SourceFileTag) declaringClass.getTag("SourceFileTag");
-        if (sourceFileTag != null) {
-            methodObject.addProperty("sourceFile", sourceFileTag.getSourceFile());
-        }
-
-        Integer lineNumber = methodLineNumbers.get(method);
-        if (lineNumber != null) {
-            methodObject.addProperty("lineNumber", lineNumber);
+    private int csrNode(CsrCallGraphWriter writer, Map<SootMethod, Integer> nodeIds, SootMethod method) {
+        Integer id = nodeIds.get(method);
+        if (id == null) {
+            Integer lineNumber = methodLineNumbers.get(method);
+            id = writer.addNode(method.getSignature(), lineNumber != null ? lineNumber : -1, !isLibraryMethod(method));
+            nodeIds.put(method, id);
         }
-
-        // 添加参数信息
-        JsonArray paramsArray = new JsonArray();
-        for (int i = 0; i < method.getParameterCount(); i++) {
-            JsonObject paramObject = new JsonObject();
-            paramObject.addProperty("type", method.getParameterType(i).toString());
-            paramsArray.add(paramObject);
-        }
-        methodObject.add("parameters", paramsArray);
-
-        nodesArray.add(methodObject);
-    }
-
-    /**
-     * 添加调用边
-     */
-    private void addCallEdge(JsonArray edgesArray, SootMethod src, SootMethod tgt, Kind kind) {
-        JsonObject edgeObject = new JsonObject();
-
-        edgeObject.addProperty("source", src.getSignature());
-        edgeObject.addProperty("target", tgt.getSignature());
-        edgeObject.addProperty("type", kind.toString());
-
-        // 添加源方法行号
-        Integer srcLineNumber = methodLineNumbers.get(src);
-        if (srcLineNumber != null) {
-            edgeObject.addProperty("sourceLineNumber", srcLineNumber);
-        }
-
-        // 添加目标方法行号
-        Integer tgtLineNumber = methodLineNumbers.get(tgt);
-        if (tgtLineNumber != null) {
-            edgeObject.addProperty("targetLineNumber", tgtLineNumber);
-        }
-
-        edgesArray.add(edgeObject);
+        return id;
     }
 
     /**
      * 判断是否为库方法
      */
-    private boolean isLibraryMethod(SootMethod method) {
+    static boolean isLibraryMethod(SootMethod method) {
         SootClass declaringClass = method.getDeclaringClass();
         return declaringClass.isLibraryClass() || declaringClass.isJavaLibraryClass();
     }
@@ -441,23 +676,151 @@ public class CallGraphGenerator {
      * 主方法
      */
     public static void main(String[] args) {
-        if (args.length < 2) {
-            System.out.println("用法: java CallGraphGenerator <应用路径> <输出路径> [算法] [入口点...]");
-            System.out.println("  算法: CHA (默认) 或 SPARK");
+        // 分离选项和位置参数
+        OutputFormat format = OutputFormat.JSON;
+        boolean jsonLines = false;
+        boolean gzip = false;
+        boolean lineNumberCache = true;
+        int threads = 1;
+        DemandResolution demand = null;
+        int maxDepth = -1;
+        List<CallGraphAlgorithm> compare = null;
+        String sparkProfileName = SparkProfile.DEFAULT;
+        long sparkTimeout = -1;
+        long sparkMaxHeap = -1;
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String value = null;
+            if (args[i].equals("--ndjson")) {
+                jsonLines = true;
+                continue;
+            } else if (args[i].equals("--gzip")) {
+                gzip = true;
+                continue;
+            } else if (args[i].equals("--no-line-cache")) {
+                lineNumberCache = false;
+                continue;
+            } else if (args[i].equals("--demand") || args[i].startsWith("--demand=")) {
+                String resolution = args[i].equals("--demand") ? "CHA" : args[i].substring("--demand=".length());
+                try {
+                    demand = DemandResolution.valueOf(resolution.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    System.out.println("不支持的按需解析方式: " + resolution);
+                    System.exit(1);
+                }
+                continue;
+            } else if (args[i].equals("--compare") || args[i].startsWith("--compare=")) {
+                String names = args[i].equals("--compare") ? "cha,rta,vta,spark" : args[i].substring("--compare=".length());
+                compare = new ArrayList<>();
+                for (String name : names.split(",")) {
+                    try {
+                        compare.add(CallGraphAlgorithm.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("不支持的调用图算法: " + name);
+                        System.exit(1);
+                    }
+                }
+                continue;
+            } else if (args[i].startsWith("--max-depth=")) {
+                String depth = args[i].substring("--max-depth=".length());
+                try {
+                    maxDepth = Integer.parseInt(depth);
+                } catch (NumberFormatException e) {
+                    System.out.println("无效的最大深度: " + depth);
+                    System.exit(1);
+                }
+                continue;
+            } else if (args[i].startsWith("--threads=") || (args[i].equals("--threads") && i + 1 < args.length)) {
+                String count = args[i].startsWith("--threads=") ? args[i].substring("--threads=".length()) : args[++i];
+                try {
+                    threads = Integer.parseInt(count);
+                } catch (NumberFormatException e) {
+                    System.out.println("无效的线程数: " + count);
+                    System.exit(1);
+                }
+                continue;
+            } else if (args[i].startsWith("--spark-profile=")) {
+                sparkProfileName = args[i].substring("--spark-profile=".length());
+                continue;
+            } else if (args[i].startsWith("--spark-timeout=") || args[i].startsWith("--spark-max-heap=")) {
+                String budget = args[i].substring(args[i].indexOf('=') + 1);
+                try {
+                    if (args[i].startsWith("--spark-timeout=")) {
+                        sparkTimeout = Long.parseLong(budget);
+                    } else {
+                        sparkMaxHeap = Long.parseLong(budget);
+                    }
+                } catch (NumberFormatException e) {
+                    System.out.println("无效的SPARK预算: " + budget);
+                    System.exit(1);
+                }
+                continue;
+            } else if (args[i].startsWith("--format=")) {
+                value = args[i].substring("--format=".length());
+            } else if (args[i].equals("--format") && i + 1 < args.length) {
+                value = args[++i];
+            } else {
+                positional.add(args[i]);
+                continue;
+            }
+            try {
+                format = OutputFormat.valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.out.println("不支持的输出格式: " + value);
+                System.exit(1);
+            }
+        }
+
+        if (positional.size() < 2) {
+            System.out.println("用法: java CallGraphGenerator <应用路径> <输出路径> [算法] [入口点...] [--format=json|csr|both] [--ndjson] [--gzip] [--no-line-cache] [--threads=N] [--demand[=cha|rta]] [--max-depth=N] [--compare[=cha,rta,vta,spark]] [--spark-profile=default|pointsto|precise|fast|文件] [--spark-timeout=秒] [--spark-max-heap=MB]");
+            System.out.println("  算法: CHA (默认)、RTA、VTA 或 SPARK");
             System.out.println("  入口点格式: 类名:方法名 (例如 com.example.Main:main)");
             System.out.println("            或 类名:* (表示类的所有方法)");
+            System.out.println("  输出格式: json (默认，call_graph.json)、csr (call_graph.csr) 或 both");
+            System.out.println("  --ndjson: JSON调用图改为每行一条记录的 call_graph.ndjson");
+            System.out.println("  --gzip: JSON调用图以gzip压缩输出");
+            System.out.println("  --no-line-cache: 不读取也不保存方法行号缓存 line_number_cache.json");
+            System.out.println("  --threads: 并行收集方法行号的线程数（默认 1）");
+            System.out.println("  --demand: 只从入口点出发按需构建调用图，虚调用按 cha（默认）或 rta 解析");
+            System.out.println("  --max-depth: 按需构建时从入口点出发的最大调用深度（默认不限）");
+            System.out.println("  --compare: 依次用各算法构建调用图，对比边数、耗时和内存峰值，保存 call_graph_comparison.json");
+            System.out.println("  --spark-profile: SPARK调优配置，内置 default（默认）、pointsto、precise、fast，或properties文件");
+            System.out.println("  --spark-timeout / --spark-max-heap: SPARK传播的时间（秒）和堆内存（MB）预算，超出后退回CHA");
             return;
         }
 
-        String appPath = args[0];
-        String outputPath = args[1];
-        String algorithm = args.length > 2 ? args[2] : CallGraphAlgorithm.CHA.name();
+        String appPath = positional.get(0);
+        String outputPath = positional.get(1);
+        String algorithm = positional.size() > 2 ? positional.get(2) : CallGraphAlgorithm.CHA.name();
 
         CallGraphGenerator generator = new CallGraphGenerator(appPath, outputPath, algorithm);
+        generator.setOutputFormat(format);
+        generator.setJsonLines(jsonLines);
+        generator.setGzip(gzip);
+        generator.setLineNumberCache(lineNumberCache);
+        generator.setThreads(threads);
+        generator.setDemandDriven(demand);
+        generator.setMaxDepth(maxDepth);
+        try {
+            generator.setSparkProfile(SparkProfile.resolve(sparkProfileName).withBudget(sparkTimeout, sparkMaxHeap));
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("无法加载SPARK配置: " + e.getMessage());
+            System.exit(1);
+        }
 
         // 添加自定义入口点
-        for (int i = 3; i < args.length; i++) {
-            generator.addEntryPoint(args[i].split(":")[0], args[i].split(":")[1]);
+        for (int i = 3; i < positional.size(); i++) {
+            generator.addEntryPoint(positional.get(i).split(":")[0], positional.get(i).split(":")[1]);
+        }
+
+        if (compare != null) {
+            try {
+                generator.compareAlgorithms(compare);
+                System.exit(0);
+            } catch (Exception e) {
+                logger.error("对比调用图算法时出错: " + e.getMessage(), e);
+                System.exit(1);
+            }
         }
 
         // 生成调用图
@@ -0,0 +1,218 @@
+package edu.thu.soot;
+
+import com.google.gson.stream.JsonWriter;
+import soot.Modifier;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.tagkit.SourceFileTag;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 调用图的流式JSON输出工具
+ * 遍历调用图的同时逐条写出节点和边，不再先在内存中构建完整的JSON树，保存阶段的内存占用只与节点数有关
+ *
+ * JSON格式遍历两遍调用图：第一遍按首次出现的顺序写出节点，第二遍写出边，
+ * 结果与原先 Gson 美化输出的 {"nodes": [...], "edges": [...]} 完全一致。
+ * NDJSON格式只遍历一遍，每行一条 {"node": {...}} 或 {"edge": {...}} 记录，节点总是出现在引用它的边之前
+ */
+class CallGraphJsonWriter {
+    private final Map<SootMethod, Integer> methodLineNumbers;
+    private final boolean gzip;
+
+    private int methodCount;
+    private int edgeCount;
+
+    /**
+     * @param methodLineNumbers 方法行号
+     * @param gzip              是否以gzip压缩写出
+     */
+    CallGraphJsonWriter(Map<SootMethod, Integer> methodLineNumbers, boolean gzip) {
+        this.methodLineNumbers = methodLineNumbers;
+        this.gzip = gzip;
+    }
+
+    /**
+     * 以JSON格式写出调用图（美化输出）
+     *
+     * @param callGraph 调用图
+     * @param file      输出文件
+     * @throws IOException 如果写入文件时发生IO错误
+     */
+    void write(CallGraph callGraph, Path file) throws IOException {
+        methodCount = 0;
+        edgeCount = 0;
+
+        try (JsonWriter writer = IndexJsonWriter.newJsonWriter(IndexJsonWriter.openWriter(file, gzip), true)) {
+            writer.beginObject();
+
+            // 第一遍：节点
+            writer.name("nodes");
+            writer.beginArray();
+            Set<SootMethod> addedMethods = new HashSet<>();
+            Iterator<Edge> edgeIterator = callGraph.iterator();
+            while (edgeIterator.hasNext()) {
+                Edge edge = edgeIterator.next();
+                if (isSkipped(edge)) {
+                    continue;
+                }
+                if (addedMethods.add(edge.src())) {
+                    writeMethodNode(writer, edge.src());
+                    methodCount++;
+                }
+                if (addedMethods.add(edge.tgt())) {
+                    writeMethodNode(writer, edge.tgt());
+                    methodCount++;
+                }
+            }
+            writer.endArray();
+
+            // 第二遍：边
+            writer.name("edges");
+            writer.beginArray();
+            edgeIterator = callGraph.iterator();
+            while (edgeIterator.hasNext()) {
+                Edge edge = edgeIterator.next();
+                if (!isSkipped(edge)) {
+                    writeCallEdge(writer, edge);
+                    edgeCount++;
+                }
+            }
+            writer.endArray();
+
+            writer.endObject();
+        }
+    }
+
+    /**
+     * 以NDJSON格式写出调用图，每行一条记录
+     *
+     * @param callGraph 调用图
+     * @param file      输出文件
+     * @throws IOException 如果写入文件时发生IO错误
+     */
+    void writeLines(CallGraph callGraph, Path file) throws IOException {
+        methodCount = 0;
+        edgeCount = 0;
+
+        try (Writer out = IndexJsonWriter.openWriter(file, gzip)) {
+            // JsonWriter直接写入out，宽松模式下允许多个顶层值，换行由out写出
+            JsonWriter writer = IndexJsonWriter.newJsonWriter(out, false);
+            writer.setLenient(true);
+
+            Set<SootMethod> addedMethods = new HashSet<>();
+            Iterator<Edge> edgeIterator = callGraph.iterator();
+            while (edgeIterator.hasNext()) {
+                Edge edge = edgeIterator.next();
+                if (isSkipped(edge)) {
+                    continue;
+                }
+                if (addedMethods.add(edge.src())) {
+                    writeRecord(writer, out, "node", edge.src(), null);
+                    methodCount++;
+                }
+                if (addedMethods.add(edge.tgt())) {
+                    writeRecord(writer, out, "node", edge.tgt(), null);
+                    methodCount++;
+                }
+                writeRecord(writer, out, "edge", null, edge);
+                edgeCount++;
+            }
+            writer.flush();
+        }
+    }
+
+    int getMethodCount() {
+        return methodCount;
+    }
+
+    int getEdgeCount() {
+        return edgeCount;
+    }
+
+    private void writeRecord(JsonWriter writer, Writer out, String name, SootMethod method, Edge edge) throws IOException {
+        writer.beginObject();
+        writer.name(name);
+        if (method != null) {
+            writeMethodNode(writer, method);
+        } else {
+            writeCallEdge(writer, edge);
+        }
+        writer.endObject();
+        out.write('\n');
+    }
+
+    /**
+     * 跳过库方法之间的调用
+     */
+    private static boolean isSkipped(Edge edge) {
+        return CallGraphGenerator.isLibraryMethod(edge.src()) && CallGraphGenerator.isLibraryMethod(edge.tgt());
+    }
+
+    /**
+     * 写出方法节点
+     */
+    private void writeMethodNode(JsonWriter writer, SootMethod method) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(method.getSignature());
+        writer.name("name").value(method.getName());
+        writer.name("class").value(method.getDeclaringClass().getName());
+        writer.name("returnType").value(method.getReturnType().toString());
+        writer.name("modifier").value(Modifier.toString(method.getModifiers()));
+        writer.name("isApplicationMethod").value(!CallGraphGenerator.isLibraryMethod(method));
+
+        // 源文件和行号信息
+        SootClass declaringClass = method.getDeclaringClass();
+        SourceFileTag sourceFileTag = (SourceFileTag) declaringClass.getTag("SourceFileTag");
+        if (sourceFileTag != null) {
+            writer.name("sourceFile").value(sourceFileTag.getSourceFile());
+        }
+
+        Integer lineNumber = methodLineNumbers.get(method);
+        if (lineNumber != null) {
+            writer.name("lineNumber").value(lineNumber);
+        }
+
+        // 参数信息
+        writer.name("parameters");
+        writer.beginArray();
+        for (int i = 0; i < method.getParameterCount(); i++) {
+            writer.beginObject();
+            writer.name("type").value(method.getParameterType(i).toString());
+            writer.endObject();
+        }
+        writer.endArray();
+
+        writer.endObject();
+    }
+
+    /**
+     * 写出调用边
+     */
+    private void writeCallEdge(JsonWriter writer, Edge edge) throws IOException {
+        writer.beginObject();
+        writer.name("source").value(edge.src().getSignature());
+        writer.name("target").value(edge.tgt().getSignature());
+        writer.name("type").value(edge.kind().toString());
+
+        Integer srcLineNumber = methodLineNumbers.get(edge.src());
+        if (srcLineNumber != null) {
+            writer.name("sourceLineNumber").value(srcLineNumber);
+        }
+
+        Integer tgtLineNumber = methodLineNumbers.get(edge.tgt());
+        if (tgtLineNumber != null) {
+            writer.name("targetLineNumber").value(tgtLineNumber);
+        }
+
+        writer.endObject();
+    }
+}
@@ -0,0 +1,555 @@
+package edu.thu.soot;
+
+import org.apache.commons.cli.*;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * 调用图可达性查询引擎
+ * 在CSR调用图上用位图和int数组队列做广度优先搜索，支持多源可达集合、可达性判断和最短调用链；
+ * 可选地预先计算强连通分量缩点后的DAG及其区间标签（GRAIL），大部分不可达的查询只需比较标签即可回答，
+ * 可达的查询在标签剪枝后的DAG上搜索
+ *
+ * 查询会复用内部的访问标记数组，同一实例不能被多个线程同时查询
+ */
+public class CallGraphQuery implements Closeable {
+    private final CsrCallGraphReader graph;
+    private final int nodeCount;
+    // 从JSON转换得到的临时CSR文件，关闭时删除
+    private Path temporaryFile;
+
+    // 强连通分量：缩点后的边总是从编号大的分量指向编号小的分量
+    private CallGraphComponents components;
+    private int componentCount;
+    private int[] dagOffsets;
+    private int[] dagTargets;
+    // 区间标签：labelLow[k][c] 和 labelPost[k][c] 为第k次遍历中分量c的 [最小后序号, 后序号]
+    private int[][] labelLow;
+    private int[][] labelPost;
+    private int[] visitStamps;
+    private int stamp;
+
+    /**
+     * @param graph CSR调用图
+     */
+    public CallGraphQuery(CsrCallGraphReader graph) {
+        this.graph = graph;
+        this.nodeCount = graph.getNodeCount();
+    }
+
+    /**
+     * 打开调用图文件：.csr 直接内存映射；其他格式（见 {@link CallGraphFiles}）先转换为临时的CSR文件
+     *
+     * @param file 调用图文件
+     * @return 查询引擎
+     * @throws IOException 如果文件无法读取或格式不正确
+     */
+    public static CallGraphQuery open(Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(".csr")) {
+            return new CallGraphQuery(CsrCallGraphReader.open(file));
+        }
+
+        Path csrFile = Files.createTempFile("call_graph", ".csr");
+        try {
+            readJson(file).write(csrFile);
+            CallGraphQuery query = new CallGraphQuery(CsrCallGraphReader.open(csrFile));
+            query.temporaryFile = csrFile;
+            return query;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(csrFile);
+            throw e;
+        }
+    }
+
+    /**
+     * 底层的CSR调用图
+     */
+    public CsrCallGraphReader getGraph() {
+        return graph;
+    }
+
+    /**
+     * 按签名查找节点编号，找不到时返回-1
+     */
+    public int findNode(String signature) {
+        return graph.findNode(signature);
+    }
+
+    /**
+     * 从任意一个源节点出发可达的所有节点（包含源节点本身）
+     */
+    public BitSet reachableFrom(int... sources) {
+        return search(sources, -1, true, null);
+    }
+
+    /**
+     * 可以到达任意一个目标节点的所有节点（包含目标节点本身）
+     */
+    public BitSet reachingTo(int... targets) {
+        return search(targets, -1, false, null);
+    }
+
+    /**
+     * 判断能否从源节点到达目标节点，已建立索引时使用区间标签剪枝
+     */
+    public boolean canReach(int source, int target) {
+        return canReach(new int[]{source}, target);
+    }
+
+    /**
+     * 判断能否从任意一个源节点到达目标节点
+     */
+    public boolean canReach(int[] sources, int target) {
+        checkNode(target);
+        if (components == null) {
+            return search(sources, target, true, null).get(target);
+        }
+        for (int source : sources) {
+            checkNode(source);
+            if (canReachComponent(components.getComponent(source), components.getComponent(target))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从任意一个源节点到目标节点的最短调用链（按边数）
+     *
+     * @return 依次经过的节点编号，第一个为源节点，最后一个为目标节点；不可达时为空数组
+     */
+    public int[] shortestPath(int[] sources, int target) {
+        checkNode(target);
+        int[] parents = new int[nodeCount];
+        Arrays.fill(parents, -2);
+        if (!search(sources, target, true, parents).get(target)) {
+            return new int[0];
+        }
+
+        int length = 1;
+        for (int node = target; parents[node] >= 0; node = parents[node]) {
+            length++;
+        }
+        int[] path = new int[length];
+        int node = target;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = node;
+            node = parents[node];
+        }
+        return path;
+    }
+
+    /**
+     * 广度优先搜索，访问集合为位图，队列为int数组
+     *
+     * @param starts  起点
+     * @param stop    到达该节点后立即停止，-1表示遍历全部可达节点
+     * @param forward 沿出边（true）或入边（false）搜索
+     * @param parents 不为null时记录每个节点的前驱，起点为-1
+     */
+    private BitSet search(int[] starts, int stop, boolean forward, int[] parents) {
+        BitSet visited = new BitSet(nodeCount);
+        int[] queue = new int[Math.max(1, Math.min(nodeCount, 1024))];
+        int head = 0;
+        int tail = 0;
+
+        for (int start : starts) {
+            checkNode(start);
+            if (!visited.get(start)) {
+                visited.set(start);
+                if (parents != null) {
+                    parents[start] = -1;
+                }
+                if (tail == queue.length) {
+                    queue = Arrays.copyOf(queue, Math.min(nodeCount, queue.length * 2));
+                }
+                queue[tail++] = start;
+            }
+        }
+        if (stop >= 0 && visited.get(stop)) {
+            return visited;
+        }
+
+        while (head < tail) {
+            int node = queue[head++];
+            int degree = forward ? graph.getOutDegree(node) : graph.getInDegree(node);
+            for (int i = 0; i < degree; i++) {
+                int next = forward ? graph.getSuccessor(node, i) : graph.getPredecessor(node, i);
+                if (visited.get(next)) {
+                    continue;
+                }
+                visited.set(next);
+                if (parents != null) {
+                    parents[next] = node;
+                }
+                if (next == stop) {
+                    return visited;
+                }
+                if (tail == queue.length) {
+                    queue = Arrays.copyOf(queue, Math.min(nodeCount, queue.length * 2));
+                }
+                queue[tail++] = next;
+            }
+        }
+        return visited;
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= nodeCount) {
+            throw new IndexOutOfBoundsException("节点编号越界：" + node);
+        }
+    }
+
+    /**
+     * 建立可达性索引：计算强连通分量并缩点为DAG，再对DAG做 labelCount 次随机顺序的深度优先遍历生成区间标签。
+     * 若u可达v，则v的每个区间都包含于u的对应区间中，反之不一定成立，因此标签只用于排除不可达的情况
+     *
+     * @param labelCount 区间标签的个数，越多排除得越准确，通常2到5个
+     */
+    public void buildIndex(int labelCount) {
+        components = CallGraphComponents.compute(graph);
+        componentCount = components.getComponentCount();
+        dagOffsets = components.dagOffsets;
+        dagTargets = components.dagTargets;
+
+        labelLow = new int[labelCount][];
+        labelPost = new int[labelCount][];
+        Random random = new Random(42);
+        for (int k = 0; k < labelCount; k++) {
+            labelLow[k] = new int[componentCount];
+            labelPost[k] = new int[componentCount];
+            buildLabels(random, labelLow[k], labelPost[k]);
+        }
+        visitStamps = new int[componentCount];
+        stamp = 0;
+    }
+
+    /**
+     * 是否已建立可达性索引
+     */
+    public boolean hasIndex() {
+        return components != null;
+    }
+
+    /**
+     * 建立索引时计算的强连通分量，未建立索引时为null
+     */
+    public CallGraphComponents getComponents() {
+        return components;
+    }
+
+    /**
+     * 一次随机顺序的后序遍历：post为后序号，low为子树（含经其他路径已访问的后继）中的最小后序号
+     */
+    private void buildLabels(Random random, int[] low, int[] post) {
+        int[] order = new int[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            order[c] = c;
+        }
+        shuffle(order, 0, componentCount, random);
+        // 每个分量的后继也以随机顺序访问
+        int[] children = Arrays.copyOf(dagTargets, dagTargets.length);
+        for (int c = 0; c < componentCount; c++) {
+            shuffle(children, dagOffsets[c], dagOffsets[c + 1], random);
+        }
+
+        Arrays.fill(post, -1);
+        boolean[] visited = new boolean[componentCount];
+        int[] frames = new int[componentCount];
+        int[] positions = new int[componentCount];
+        int counter = 0;
+
+        for (int root : order) {
+            if (visited[root]) {
+                continue;
+            }
+            int depth = 0;
+            frames[0] = root;
+            positions[0] = dagOffsets[root];
+            visited[root] = true;
+            low[root] = Integer.MAX_VALUE;
+
+            while (depth >= 0) {
+                int c = frames[depth];
+                if (positions[depth] < dagOffsets[c + 1]) {
+                    int child = children[positions[depth]++];
+                    if (!visited[child]) {
+                        visited[child] = true;
+                        low[child] = Integer.MAX_VALUE;
+                        depth++;
+                        frames[depth] = child;
+                        positions[depth] = dagOffsets[child];
+                    } else {
+                        // DAG中已访问的后继必然已完成遍历
+                        low[c] = Math.min(low[c], low[child]);
+                    }
+                    continue;
+                }
+
+                post[c] = counter++;
+                low[c] = Math.min(low[c], post[c]);
+                depth--;
+                if (depth >= 0) {
+                    int parent = frames[depth];
+                    low[parent] = Math.min(low[parent], low[c]);
+                }
+            }
+        }
+    }
+
+    private static void shuffle(int[] values, int from, int to, Random random) {
+        for (int i = to - 1; i > from; i--) {
+            int j = from + random.nextInt(i - from + 1);
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    /**
+     * 分量u的每个区间是否都包含分量v的对应区间
+     */
+    private boolean labelsContain(int u, int v) {
+        for (int k = 0; k < labelLow.length; k++) {
+            if (labelLow[k][v] < labelLow[k][u] || labelPost[k][v] > labelPost[k][u]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在缩点后的DAG上判断可达性：目标分量编号更大或标签不包含时直接排除，否则做标签剪枝的深度优先搜索
+     */
+    private boolean canReachComponent(int source, int target) {
+        if (source == target) {
+            return true;
+        }
+        if (target > source || !labelsContain(source, target)) {
+            return false;
+        }
+
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(visitStamps, 0);
+            stamp = 1;
+        }
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = source;
+        visitStamps[source] = stamp;
+        while (size > 0) {
+            int c = stack[--size];
+            for (int i = dagOffsets[c]; i < dagOffsets[c + 1]; i++) {
+                int child = dagTargets[i];
+                if (child == target) {
+                    return true;
+                }
+                if (visitStamps[child] == stamp || child < target || !labelsContain(child, target)) {
+                    continue;
+                }
+                visitStamps[child] = stamp;
+                if (size == stack.length) {
+                    stack = Arrays.copyOf(stack, size * 2);
+                }
+                stack[size++] = child;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 读取JSON或NDJSON调用图，转换为CSR写出工具，同一签名只保留第一次出现的节点
+     */
+    static CsrCallGraphWriter readJson(Path file) throws IOException {
+        CsrCallGraphWriter writer = new CsrCallGraphWriter();
+        Map<String, Integer> nodeIds = new HashMap<>();
+        CallGraphFiles.read(file, new CallGraphFiles.Visitor() {
+            @Override
+            public void node(String signature, int lineNumber, boolean application) {
+                if (!nodeIds.containsKey(signature)) {
+                    nodeIds.put(signature, writer.addNode(signature, lineNumber, application));
+                }
+            }
+
+            @Override
+            public void edge(String source, String target, String kind) {
+                node(source, -1, false);
+                node(target, -1, false);
+                writer.addEdge(nodeIds.get(source), nodeIds.get(target), kind);
+            }
+        });
+        return writer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            graph.close();
+        } finally {
+            if (temporaryFile != null) {
+                Files.deleteIfExists(temporaryFile);
+            }
+        }
+    }
+
+    /**
+     * 命令行入口：SootCodeAnalyzer query -g 调用图文件 [--from 签名]... [--to 签名]... [--queries 文件] [--path] [--index]
+     */
+    public static void main(String[] args) {
+        org.apache.commons.cli.Options cliOptions = new org.apache.commons.cli.Options();
+        cliOptions.addOption(Option.builder("g")
+                .longOpt("graph")
+                .desc("调用图文件：call_graph.csr，或 call_graph.json / call_graph.ndjson（可以是 .gz）")
+                .hasArg()
+                .required(true)
+                .build());
+        cliOptions.addOption(Option.builder()
+                .longOpt("from")
+                .desc("源方法签名，可以重复指定；只指定 --from 时输出所有可达的方法")
+                .hasArg()
+                .build());
+        cliOptions.addOption(Option.builder()
+                .longOpt("to")
+                .desc("目标方法签名，可以重复指定；只指定 --to 时输出所有能到达它的方法")
+                .hasArg()
+                .build());
+        cliOptions.addOption(Option.builder()
+                .longOpt("queries")
+                .desc("批量查询文件，每行为 源签名<TAB>目标签名")
+                .hasArg()
+                .build());
+        cliOptions.addOption(Option.builder()
+                .longOpt("path")
+                .desc("可达时输出最短调用链")
+                .build());
+        cliOptions.addOption(Option.builder()
+                .longOpt("index")
+                .desc("预先计算强连通分量和区间标签，适合大量重复查询；可指定标签个数（默认3）")
+                .hasArg()
+                .optionalArg(true)
+                .build());
+
+        HelpFormatter formatter = new HelpFormatter();
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(cliOptions, args);
+        } catch (ParseException e) {
+            System.err.println("解析命令行参数出错：" + e.getMessage());
+            formatter.printHelp("SootCodeAnalyzer query", cliOptions);
+            return;
+        }
+
+        try (CallGraphQuery query = open(Paths.get(cmd.getOptionValue("g")))) {
+            if (cmd.hasOption("index")) {
+                long start = System.nanoTime();
+                query.buildIndex(Integer.parseInt(cmd.getOptionValue("index", "3")));
+                System.err.printf("索引建立完成：%d 个方法，%d 个强连通分量，耗时 %d ms%n",
+                        query.nodeCount, query.componentCount, (System.nanoTime() - start) / 1_000_000);
+            }
+
+            boolean showPath = cmd.hasOption("path");
+            if (cmd.hasOption("queries")) {
+                query.runBatch(Paths.get(cmd.getOptionValue("queries")), showPath);
+                return;
+            }
+
+            int[] sources = query.resolveAll(cmd.getOptionValues("from"));
+            int[] targets = query.resolveAll(cmd.getOptionValues("to"));
+            if (sources.length > 0 && targets.length > 0) {
+                for (int target : targets) {
+                    query.printAnswer(sources, target, showPath);
+                }
+            } else if (sources.length > 0) {
+                query.printNodes(query.reachableFrom(sources));
+            } else if (targets.length > 0) {
+                query.printNodes(query.reachingTo(targets));
+            } else {
+                formatter.printHelp("SootCodeAnalyzer query", cliOptions);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("查询调用图失败：" + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private int[] resolveAll(String[] signatures) {
+        if (signatures == null) {
+            return new int[0];
+        }
+        int[] nodes = new int[signatures.length];
+        for (int i = 0; i < signatures.length; i++) {
+            nodes[i] = findNode(signatures[i]);
+            if (nodes[i] < 0) {
+                throw new IllegalArgumentException("调用图中没有方法：" + signatures[i]);
+            }
+        }
+        return nodes;
+    }
+
+    private void printAnswer(int[] sources, int target, boolean showPath) {
+        if (!showPath) {
+            System.out.println(graph.getSignature(target) + "\t" + canReach(sources, target));
+            return;
+        }
+        int[] path = shortestPath(sources, target);
+        System.out.println(graph.getSignature(target) + "\t" + (path.length > 0));
+        for (int node : path) {
+            System.out.println("  " + graph.getSignature(node));
+        }
+    }
+
+    private void printNodes(BitSet nodes) {
+        for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+            System.out.println(graph.getSignature(node));
+        }
+    }
+
+    /**
+     * 批量查询，每行输出 源签名、目标签名、是否可达，找不到的方法视为不可达
+     */
+    private void runBatch(Path queriesFile, boolean showPath) throws IOException {
+        int count = 0;
+        long nanos = 0;
+        try (BufferedReader reader = Files.newBufferedReader(queriesFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length != 2) {
+                    continue;
+                }
+                int source = findNode(parts[0].trim());
+                int target = findNode(parts[1].trim());
+
+                long start = System.nanoTime();
+                int[] path = null;
+                boolean reachable = false;
+                if (source >= 0 && target >= 0) {
+                    if (showPath) {
+                        path = shortestPath(new int[]{source}, target);
+                        reachable = path.length > 0;
+                    } else {
+                        reachable = canReach(source, target);
+                    }
+                }
+                nanos += System.nanoTime() - start;
+                count++;
+
+                System.out.println(parts[0].trim() + "\t" + parts[1].trim() + "\t" + reachable);
+                if (path != null) {
+                    for (int node : path) {
+                        System.out.println("  " + graph.getSignature(node));
+                    }
+                }
+            }
+        }
+        System.err.printf("共 %d 个查询，平均每个 %.1f 微秒%n", count, count > 0 ? nanos / 1000.0 / count : 0.0);
+    }
+}
@@ -0,0 +1,305 @@
+package edu.thu.soot;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 调用图存储
+ * 方法签名只保存一份并映射为整数编号，每个调用者的被调用者按首次出现的顺序保存在int数组中，
+ * 边的去重使用以（调用者编号, 被调用者编号）为键的long哈希集合，插入一条边为常数时间
+ */
+class CallGraphStore {
+    // 签名 → 编号
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    // 编号 → 签名
+    private final List<String> signatures = new ArrayList<>();
+
+    // 编号 → 被调用者编号，只有前 calleeCounts[id] 个元素有效；不是调用者时为null
+    private int[][] callees = new int[16][];
+    private int[] calleeCounts = new int[16];
+
+    // 按首次出现顺序排列的调用者编号
+    private int[] callerOrder = new int[16];
+    private int callerCount;
+
+    private final LongHashSet edges = new LongHashSet();
+
+    /**
+     * 获取签名的编号，签名第一次出现时分配新编号
+     */
+    int intern(String signature) {
+        Integer id = ids.get(signature);
+        if (id == null) {
+            id = signatures.size();
+            ids.put(signature, id);
+            signatures.add(signature);
+            if (id >= callees.length) {
+                int capacity = callees.length * 2;
+                callees = Arrays.copyOf(callees, capacity);
+                calleeCounts = Arrays.copyOf(calleeCounts, capacity);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * 签名对应的编号，不存在时返回-1
+     */
+    int idOf(String signature) {
+        Integer id = ids.get(signature);
+        return id != null ? id : -1;
+    }
+
+    String signature(int id) {
+        return signatures.get(id);
+    }
+
+    /**
+     * 添加一条调用边，重复的边会被忽略
+     */
+    void addCall(String caller, String callee) {
+        addCall(intern(caller), intern(callee));
+    }
+
+    /**
+     * 添加一条调用边，编号必须由 {@link #intern(String)} 分配
+     */
+    void addCall(int caller, int callee) {
+        if (!edges.add(edgeKey(caller, callee))) {
+            return;
+        }
+
+        int[] targets = callees[caller];
+        if (targets == null) {
+            targets = new int[4];
+            callees[caller] = targets;
+            if (callerCount == callerOrder.length) {
+                callerOrder = Arrays.copyOf(callerOrder, callerCount * 2);
+            }
+            callerOrder[callerCount++] = caller;
+        } else if (calleeCounts[caller] == targets.length) {
+            targets = Arrays.copyOf(targets, targets.length * 2);
+            callees[caller] = targets;
+        }
+        targets[calleeCounts[caller]++] = callee;
+    }
+
+    /**
+     * 调用者数量
+     */
+    int callerCount() {
+        return callerCount;
+    }
+
+    /**
+     * 调用边数量
+     */
+    int callCount() {
+        return edges.size();
+    }
+
+    /**
+     * 方法的被调用者签名，按首次出现顺序排列
+     */
+    List<String> getCallees(String caller) {
+        int id = idOf(caller);
+        if (id < 0 || callees[id] == null) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>(calleeCounts[id]);
+        for (int j = 0; j < calleeCounts[id]; j++) {
+            result.add(signatures.get(callees[id][j]));
+        }
+        return result;
+    }
+
+    /**
+     * 生成反向调用图（被调用者 → 调用者）
+     */
+    CallGraphStore reverse() {
+        CallGraphStore reversed = new CallGraphStore();
+        for (int i = 0; i < callerCount; i++) {
+            int caller = callerOrder[i];
+            int callerId = reversed.intern(signatures.get(caller));
+            for (int j = 0; j < calleeCounts[caller]; j++) {
+                reversed.addCall(reversed.intern(signatures.get(callees[caller][j])), callerId);
+            }
+        }
+        return reversed;
+    }
+
+    /**
+     * 把当前调用图的边按顺序加入目标调用图
+     */
+    void mergeInto(CallGraphStore target) {
+        for (int i = 0; i < callerCount; i++) {
+            int caller = callerOrder[i];
+            int targetCaller = target.intern(signatures.get(caller));
+            for (int j = 0; j < calleeCounts[caller]; j++) {
+                target.addCall(targetCaller, target.intern(signatures.get(callees[caller][j])));
+            }
+        }
+    }
+
+    /**
+     * 删除满足条件的调用者及其全部出边
+     */
+    void removeCallers(Predicate<String> filter) {
+        int kept = 0;
+        for (int i = 0; i < callerCount; i++) {
+            int caller = callerOrder[i];
+            if (filter.test(signatures.get(caller))) {
+                callees[caller] = null;
+                calleeCounts[caller] = 0;
+            } else {
+                callerOrder[kept++] = caller;
+            }
+        }
+        if (kept == callerCount) {
+            return;
+        }
+        callerCount = kept;
+
+        edges.clear();
+        for (int i = 0; i < callerCount; i++) {
+            int caller = callerOrder[i];
+            for (int j = 0; j < calleeCounts[caller]; j++) {
+                edges.add(edgeKey(caller, callees[caller][j]));
+            }
+        }
+    }
+
+    void clear() {
+        ids.clear();
+        signatures.clear();
+        Arrays.fill(callees, null);
+        Arrays.fill(calleeCounts, 0);
+        callerCount = 0;
+        edges.clear();
+    }
+
+    /**
+     * 以流式方式写出 call_graph.json（调用者 → 被调用者数组，美化输出）
+     * 调用者的顺序与之前基于 HashMap&lt;String, List&lt;String&gt;&gt; 的输出保持一致，
+     * 因此升级前后生成的文件可以直接比较
+     */
+    void writeJson(Path file) throws IOException {
+        Map<String, Integer> order = new HashMap<>();
+        for (int i = 0; i < callerCount; i++) {
+            order.put(signatures.get(callerOrder[i]), callerOrder[i]);
+        }
+
+        try (JsonWriter writer = IndexJsonWriter.open(file, true)) {
+            writer.beginObject();
+            for (Map.Entry<String, Integer> entry : order.entrySet()) {
+                int caller = entry.getValue();
+                writer.name(entry.getKey());
+                writer.beginArray();
+                for (int j = 0; j < calleeCounts[caller]; j++) {
+                    writer.value(signatures.get(callees[caller][j]));
+                }
+                writer.endArray();
+            }
+            writer.endObject();
+        }
+    }
+
+    /**
+     * 以流式方式读取 call_graph.json，边追加到当前调用图
+     */
+    void readJson(Path file) throws IOException {
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             JsonReader reader = new JsonReader(in)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                int caller = intern(reader.nextName());
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    addCall(caller, intern(reader.nextString()));
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+    }
+
+    private static long edgeKey(int caller, int callee) {
+        return ((long) caller << 32) | (callee & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 开放寻址的long哈希集合，只存放非负的键
+     */
+    private static final class LongHashSet {
+        private static final long EMPTY = -1L;
+
+        private long[] keys = newTable(64);
+        private int size;
+
+        boolean add(long key) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            size++;
+            return true;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+
+        private void rehash(int capacity) {
+            long[] old = keys;
+            keys = newTable(capacity);
+            int mask = capacity - 1;
+            for (long key : old) {
+                if (key != EMPTY) {
+                    int slot = mix(key) & mask;
+                    while (keys[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = key;
+                }
+            }
+        }
+
+        private static long[] newTable(int capacity) {
+            long[] table = new long[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package edu.thu.soot;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import org.objectweb.asm.ClassReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * class文件内容哈希工具
+ * 扫描类路径（目录或JAR）中的所有class文件，计算每个类的SHA-256，用于判断哪些类在两次运行之间发生了变化
+ */
+public class ClassFileHashes {
+
+    // 常量池中CONSTANT_Class项的标记
+    private static final int CONSTANT_CLASS = 7;
+
+    private ClassFileHashes() {
+    }
+
+    /**
+     * 计算类路径下所有类的内容哈希
+     *
+     * @param classPath class文件目录或JAR文件
+     * @return 类名到SHA-256十六进制字符串的映射，按类名排序
+     * @throws IOException 如果读取class文件时发生IO错误
+     */
+    public static Map<String, String> compute(String classPath) throws IOException {
+        Map<String, String> hashes = new TreeMap<>();
+        forEach(classPath, (className, bytes) -> hashes.put(className, sha256(bytes)));
+        return hashes;
+    }
+
+    /**
+     * 依次读取类路径（目录或JAR）下的所有class文件
+     *
+     * @param classPath class文件目录或JAR文件
+     * @param visitor   class文件的访问者
+     * @throws IOException 如果读取class文件时发生IO错误
+     */
+    static void forEach(String classPath, ClassFileVisitor visitor) throws IOException {
+        Path root = Paths.get(classPath);
+
+        if (Files.isDirectory(root)) {
+            try (Stream<Path> paths = Files.walk(root)) {
+                Iterator<Path> classFiles = paths.filter(ClassFileHashes::isClassFile).iterator();
+                while (classFiles.hasNext()) {
+                    Path file = classFiles.next();
+                    String className = toClassName(root.relativize(file).toString().replace('\\', '/'));
+                    visitor.visit(className, Files.readAllBytes(file));
+                }
+            }
+        } else if (Files.isRegularFile(root)) {
+            try (ZipFile zipFile = new ZipFile(root.toFile())) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    if (entry.isDirectory() || !name.endsWith(".class")
+                            || name.startsWith("META-INF/") || name.endsWith("module-info.class")) {
+                        continue;
+                    }
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        visitor.visit(toClassName(name), in.readAllBytes());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 类的依赖：直接父类和实现的接口，以及常量池中引用的所有类（包括父类型），类名为点分形式
+     */
+    static final class ClassDependencies {
+        final Set<String> supertypes = new HashSet<>();
+        final Set<String> references = new HashSet<>();
+    }
+
+    /**
+     * 从class文件读取类的依赖
+     * 方法和字段引用的所属类都记录为常量池中的类引用，数组类型取其元素类型
+     */
+    static ClassDependencies readDependencies(byte[] bytes) {
+        ClassReader reader = new ClassReader(bytes);
+        ClassDependencies dependencies = new ClassDependencies();
+        if (reader.getSuperName() != null) {
+            dependencies.supertypes.add(reader.getSuperName().replace('/', '.'));
+        }
+        for (String anInterface : reader.getInterfaces()) {
+            dependencies.supertypes.add(anInterface.replace('/', '.'));
+        }
+
+        char[] buffer = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            // long和double占两项，第二项的偏移为0
+            if (offset == 0 || reader.readByte(offset - 1) != CONSTANT_CLASS) {
+                continue;
+            }
+            String name = reader.readUTF8(offset, buffer);
+            if (name.startsWith("[")) {
+                int start = name.indexOf('L');
+                if (start < 0) {
+                    continue; // 基本类型的数组
+                }
+                name = name.substring(start + 1, name.length() - 1);
+            }
+            dependencies.references.add(name.replace('/', '.'));
+        }
+        return dependencies;
+    }
+
+    /**
+     * class文件访问者，参数为类名和class文件内容
+     */
+    @FunctionalInterface
+    interface ClassFileVisitor {
+        void visit(String className, byte[] bytes) throws IOException;
+    }
+
+    /**
+     * 哈希清单：各类的内容哈希，以及保存清单的那次运行是否同时生成了调用图
+     */
+    public static final class Manifest {
+        private final Map<String, String> classes;
+        private final boolean callGraph;
+
+        Manifest(Map<String, String> classes, boolean callGraph) {
+            this.classes = classes;
+            this.callGraph = callGraph;
+        }
+
+        public Map<String, String> getClasses() {
+            return classes;
+        }
+
+        /**
+         * 调用图是否与类哈希同时生成，为false时输出目录中的调用图可能来自更早的版本
+         */
+        public boolean hasCallGraph() {
+            return callGraph;
+        }
+    }
+
+    /**
+     * 读取哈希清单，文件不存在时返回空清单
+     * 旧版本的清单只有类名到哈希的映射，视为没有生成调用图
+     */
+    public static Manifest load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return new Manifest(new HashMap<>(), false);
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonElement root = JsonParser.parseReader(reader);
+            if (root == null || !root.isJsonObject()) {
+                return new Manifest(new HashMap<>(), false);
+            }
+            JsonObject object = root.getAsJsonObject();
+            boolean callGraph = false;
+            if (object.has("classes") && object.get("classes").isJsonObject()) {
+                callGraph = object.has("callGraph") && object.get("callGraph").getAsBoolean();
+                object = object.getAsJsonObject("classes");
+            }
+            Map<String, String> hashes = new Gson().fromJson(object, new TypeToken<Map<String, String>>() {
+            }.getType());
+            return new Manifest(hashes != null ? hashes : new HashMap<>(), callGraph);
+        }
+    }
+
+    /**
+     * 保存哈希清单
+     *
+     * @param callGraph 本次运行是否同时生成了调用图
+     */
+    public static void save(Map<String, String> hashes, boolean callGraph, Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("callGraph", callGraph);
+        manifest.put("classes", new TreeMap<>(hashes));
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            gson.toJson(manifest, writer);
+        }
+    }
+
+    /**
+     * 计算字节数组的SHA-256
+     */
+    static String sha256(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    private static boolean isClassFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".class") && !name.equals("module-info.class") && Files.isRegularFile(file);
+    }
+
+    private static String toClassName(String relativePath) {
+        return relativePath.substring(0, relativePath.length() - ".class".length()).replace('/', '.');
+    }
+}
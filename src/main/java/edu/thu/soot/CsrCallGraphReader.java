@@ -0,0 +1,244 @@
+package edu.thu.soot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static edu.thu.soot.CsrCallGraphWriter.*;
+
+/**
+ * CSR格式调用图读取工具
+ * 将 {@link CsrCallGraphWriter} 生成的文件内存映射后直接按节点编号查询正向、反向邻接关系，
+ * 遍历边时只读取映射区中的int和byte，不为每条边创建对象
+ */
+public class CsrCallGraphReader implements Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int nodeCount;
+    private final int edgeCount;
+    private final int kindCount;
+    private final int[] sectionOffsets = new int[SECTION_COUNT];
+    private final MappedStringTable strings;
+
+    private CsrCallGraphReader(Path file, FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是有效的CSR调用图文件：" + file);
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("不支持的CSR调用图版本：" + version);
+        }
+
+        nodeCount = buffer.getInt(8);
+        edgeCount = buffer.getInt(12);
+        kindCount = buffer.getInt(16);
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            sectionOffsets[i] = buffer.getInt(20 + i * 4);
+        }
+
+        strings = new MappedStringTable(buffer, sectionOffsets[SECTION_STRINGS], "CSR调用图已损坏：" + file);
+    }
+
+    /**
+     * 打开并内存映射CSR调用图文件
+     *
+     * @param file 调用图文件
+     * @return 调用图读取器
+     * @throws IOException 如果文件无法读取或格式不正确
+     */
+    public static CsrCallGraphReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CsrCallGraphReader(file, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * 按签名查找节点编号（在按签名排序的节点表上二分查找）
+     *
+     * @return 节点编号，不存在时返回-1
+     */
+    public int findNode(String signature) {
+        byte[] target = signature.getBytes(StandardCharsets.UTF_8);
+        int sortedPosition = sectionOffsets[SECTION_SORTED_NODES];
+        int low = 0;
+        int high = nodeCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int node = buffer.getInt(sortedPosition + mid * 4);
+            int cmp = strings.compare(node, target);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 节点的方法签名
+     */
+    public String getSignature(int node) {
+        checkNode(node);
+        return strings.get(node);
+    }
+
+    /**
+     * 节点的方法行号，未知时返回-1
+     */
+    public int getLineNumber(int node) {
+        checkNode(node);
+        return buffer.getInt(sectionOffsets[SECTION_LINES] + node * 4);
+    }
+
+    /**
+     * 节点是否为应用方法
+     */
+    public boolean isApplicationMethod(int node) {
+        checkNode(node);
+        return (buffer.get(sectionOffsets[SECTION_FLAGS] + node) & FLAG_APPLICATION) != 0;
+    }
+
+    /**
+     * 调用类型的数量
+     */
+    public int getKindCount() {
+        return kindCount;
+    }
+
+    /**
+     * 调用类型编号对应的名称
+     */
+    public String getKindName(int kind) {
+        if (kind < 0 || kind >= kindCount) {
+            throw new IndexOutOfBoundsException("调用类型编号越界：" + kind);
+        }
+        return strings.get(nodeCount + kind);
+    }
+
+    /**
+     * 节点的出边数量
+     */
+    public int getOutDegree(int node) {
+        return degree(SECTION_FORWARD_OFFSETS, node);
+    }
+
+    /**
+     * 节点第 index 条出边的目标节点
+     */
+    public int getSuccessor(int node, int index) {
+        return buffer.getInt(sectionOffsets[SECTION_FORWARD_TARGETS] + 4 * edgeIndex(SECTION_FORWARD_OFFSETS, node, index));
+    }
+
+    /**
+     * 节点第 index 条出边的调用类型编号
+     */
+    public int getSuccessorKind(int node, int index) {
+        return buffer.get(sectionOffsets[SECTION_FORWARD_KINDS] + edgeIndex(SECTION_FORWARD_OFFSETS, node, index)) & 0xFF;
+    }
+
+    /**
+     * 节点的入边数量
+     */
+    public int getInDegree(int node) {
+        return degree(SECTION_REVERSE_OFFSETS, node);
+    }
+
+    /**
+     * 节点第 index 条入边的来源节点
+     */
+    public int getPredecessor(int node, int index) {
+        return buffer.getInt(sectionOffsets[SECTION_REVERSE_SOURCES] + 4 * edgeIndex(SECTION_REVERSE_OFFSETS, node, index));
+    }
+
+    /**
+     * 节点第 index 条入边的调用类型编号
+     */
+    public int getPredecessorKind(int node, int index) {
+        return buffer.get(sectionOffsets[SECTION_REVERSE_KINDS] + edgeIndex(SECTION_REVERSE_OFFSETS, node, index)) & 0xFF;
+    }
+
+    /**
+     * 遍历节点的出边
+     */
+    public void forEachSuccessor(int node, EdgeVisitor visitor) {
+        visit(SECTION_FORWARD_OFFSETS, SECTION_FORWARD_TARGETS, SECTION_FORWARD_KINDS, node, visitor);
+    }
+
+    /**
+     * 遍历节点的入边
+     */
+    public void forEachPredecessor(int node, EdgeVisitor visitor) {
+        visit(SECTION_REVERSE_OFFSETS, SECTION_REVERSE_SOURCES, SECTION_REVERSE_KINDS, node, visitor);
+    }
+
+    /**
+     * 边的访问器，参数为相邻节点编号和调用类型编号
+     */
+    @FunctionalInterface
+    public interface EdgeVisitor {
+        void visit(int node, int kind);
+    }
+
+    private void visit(int offsetsSection, int nodesSection, int kindsSection, int node, EdgeVisitor visitor) {
+        checkNode(node);
+        int offsets = sectionOffsets[offsetsSection] + node * 4;
+        int start = buffer.getInt(offsets);
+        int end = buffer.getInt(offsets + 4);
+        int nodes = sectionOffsets[nodesSection];
+        int kinds = sectionOffsets[kindsSection];
+        for (int e = start; e < end; e++) {
+            visitor.visit(buffer.getInt(nodes + e * 4), buffer.get(kinds + e) & 0xFF);
+        }
+    }
+
+    private int degree(int offsetsSection, int node) {
+        checkNode(node);
+        int offsets = sectionOffsets[offsetsSection] + node * 4;
+        return buffer.getInt(offsets + 4) - buffer.getInt(offsets);
+    }
+
+    private int edgeIndex(int offsetsSection, int node, int index) {
+        checkNode(node);
+        int offsets = sectionOffsets[offsetsSection] + node * 4;
+        int start = buffer.getInt(offsets);
+        if (index < 0 || index >= buffer.getInt(offsets + 4) - start) {
+            throw new IndexOutOfBoundsException("边序号越界：" + index);
+        }
+        return start + index;
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= nodeCount) {
+            throw new IndexOutOfBoundsException("节点编号越界：" + node);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,307 @@
+package edu.thu.soot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压缩稀疏行（CSR）格式的调用图输出工具
+ * 节点只保存一次签名，边以int数组表示，调用类型压缩为一个字节，文件通过NIO写出，
+ * 可由 {@link CsrCallGraphReader} 内存映射后直接查询正向和反向邻接关系
+ *
+ * 文件格式（大端序）：
+ * <pre>
+ * 文件头      magic, version, nodeCount, edgeCount, kindCount, 以及各段的起始偏移（int）
+ * 行号        int[nodeCount]，未知为-1
+ * 签名排序    int[nodeCount]，按签名UTF-8字节排序的节点编号，用于二分查找
+ * 正向偏移    int[nodeCount + 1]
+ * 正向目标    int[edgeCount]
+ * 反向偏移    int[nodeCount + 1]
+ * 反向来源    int[edgeCount]
+ * 节点标志    byte[nodeCount]，第0位表示应用方法
+ * 正向类型    byte[edgeCount]
+ * 反向类型    byte[edgeCount]
+ * 字符串表    count, int[count + 1] 偏移, UTF-8数据；前nodeCount个为节点签名，其后为调用类型名
+ * </pre>
+ */
+class CsrCallGraphWriter {
+    static final int MAGIC = 0x43494347; // "CICG"
+    static final int VERSION = 1;
+
+    static final int SECTION_LINES = 0;
+    static final int SECTION_SORTED_NODES = 1;
+    static final int SECTION_FORWARD_OFFSETS = 2;
+    static final int SECTION_FORWARD_TARGETS = 3;
+    static final int SECTION_REVERSE_OFFSETS = 4;
+    static final int SECTION_REVERSE_SOURCES = 5;
+    static final int SECTION_FLAGS = 6;
+    static final int SECTION_FORWARD_KINDS = 7;
+    static final int SECTION_REVERSE_KINDS = 8;
+    static final int SECTION_STRINGS = 9;
+    static final int SECTION_COUNT = 10;
+
+    static final int HEADER_SIZE = 4 * (5 + SECTION_COUNT);
+
+    static final byte FLAG_APPLICATION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final List<String> signatures = new ArrayList<>();
+    private int[] lineNumbers = new int[1024];
+    private byte[] flags = new byte[1024];
+
+    private final Map<String, Integer> kindIds = new HashMap<>();
+    private final List<String> kindNames = new ArrayList<>();
+
+    private int[] sources = new int[1024];
+    private int[] targets = new int[1024];
+    private byte[] kinds = new byte[1024];
+    private int edgeCount;
+
+    /**
+     * 添加节点
+     *
+     * @param signature   方法签名，不能重复
+     * @param lineNumber  方法行号，未知时为-1
+     * @param application 是否为应用方法
+     * @return 节点编号，按添加顺序从0开始
+     */
+    int addNode(String signature, int lineNumber, boolean application) {
+        int id = signatures.size();
+        if (id == lineNumbers.length) {
+            lineNumbers = Arrays.copyOf(lineNumbers, id * 2);
+            flags = Arrays.copyOf(flags, id * 2);
+        }
+        signatures.add(signature);
+        lineNumbers[id] = lineNumber;
+        flags[id] = application ? FLAG_APPLICATION : 0;
+        return id;
+    }
+
+    /**
+     * 添加调用边
+     *
+     * @param source 调用者节点编号
+     * @param target 被调用者节点编号
+     * @param kind   调用类型名称（如 VIRTUAL、STATIC），最多256种
+     */
+    void addEdge(int source, int target, String kind) {
+        Integer kindId = kindIds.get(kind);
+        if (kindId == null) {
+            if (kindNames.size() == 256) {
+                throw new IllegalStateException("调用类型超过256种");
+            }
+            kindId = kindNames.size();
+            kindIds.put(kind, kindId);
+            kindNames.add(kind);
+        }
+
+        if (edgeCount == sources.length) {
+            sources = Arrays.copyOf(sources, edgeCount * 2);
+            targets = Arrays.copyOf(targets, edgeCount * 2);
+            kinds = Arrays.copyOf(kinds, edgeCount * 2);
+        }
+        sources[edgeCount] = source;
+        targets[edgeCount] = target;
+        kinds[edgeCount] = (byte) (int) kindId;
+        edgeCount++;
+    }
+
+    int getNodeCount() {
+        return signatures.size();
+    }
+
+    int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * 写出CSR文件
+     *
+     * @param file 输出文件
+     * @throws IOException 如果写入文件时发生IO错误
+     */
+    void write(Path file) throws IOException {
+        int nodeCount = signatures.size();
+
+        // 按来源和目标分别做计数排序，同一节点的边保持添加顺序
+        int[] forwardOffsets = new int[nodeCount + 1];
+        int[] reverseOffsets = new int[nodeCount + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            forwardOffsets[sources[i] + 1]++;
+            reverseOffsets[targets[i] + 1]++;
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            forwardOffsets[n + 1] += forwardOffsets[n];
+            reverseOffsets[n + 1] += reverseOffsets[n];
+        }
+
+        int[] forwardTargets = new int[edgeCount];
+        byte[] forwardKinds = new byte[edgeCount];
+        int[] reverseSources = new int[edgeCount];
+        byte[] reverseKinds = new byte[edgeCount];
+        int[] forwardNext = Arrays.copyOf(forwardOffsets, nodeCount);
+        int[] reverseNext = Arrays.copyOf(reverseOffsets, nodeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            int f = forwardNext[sources[i]]++;
+            forwardTargets[f] = targets[i];
+            forwardKinds[f] = kinds[i];
+            int r = reverseNext[targets[i]]++;
+            reverseSources[r] = sources[i];
+            reverseKinds[r] = kinds[i];
+        }
+
+        List<byte[]> strings = new ArrayList<>(nodeCount + kindNames.size());
+        for (String signature : signatures) {
+            strings.add(signature.getBytes(StandardCharsets.UTF_8));
+        }
+        for (String kindName : kindNames) {
+            strings.add(kindName.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Integer[] sorted = new Integer[nodeCount];
+        for (int n = 0; n < nodeCount; n++) {
+            sorted[n] = n;
+        }
+        Arrays.sort(sorted, Comparator.comparing(n -> strings.get(n), Arrays::compareUnsigned));
+
+        long stringBytes = 0;
+        for (byte[] bytes : strings) {
+            stringBytes += bytes.length;
+        }
+        int[] sectionOffsets = layout(nodeCount, edgeCount, strings.size(), stringBytes);
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ChannelOutput out = new ChannelOutput(channel);
+
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(nodeCount);
+            out.putInt(edgeCount);
+            out.putInt(kindNames.size());
+            for (int offset : sectionOffsets) {
+                out.putInt(offset);
+            }
+
+            out.putInts(lineNumbers, nodeCount);
+            for (Integer node : sorted) {
+                out.putInt(node);
+            }
+            out.putInts(forwardOffsets, nodeCount + 1);
+            out.putInts(forwardTargets, edgeCount);
+            out.putInts(reverseOffsets, nodeCount + 1);
+            out.putInts(reverseSources, edgeCount);
+            out.putBytes(flags, nodeCount);
+            out.putBytes(forwardKinds, edgeCount);
+            out.putBytes(reverseKinds, edgeCount);
+
+            out.putInt(strings.size());
+            int stringOffset = 0;
+            out.putInt(stringOffset);
+            for (byte[] bytes : strings) {
+                stringOffset += bytes.length;
+                out.putInt(stringOffset);
+            }
+            for (byte[] bytes : strings) {
+                out.putBytes(bytes, bytes.length);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * 计算各段在文件中的偏移
+     * 读取端以int偏移访问内存映射的文件，文件超过 Integer.MAX_VALUE 字节时无法保存
+     *
+     * @throws IOException 文件过大时
+     */
+    static int[] layout(int nodeCount, int edgeCount, int stringCount, long stringBytes) throws IOException {
+        long[] offsets = new long[SECTION_COUNT];
+        long position = HEADER_SIZE;
+        offsets[SECTION_LINES] = position;
+        position += 4L * nodeCount;
+        offsets[SECTION_SORTED_NODES] = position;
+        position += 4L * nodeCount;
+        offsets[SECTION_FORWARD_OFFSETS] = position;
+        position += 4L * (nodeCount + 1L);
+        offsets[SECTION_FORWARD_TARGETS] = position;
+        position += 4L * edgeCount;
+        offsets[SECTION_REVERSE_OFFSETS] = position;
+        position += 4L * (nodeCount + 1L);
+        offsets[SECTION_REVERSE_SOURCES] = position;
+        position += 4L * edgeCount;
+        offsets[SECTION_FLAGS] = position;
+        position += nodeCount;
+        offsets[SECTION_FORWARD_KINDS] = position;
+        position += edgeCount;
+        offsets[SECTION_REVERSE_KINDS] = position;
+        position += edgeCount;
+        offsets[SECTION_STRINGS] = position;
+        // 字符串表：数量、累计偏移和字符串内容
+        position += 4 + 4L * (stringCount + 1L) + stringBytes;
+        if (position > Integer.MAX_VALUE) {
+            throw new IOException("调用图过大，无法使用CSR格式保存：" + position + " 字节");
+        }
+
+        int[] sectionOffsets = new int[SECTION_COUNT];
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            sectionOffsets[i] = (int) offsets[i];
+        }
+        return sectionOffsets;
+    }
+
+    /**
+     * 基于直接缓冲区的文件通道输出，缓冲区写满时刷新到通道
+     */
+    private static final class ChannelOutput {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        ChannelOutput(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < 4) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void putInts(int[] values, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                putInt(values[i]);
+            }
+        }
+
+        void putBytes(byte[] values, int length) throws IOException {
+            int offset = 0;
+            while (offset < length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int chunk = Math.min(buffer.remaining(), length - offset);
+                buffer.put(values, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package edu.thu.soot;
+
+import edu.thu.soot.CallGraphGenerator.DemandResolution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import soot.*;
+import soot.jimple.*;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.Options;
+
+import java.util.*;
+
+/**
+ * 按需构建的调用图
+ * 从给定的入口方法出发用工作队列遍历，只为可达的应用方法构建方法体，虚调用按类层次（CHA）或
+ * 已实例化的类型（RTA）解析，可以限制从入口点出发的调用深度。不需要对整个程序运行CHA或SPARK。
+ *
+ * 库方法作为叶子节点，不展开其方法体；接收者为库类型的虚调用连接到声明的方法以及覆盖它的应用方法，
+ * 从库代码内部回调应用代码的边（如 Thread.start → run）不在按需调用图中
+ */
+class DemandCallGraphBuilder {
+    private static final Logger logger = LoggerFactory.getLogger(DemandCallGraphBuilder.class);
+
+    private final DemandResolution resolution;
+    private final int maxDepth;
+
+    private final CallGraph callGraph = new CallGraph();
+
+    // 方法 → 从入口点出发的最小调用深度
+    private final Map<SootMethod, Integer> depths = new HashMap<>();
+    // 方法 → 展开方法体时的深度，深度变小时重新展开
+    private final Map<SootMethod, Integer> expandedDepths = new HashMap<>();
+    private final Deque<SootMethod> worklist = new ArrayDeque<>();
+
+    // RTA：已实例化的应用类型，以及等待新类型的虚调用点
+    private final Set<SootClass> instantiatedClasses = new LinkedHashSet<>();
+    private final List<VirtualCallSite> virtualCallSites = new ArrayList<>();
+    private final Set<Stmt> recordedCallSites = new HashSet<>();
+
+    // CHA：库类型 → 可以赋值给它的具体应用类
+    private final Map<SootClass, List<SootClass>> applicationSubtypes = new HashMap<>();
+    private int subtypesClassCount = -1;
+    // 输入目录中的顶层类名；set_app 会把 jdk.* 等类也标记为应用类，它们不作为库类型的覆盖者
+    private Set<String> inputClassNames;
+
+    /**
+     * @param resolution 虚调用的解析方式
+     * @param maxDepth   最大调用深度，入口点的深度为0，深度达到上限的方法不再展开；小于0表示不限制
+     */
+    DemandCallGraphBuilder(DemandResolution resolution, int maxDepth) {
+        this.resolution = resolution;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * 从入口方法出发构建调用图
+     *
+     * @param entryPoints 入口方法
+     * @return 调用图，只包含从入口点可达的边
+     */
+    CallGraph build(Collection<SootMethod> entryPoints) {
+        for (SootMethod entryPoint : entryPoints) {
+            reach(entryPoint, 0);
+        }
+
+        while (!worklist.isEmpty()) {
+            SootMethod method = worklist.poll();
+            int depth = depths.get(method);
+            Integer expandedDepth = expandedDepths.get(method);
+            if (expandedDepth != null && expandedDepth <= depth) {
+                continue;
+            }
+            expandedDepths.put(method, depth);
+            expand(method, depth);
+        }
+
+        logger.info("按需调用图（{}）：{} 个入口点，{} 个可达方法，{} 条调用边",
+                resolution, entryPoints.size(), depths.size(), callGraph.size());
+        return callGraph;
+    }
+
+    /**
+     * 可达方法数（含作为叶子节点的库方法）
+     */
+    int getReachableMethodCount() {
+        return depths.size();
+    }
+
+    private void reach(SootMethod method, int depth) {
+        Integer known = depths.get(method);
+        if (known != null && known <= depth) {
+            return;
+        }
+        depths.put(method, depth);
+        worklist.add(method);
+    }
+
+    private void expand(SootMethod method, int depth) {
+        if (!method.isConcrete() || CallGraphGenerator.isLibraryMethod(method)
+                || (maxDepth >= 0 && depth >= maxDepth)) {
+            return;
+        }
+
+        Body body;
+        try {
+            body = method.retrieveActiveBody();
+        } catch (RuntimeException e) {
+            logger.debug("无法获取方法体：{}：{}", method.getSignature(), e.getMessage());
+            return;
+        }
+
+        for (Unit unit : body.getUnits()) {
+            Stmt stmt = (Stmt) unit;
+
+            if (stmt instanceof AssignStmt && ((AssignStmt) stmt).getRightOp() instanceof NewExpr) {
+                SootClass created = ((NewExpr) ((AssignStmt) stmt).getRightOp()).getBaseType().getSootClass();
+                addStaticInitializer(method, stmt, created, depth);
+                if (resolution == DemandResolution.RTA) {
+                    instantiate(created);
+                }
+            }
+            if (stmt.containsFieldRef() && stmt.getFieldRef() instanceof StaticFieldRef) {
+                addStaticInitializer(method, stmt, stmt.getFieldRef().getFieldRef().declaringClass(), depth);
+            }
+            if (stmt.containsInvokeExpr()) {
+                processInvoke(method, stmt, depth);
+            }
+        }
+    }
+
+    private void processInvoke(SootMethod caller, Stmt stmt, int depth) {
+        InvokeExpr invoke = stmt.getInvokeExpr();
+        SootMethodRef methodRef = invoke.getMethodRef();
+
+        if (invoke instanceof StaticInvokeExpr) {
+            addStaticInitializer(caller, stmt, methodRef.getDeclaringClass(), depth);
+            addEdge(caller, stmt, methodRef.tryResolve(), depth);
+            return;
+        }
+        if (invoke instanceof SpecialInvokeExpr || !(invoke instanceof InstanceInvokeExpr)) {
+            addEdge(caller, stmt, methodRef.tryResolve(), depth);
+            return;
+        }
+
+        // 虚调用和接口调用
+        Type baseType = ((InstanceInvokeExpr) invoke).getBase().getType();
+        SootClass receiver = baseType instanceof RefType
+                ? ((RefType) baseType).getSootClass()
+                : Scene.v().getObjectType().getSootClass();
+
+        boolean libraryReceiver = isLibraryClass(receiver);
+        if (libraryReceiver) {
+            // 不在库的类层次中展开，连接到声明的方法，以及覆盖了该方法的应用类型
+            addEdge(caller, stmt, methodRef.tryResolve(), depth);
+        }
+
+        if (resolution == DemandResolution.RTA) {
+            recordCallSite(caller, stmt, receiver, methodRef);
+        } else if (libraryReceiver) {
+            VirtualCallSite site = new VirtualCallSite(caller, stmt, receiver, methodRef);
+            for (SootClass subtype : applicationSubtypes(receiver)) {
+                dispatch(site, subtype);
+            }
+        } else {
+            Set<SootMethod> targets;
+            try {
+                targets = hierarchy().resolveAbstractDispatch(receiver, methodRef);
+            } catch (RuntimeException e) {
+                targets = Collections.emptySet();
+            }
+            for (SootMethod target : targets) {
+                addEdge(caller, stmt, target, depth);
+            }
+        }
+    }
+
+    /**
+     * 可以赋值给库类型的具体应用类，按库类型缓存
+     */
+    private List<SootClass> applicationSubtypes(SootClass libraryType) {
+        // 构建方法体时生成了新的应用类（如lambda）则重新计算
+        int applicationClassCount = Scene.v().getApplicationClasses().size();
+        if (applicationClassCount != subtypesClassCount) {
+            applicationSubtypes.clear();
+            subtypesClassCount = applicationClassCount;
+        }
+
+        List<SootClass> subtypes = applicationSubtypes.get(libraryType);
+        if (subtypes == null) {
+            subtypes = new ArrayList<>();
+            for (SootClass sootClass : new ArrayList<>(Scene.v().getApplicationClasses())) {
+                if (sootClass.isConcrete() && !sootClass.isPhantom() && isInputClass(sootClass)
+                        && hierarchy().canStoreClass(sootClass, libraryType)) {
+                    subtypes.add(sootClass);
+                }
+            }
+            applicationSubtypes.put(libraryType, subtypes);
+        }
+        return subtypes;
+    }
+
+    /**
+     * 是否为输入目录中的类，生成的lambda类按其所在的顶层类判断
+     */
+    private boolean isInputClass(SootClass sootClass) {
+        if (inputClassNames == null) {
+            inputClassNames = new HashSet<>();
+            for (String dir : Options.v().process_dir()) {
+                for (String className : SourceLocator.v().getClassesUnder(dir)) {
+                    inputClassNames.add(topLevelName(className));
+                }
+            }
+        }
+        return inputClassNames.isEmpty() || inputClassNames.contains(topLevelName(sootClass.getName()));
+    }
+
+    private static String topLevelName(String className) {
+        int index = className.indexOf('$');
+        return index >= 0 ? className.substring(0, index) : className;
+    }
+
+    /**
+     * 构建方法体时可能生成新的类（如lambda），Scene会重建类层次，因此每次都从Scene获取
+     */
+    private static FastHierarchy hierarchy() {
+        return Scene.v().getOrMakeFastHierarchy();
+    }
+
+    private static boolean isLibraryClass(SootClass sootClass) {
+        return sootClass.isPhantom() || sootClass.isLibraryClass() || sootClass.isJavaLibraryClass();
+    }
+
+    /**
+     * 记录RTA虚调用点，并按当前已实例化的类型解析
+     */
+    private void recordCallSite(SootMethod caller, Stmt stmt, SootClass receiver, SootMethodRef methodRef) {
+        if (!recordedCallSites.add(stmt)) {
+            return;
+        }
+        VirtualCallSite site = new VirtualCallSite(caller, stmt, receiver, methodRef);
+        virtualCallSites.add(site);
+        for (SootClass instantiated : new ArrayList<>(instantiatedClasses)) {
+            dispatch(site, instantiated);
+        }
+    }
+
+    /**
+     * RTA：新的应用类型被实例化时，重新解析已记录的虚调用点
+     */
+    private void instantiate(SootClass sootClass) {
+        if (isLibraryClass(sootClass) || !instantiatedClasses.add(sootClass)) {
+            return;
+        }
+        for (int i = 0; i < virtualCallSites.size(); i++) {
+            dispatch(virtualCallSites.get(i), sootClass);
+        }
+    }
+
+    private void dispatch(VirtualCallSite site, SootClass instantiated) {
+        if (!hierarchy().canStoreClass(instantiated, site.receiver)) {
+            return;
+        }
+        SootMethod target;
+        try {
+            target = hierarchy().resolveConcreteDispatch(instantiated, site.methodRef);
+        } catch (RuntimeException e) {
+            return;
+        }
+        addEdge(site.caller, site.stmt, target, depths.get(site.caller));
+    }
+
+    private void addStaticInitializer(SootMethod caller, Stmt stmt, SootClass sootClass, int depth) {
+        if (sootClass.isPhantom() || !sootClass.declaresMethod(SootMethod.staticInitializerName, Collections.emptyList())) {
+            return;
+        }
+        SootMethod clinit = sootClass.getMethod(SootMethod.staticInitializerName, Collections.emptyList());
+        callGraph.addEdge(new Edge(caller, stmt, clinit, Kind.CLINIT));
+        reach(clinit, depth + 1);
+    }
+
+    private void addEdge(SootMethod caller, Stmt stmt, SootMethod target, int depth) {
+        if (target == null) {
+            return;
+        }
+        // 边已存在时也要更新深度，调用者的深度可能变小了
+        callGraph.addEdge(new Edge(caller, stmt, target));
+        reach(target, depth + 1);
+    }
+
+    /**
+     * RTA等待解析的虚调用点
+     */
+    private static final class VirtualCallSite {
+        final SootMethod caller;
+        final Stmt stmt;
+        final SootClass receiver;
+        final SootMethodRef methodRef;
+
+        VirtualCallSite(SootMethod caller, Stmt stmt, SootClass receiver, SootMethodRef methodRef) {
+            this.caller = caller;
+            this.stmt = stmt;
+            this.receiver = receiver;
+            this.methodRef = methodRef;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package edu.thu.soot;
+
+import com.google.gson.stream.JsonWriter;
+import edu.thu.soot.SootCodeAnalyzer.IndexEntry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 代码索引的流式JSON输出工具
+ * 通过JsonWriter逐条写出索引条目，不再先把整个索引序列化为字符串，保存阶段的内存占用与项目规模无关
+ * 美化输出时结果与 Gson 的 setPrettyPrinting().disableHtmlEscaping() 完全一致
+ */
+class IndexJsonWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean prettyPrinting;
+
+    /**
+     * @param prettyPrinting 是否美化输出（缩进两个空格）
+     */
+    IndexJsonWriter(boolean prettyPrinting) {
+        this.prettyPrinting = prettyPrinting;
+    }
+
+    /**
+     * 将一个索引写入文件
+     *
+     * @param index 名称到索引条目的映射
+     * @param file  输出文件
+     * @throws IOException 如果写入文件时发生IO错误
+     */
+    void write(Map<String, List<IndexEntry>> index, Path file) throws IOException {
+        try (JsonWriter writer = open(file, prettyPrinting)) {
+            writer.beginObject();
+            for (Map.Entry<String, List<IndexEntry>> entry : index.entrySet()) {
+                writer.name(entry.getKey());
+                writer.beginArray();
+                for (IndexEntry indexEntry : entry.getValue()) {
+                    writeEntry(writer, indexEntry);
+                }
+                writer.endArray();
+            }
+            writer.endObject();
+        }
+    }
+
+    /**
+     * 写出单个索引条目，字段顺序与 IndexEntry 的声明顺序一致，null值省略
+     */
+    private void writeEntry(JsonWriter writer, IndexEntry entry) throws IOException {
+        writer.beginObject();
+        writer.name("className").value(entry.className);
+        writer.name("memberName").value(entry.memberName);
+        writer.name("signature").value(entry.signature);
+        writer.name("sourceFile").value(entry.sourceFile);
+        writer.name("lineNumber").value(entry.lineNumber);
+        writer.endObject();
+    }
+
+    /**
+     * 打开一个基于文件通道的缓冲JsonWriter
+     *
+     * @param file           输出文件
+     * @param prettyPrinting 是否美化输出
+     * @return JsonWriter，关闭时会同时关闭底层文件
+     * @throws IOException 如果打开文件时发生IO错误
+     */
+    static JsonWriter open(Path file, boolean prettyPrinting) throws IOException {
+        return newJsonWriter(openWriter(file, false), prettyPrinting);
+    }
+
+    /**
+     * 打开一个基于文件通道的UTF-8缓冲Writer
+     *
+     * @param file 输出文件
+     * @param gzip 是否以gzip压缩写出
+     * @return Writer，关闭时会同时关闭底层文件
+     * @throws IOException 如果打开文件时发生IO错误
+     */
+    static Writer openWriter(Path file, boolean gzip) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        if (!gzip) {
+            return new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+        OutputStream out = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * 创建与 Gson 的 disableHtmlEscaping() 输出一致的JsonWriter
+     */
+    static JsonWriter newJsonWriter(Writer out, boolean prettyPrinting) {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setHtmlSafe(false);
+        writer.setSerializeNulls(false);
+        if (prettyPrinting) {
+            writer.setIndent("  ");
+        }
+        return writer;
+    }
+}
@@ -0,0 +1,73 @@
+package edu.thu.soot;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 内存映射文件中的字符串表，二进制索引和CSR调用图共用
+ * 格式：字符串数量 n，n+1 个相对于数据区的起始偏移，随后是所有字符串的UTF-8字节
+ */
+final class MappedStringTable {
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int offsetsPosition;
+    private final int dataPosition;
+    private final String corruptMessage;
+
+    /**
+     * @param position       字符串表在映射区中的起始位置
+     * @param corruptMessage 字符串表损坏时的异常信息
+     */
+    MappedStringTable(ByteBuffer buffer, int position, String corruptMessage) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(position);
+        this.offsetsPosition = position + 4;
+        this.dataPosition = offsetsPosition + 4 * (count + 1);
+        this.corruptMessage = corruptMessage;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * 读取字符串
+     */
+    String get(int id) {
+        int start = start(id);
+        int end = buffer.getInt(offsetsPosition + (id + 1) * 4);
+        if (end < start) {
+            throw new IllegalStateException(corruptMessage);
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.get(dataPosition + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按无符号字节比较映射区中的字符串与目标UTF-8字节，与写入端的排序一致
+     */
+    int compare(int id, byte[] target) {
+        int start = start(id);
+        int length = buffer.getInt(offsetsPosition + (id + 1) * 4) - start;
+        int common = Math.min(length, target.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(dataPosition + start + i), target[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, target.length);
+    }
+
+    private int start(int id) {
+        if (id < 0 || id >= count) {
+            throw new IllegalStateException(corruptMessage);
+        }
+        int start = buffer.getInt(offsetsPosition + id * 4);
+        if (start < 0) {
+            throw new IllegalStateException(corruptMessage);
+        }
+        return start;
+    }
+}
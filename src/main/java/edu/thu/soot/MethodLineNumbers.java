@@ -0,0 +1,231 @@
+package edu.thu.soot;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 方法行号表
+ * 直接用ASM读取class文件中的LineNumberTable，取每个方法第一条带行号的指令所在行，不需要构建Jimple方法体。
+ * 结果按类保存，并附带class文件的SHA-256，可以持久化到缓存文件中，下次运行时内容未变化的类不再解析
+ */
+class MethodLineNumbers {
+    /**
+     * 方法有字节码但没有LineNumberTable（编译时未保留行号），需要从源文件查找
+     */
+    static final int NEEDS_SOURCE = 0;
+
+    /**
+     * 找不到行号（抽象方法、本地方法或未知方法）
+     */
+    static final int UNKNOWN = -1;
+
+    private final Map<String, ClassLines> classes = new ConcurrentHashMap<>();
+    private final AtomicInteger parsedClassCount = new AtomicInteger();
+    private final AtomicInteger reusedClassCount = new AtomicInteger();
+
+    /**
+     * 单个类的行号信息
+     */
+    private static class ClassLines {
+        String hash;
+        // 方法名+描述符（如 process(Ljava/lang/String;)V）→ 行号
+        Map<String, Integer> lines = new TreeMap<>();
+    }
+
+    /**
+     * 读取类路径下所有类的方法行号，缓存中哈希相同的类直接复用缓存结果
+     *
+     * @param classPath class文件目录或JAR文件
+     * @param cacheFile 缓存文件，为null或不存在时解析全部类
+     * @return 方法行号表
+     * @throws IOException 如果读取class文件或缓存时发生IO错误
+     */
+    static MethodLineNumbers load(String classPath, Path cacheFile) throws IOException {
+        return load(classPath, cacheFile, 1);
+    }
+
+    /**
+     * 读取类路径下所有类的方法行号，class文件按顺序读取，哈希计算和行号表解析在线程池中并行完成
+     *
+     * @param classPath class文件目录或JAR文件
+     * @param cacheFile 缓存文件，为null或不存在时解析全部类
+     * @param threads   线程数，小于等于1时串行读取
+     * @return 方法行号表
+     * @throws IOException 如果读取class文件或缓存时发生IO错误
+     */
+    static MethodLineNumbers load(String classPath, Path cacheFile, int threads) throws IOException {
+        Map<String, ClassLines> cached = readCache(cacheFile);
+        MethodLineNumbers result = new MethodLineNumbers();
+
+        if (threads <= 1) {
+            ClassFileHashes.forEach(classPath, (className, bytes) -> result.add(className, bytes, cached));
+            return result;
+        }
+
+        // 限制排队中的class文件数量，避免读取速度快于解析时占用过多内存
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Semaphore pending = new Semaphore(threads * 4);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            ClassFileHashes.forEach(classPath, (className, bytes) -> {
+                pending.acquireUninterruptibly();
+                futures.add(executor.submit(() -> {
+                    try {
+                        result.add(className, bytes, cached);
+                    } finally {
+                        pending.release();
+                    }
+                }));
+            });
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("读取行号表被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("读取行号表失败：" + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private void add(String className, byte[] bytes, Map<String, ClassLines> cached) {
+        String hash = ClassFileHashes.sha256(bytes);
+        ClassLines classLines = cached.get(className);
+        if (classLines != null && hash.equals(classLines.hash) && classLines.lines != null) {
+            reusedClassCount.incrementAndGet();
+        } else {
+            classLines = new ClassLines();
+            classLines.hash = hash;
+            readLineNumberTable(bytes, classLines.lines);
+            parsedClassCount.incrementAndGet();
+        }
+        classes.put(className, classLines);
+    }
+
+    /**
+     * 方法的行号
+     *
+     * @param className 类名
+     * @param methodKey 方法名+描述符，见 {@link #methodKey(String)}
+     * @return 行号；{@link #NEEDS_SOURCE} 表示需要从源文件查找；{@link #UNKNOWN} 表示没有行号
+     */
+    int get(String className, String methodKey) {
+        ClassLines classLines = classes.get(className);
+        if (classLines == null) {
+            return UNKNOWN;
+        }
+        Integer line = classLines.lines.get(methodKey);
+        return line != null ? line : UNKNOWN;
+    }
+
+    /**
+     * 记录从源文件查找到的行号，随缓存一起保存
+     * 不同线程可以同时写入不同的类，同一个类只能由一个线程写入
+     */
+    void put(String className, String methodKey, int line) {
+        ClassLines classLines = classes.get(className);
+        if (classLines != null) {
+            classLines.lines.put(methodKey, line > 0 ? line : UNKNOWN);
+        }
+    }
+
+    /**
+     * 从Soot的字节码签名（如 &lt;a.B: process(Ljava/lang/String;)V&gt;）中取出方法名+描述符
+     */
+    static String methodKey(String bytecodeSignature) {
+        return bytecodeSignature.substring(bytecodeSignature.indexOf(": ") + 2, bytecodeSignature.length() - 1);
+    }
+
+    /**
+     * 本次解析的类数
+     */
+    int getParsedClassCount() {
+        return parsedClassCount.get();
+    }
+
+    /**
+     * 从缓存复用的类数
+     */
+    int getReusedClassCount() {
+        return reusedClassCount.get();
+    }
+
+    /**
+     * 保存缓存
+     */
+    void save(Path cacheFile) throws IOException {
+        Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+        Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+        try (Writer writer = Files.newBufferedWriter(cacheFile, StandardCharsets.UTF_8)) {
+            gson.toJson(new TreeMap<>(classes), writer);
+        }
+    }
+
+    private static Map<String, ClassLines> readCache(Path cacheFile) throws IOException {
+        if (cacheFile == null || !Files.exists(cacheFile)) {
+            return new HashMap<>();
+        }
+        try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            Map<String, ClassLines> cached = new Gson().fromJson(reader, new TypeToken<Map<String, ClassLines>>() {
+            }.getType());
+            return cached != null ? cached : new HashMap<>();
+        } catch (RuntimeException e) {
+            // 缓存损坏时重新解析全部类
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * 读取class文件中每个方法第一条行号记录，有字节码但没有行号的方法记为 {@link #NEEDS_SOURCE}
+     */
+    private static void readLineNumberTable(byte[] bytes, Map<String, Integer> lines) {
+        ClassReader reader = new ClassReader(bytes);
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                String key = name + descriptor;
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitCode() {
+                        lines.put(key, NEEDS_SOURCE);
+                    }
+
+                    @Override
+                    public void visitLineNumber(int line, Label start) {
+                        if (lines.get(key) == NEEDS_SOURCE) {
+                            lines.put(key, line);
+                        }
+                    }
+                };
+            }
+        }, ClassReader.SKIP_FRAMES);
+    }
+}
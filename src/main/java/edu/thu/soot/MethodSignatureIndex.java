@@ -0,0 +1,322 @@
+package edu.thu.soot;
+
+import spoon.reflect.declaration.CtAnonymousExecutable;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtConstructor;
+import spoon.reflect.declaration.CtEnum;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtParameter;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.ModifierKind;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.reference.CtArrayTypeReference;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.reflect.visitor.filter.TypeFilter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spoon模型的方法签名索引
+ * 模型构建后一次性为所有方法、构造函数和静态初始化块建立 规范签名→声明 的哈希表，
+ * 按签名查找（包括按参数类型区分的重载）为常数时间
+ *
+ * 规范签名的形式与Soot一致：类名: 方法名(参数类型,...)，其中
+ * 参数类型取擦除后的全限定名，数组写作 T[]，可变参数视为数组，内部类用 $ 分隔，
+ * 构造函数名为 &lt;init&gt;，静态初始化块名为 &lt;clinit&gt;
+ */
+class MethodSignatureIndex {
+    static final String CONSTRUCTOR_NAME = "<init>";
+    static final String STATIC_INITIALIZER_NAME = "<clinit>";
+
+    private final Factory factory;
+
+    // 规范签名 → 声明
+    private final Map<String, CtExecutable<?>> bySignature = new HashMap<>();
+
+    // 类名: 方法名 → 同名声明（含重载），签名无法精确匹配时在其中回退查找
+    private final Map<String, List<CtExecutable<?>>> byName = new HashMap<>();
+
+    // 类名 → 类中的声明，用于诊断输出
+    private final Map<String, List<CtExecutable<?>>> byClass = new HashMap<>();
+
+    MethodSignatureIndex(Factory factory) {
+        this.factory = factory;
+        for (CtExecutable<?> executable : factory.getModel().getElements(new TypeFilter<>(CtExecutable.class))) {
+            if (executable instanceof CtMethod) {
+                add(executable, executable.getSimpleName(), parameterTypes(executable));
+            } else if (executable instanceof CtConstructor) {
+                addConstructor((CtConstructor<?>) executable);
+            } else if (executable instanceof CtAnonymousExecutable
+                    && ((CtAnonymousExecutable) executable).hasModifier(ModifierKind.STATIC)) {
+                add(executable, STATIC_INITIALIZER_NAME, Collections.emptyList());
+            }
+        }
+    }
+
+    /**
+     * 索引构造函数
+     * 字节码中非静态内部类的构造函数第一个参数是外部类实例，枚举的构造函数前两个参数是名称和序号，
+     * 因此同时登记源码形式和字节码形式的签名
+     */
+    private void addConstructor(CtConstructor<?> constructor) {
+        List<String> parameterTypes = parameterTypes(constructor);
+        add(constructor, CONSTRUCTOR_NAME, parameterTypes);
+
+        CtType<?> declaringType = constructor.getDeclaringType();
+        List<String> bytecodeParameterTypes = null;
+        if (declaringType instanceof CtEnum) {
+            bytecodeParameterTypes = new ArrayList<>(List.of("java.lang.String", "int"));
+        } else if (declaringType instanceof CtClass && declaringType.getDeclaringType() != null
+                && !declaringType.hasModifier(ModifierKind.STATIC)
+                && !declaringType.getDeclaringType().isInterface()) {
+            bytecodeParameterTypes = new ArrayList<>(List.of(declaringType.getDeclaringType().getQualifiedName()));
+        }
+        if (bytecodeParameterTypes != null) {
+            bytecodeParameterTypes.addAll(parameterTypes);
+            bySignature.putIfAbsent(key(declaringType.getQualifiedName(), CONSTRUCTOR_NAME, bytecodeParameterTypes),
+                    constructor);
+        }
+    }
+
+    private void add(CtExecutable<?> executable, String name, List<String> parameterTypes) {
+        CtType<?> declaringType = executable.getParent(CtType.class);
+        if (declaringType == null) {
+            return;
+        }
+        String className = declaringType.getQualifiedName();
+
+        bySignature.putIfAbsent(key(className, name, parameterTypes), executable);
+        byName.computeIfAbsent(className + ": " + name, k -> new ArrayList<>()).add(executable);
+        byClass.computeIfAbsent(className, k -> new ArrayList<>()).add(executable);
+    }
+
+    Factory getFactory() {
+        return factory;
+    }
+
+    /**
+     * 索引中的签名数量
+     */
+    int size() {
+        return bySignature.size();
+    }
+
+    /**
+     * 按签名查找声明
+     * 先按规范签名精确查找；找不到时在同名声明中按参数简单类型名和返回类型匹配，只有唯一匹配时才返回。
+     * 签名写出了参数列表时参数必须匹配；没有参数列表时才只按方法名和返回类型查找唯一的声明
+     *
+     * @return 方法、构造函数或静态初始化块，没有匹配或无法区分重载时返回null
+     */
+    CtExecutable<?> find(Signature signature) {
+        CtExecutable<?> executable = bySignature.get(key(signature.className, signature.methodName, signature.parameterTypes));
+        if (executable != null) {
+            return executable;
+        }
+
+        List<CtExecutable<?>> candidates = byName.getOrDefault(signature.className + ": " + signature.methodName,
+                Collections.emptyList());
+
+        CtExecutable<?> match = null;
+        int matches = 0;
+        for (CtExecutable<?> candidate : candidates) {
+            if (returnTypeMatches(candidate, signature) && parametersMatchLoosely(candidate, signature)) {
+                match = candidate;
+                matches++;
+            }
+        }
+        if (matches == 1) {
+            return match;
+        }
+
+        if (signature.hasParameterList) {
+            return null;
+        }
+
+        // 兼容没有参数列表的旧签名：同名且返回类型相同的声明唯一时直接使用
+        match = null;
+        matches = 0;
+        for (CtExecutable<?> candidate : candidates) {
+            if (returnTypeMatches(candidate, signature)) {
+                match = candidate;
+                matches++;
+            }
+        }
+        return matches == 1 ? match : null;
+    }
+
+    /**
+     * 类中的全部声明
+     */
+    List<CtExecutable<?>> executablesOf(String className) {
+        return byClass.getOrDefault(className, Collections.emptyList());
+    }
+
+    /**
+     * 声明的规范参数类型列表
+     */
+    static List<String> parameterTypes(CtExecutable<?> executable) {
+        List<String> parameterTypes = new ArrayList<>();
+        for (CtParameter<?> parameter : executable.getParameters()) {
+            parameterTypes.add(erasure(parameter.getType()));
+        }
+        return parameterTypes;
+    }
+
+    /**
+     * 类型擦除后的全限定名，类型变量取其上界，解析失败时按Object处理
+     */
+    static String erasure(CtTypeReference<?> type) {
+        if (type == null) {
+            return "java.lang.Object";
+        }
+        if (type instanceof CtArrayTypeReference) {
+            return erasure(((CtArrayTypeReference<?>) type).getComponentType()) + "[]";
+        }
+        try {
+            return type.getTypeErasure().getQualifiedName();
+        } catch (RuntimeException e) {
+            // 无类路径模式下类型变量的声明可能无法解析
+            return type.isGenerics() ? "java.lang.Object" : type.getQualifiedName();
+        }
+    }
+
+    private static String returnType(CtExecutable<?> executable) {
+        return executable instanceof CtMethod ? erasure(executable.getType()) : "void";
+    }
+
+    private static boolean returnTypeMatches(CtExecutable<?> executable, Signature signature) {
+        String returnType = returnType(executable);
+        return returnType.equals(signature.returnType)
+                || simpleName(returnType).equals(simpleName(signature.returnType));
+    }
+
+    private static boolean parametersMatchLoosely(CtExecutable<?> executable, Signature signature) {
+        List<String> parameterTypes = parameterTypes(executable);
+        if (parameterTypes.size() != signature.parameterTypes.size()) {
+            return false;
+        }
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            if (!simpleName(parameterTypes.get(i)).equals(simpleName(signature.parameterTypes.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String simpleName(String typeName) {
+        int separator = Math.max(typeName.lastIndexOf('.'), typeName.lastIndexOf('$'));
+        return typeName.substring(separator + 1);
+    }
+
+    private static String key(String className, String methodName, List<String> parameterTypes) {
+        return className + ": " + methodName + "(" + String.join(",", parameterTypes) + ")";
+    }
+
+    /**
+     * 将签名中写出的类型规范化：去掉泛型参数，可变参数改写为数组
+     */
+    static String normalizeTypeName(String typeName) {
+        StringBuilder normalized = new StringBuilder(typeName.length());
+        int depth = 0;
+        for (int i = 0; i < typeName.length(); i++) {
+            char c = typeName.charAt(i);
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (depth == 0 && !Character.isWhitespace(c)) {
+                normalized.append(c);
+            }
+        }
+
+        String result = normalized.toString();
+        if (result.endsWith("...")) {
+            result = result.substring(0, result.length() - 3) + "[]";
+        }
+        return result;
+    }
+
+    /**
+     * 解析后的方法签名
+     * 格式：[<]类名: 返回类型 方法名(参数类型1, 参数类型2, ...)[>]
+     */
+    static class Signature {
+        final String className;
+        final String returnType;
+        final String methodName;
+        final List<String> parameterTypes;
+        // 签名中是否写出了参数列表（包括空列表）
+        final boolean hasParameterList;
+
+        private Signature(String className, String returnType, String methodName, List<String> parameterTypes,
+                          boolean hasParameterList) {
+            this.className = className;
+            this.returnType = returnType;
+            this.methodName = methodName;
+            this.parameterTypes = parameterTypes;
+            this.hasParameterList = hasParameterList;
+        }
+
+        static Signature parse(String methodSignature) {
+            // 支持Soot风格的签名：<className: returnType methodName(paramType1, paramType2, ...)>
+            if (methodSignature.startsWith("<") && methodSignature.endsWith(">")) {
+                methodSignature = methodSignature.substring(1, methodSignature.length() - 1);
+            }
+
+            String[] parts = methodSignature.split(": ", 2);
+            if (parts.length != 2 || parts[0].contains(" ")) {
+                throw new IllegalArgumentException("Invalid method signature format. Expected: className: returnType methodName(paramType1, paramType2, ...)");
+            }
+
+            int open = parts[1].indexOf('(');
+            int close = parts[1].lastIndexOf(')');
+            String head = (open >= 0 ? parts[1].substring(0, open) : parts[1]).trim();
+
+            // 返回类型可能带泛型参数，方法名是最后一个空白之后的部分
+            int nameStart = head.lastIndexOf(' ');
+            if (nameStart < 0) {
+                throw new IllegalArgumentException("Invalid method part format");
+            }
+
+            List<String> parameterTypes = new ArrayList<>();
+            boolean hasParameterList = open >= 0 && close > open;
+            if (hasParameterList) {
+                for (String parameterType : splitParameters(parts[1].substring(open + 1, close))) {
+                    parameterTypes.add(normalizeTypeName(parameterType));
+                }
+            }
+
+            return new Signature(parts[0].trim(), normalizeTypeName(head.substring(0, nameStart)),
+                    head.substring(nameStart + 1), parameterTypes, hasParameterList);
+        }
+
+        /**
+         * 按逗号拆分参数列表，忽略泛型参数内部的逗号
+         */
+        private static List<String> splitParameters(String parameters) {
+            List<String> result = new ArrayList<>();
+            int depth = 0;
+            int start = 0;
+            for (int i = 0; i < parameters.length(); i++) {
+                char c = parameters.charAt(i);
+                if (c == '<') {
+                    depth++;
+                } else if (c == '>') {
+                    depth--;
+                } else if (c == ',' && depth == 0) {
+                    result.add(parameters.substring(start, i));
+                    start = i + 1;
+                }
+            }
+            result.add(parameters.substring(start));
+            result.removeIf(String::isBlank);
+            return result;
+        }
+    }
+}
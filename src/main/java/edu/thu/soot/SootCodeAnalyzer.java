@@ -1,20 +1,19 @@
 package edu.thu.soot;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 import org.apache.commons.cli.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import soot.*;
 import soot.jimple.*;
-import soot.jimple.spark.pag.AllocNode;
-import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.ondemand.DemandCSPointsTo;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.jimple.toolkits.pointer.DumbPointerAnalysis;
 import soot.options.Options;
 import soot.tagkit.LineNumberTag;
 import soot.tagkit.SourceFileTag;
-import soot.toolkits.graph.DirectedGraph;
-import soot.toolkits.graph.ExceptionalUnitGraph;
 import soot.toolkits.graph.UnitGraph;
 import soot.toolkits.graph.BriefUnitGraph;
 import soot.util.dot.DotGraph;
@@ -22,10 +21,16 @@ import soot.util.dot.DotGraph;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Soot代码分析器
@@ -37,6 +42,9 @@ import java.util.*;
  */
 public class SootCodeAnalyzer {
     private static final Logger logger = LoggerFactory.getLogger(SootCodeAnalyzer.class);
+    // DemandCSPointsTo 的预算：每次查询最多遍历的PAG边数和细化轮数（与Soot的默认值相同）
+    private static final int DEMAND_MAX_TRAVERSAL = 75000;
+    private static final int DEMAND_MAX_PASSES = 10;
     private String targetPath;
     private String outputPath;
     private boolean generateCallGraph = false;
@@ -48,7 +56,30 @@ public class SootCodeAnalyzer {
     private String targetMethodName = null;
     private String methodSignature = null;
     private boolean extractMethodSource = false;
+    private String signaturesFile = null;
+    private boolean verboseExtraction = false;
     private String sourcePath = null;
+    private int threads = 1;
+    private int ptaThreads = 1;
+    // 指针分析查询：方法签名，或 方法签名:变量名；为空时提取全部结果
+    private List<String> pointsToQueries = Collections.emptyList();
+    private boolean demandPointsTo = false;
+    // SPARK调优配置，为null时指针分析使用pointsto，只生成调用图时使用Soot的默认选项
+    private SparkProfile sparkProfile = null;
+    private boolean prettyPrintJson = true;
+    private IndexFormat indexFormat = IndexFormat.JSON;
+    private boolean incremental = false;
+    // 指针分析的入口点，为空时使用所有公共方法
+    private List<String> entryPoints = new ArrayList<>();
+    // Soot调用图算法，为null时只在指针分析时使用SPARK
+    private CallGraphGenerator.CallGraphAlgorithm callGraphAlgorithm = null;
+
+    // 增量模式下需要重新分析的类，为null时分析所有应用类
+    private Set<String> classesToAnalyze = null;
+    private Map<String, String> currentClassHashes = null;
+
+    // 类内容哈希清单，与索引文件保存在同一目录
+    private static final String CLASS_HASHES_FILE = "class_hashes.json";
 
     // 存储索引信息
     private final Map<String, List<IndexEntry>> methodDefinitions = new HashMap<>();
@@ -57,18 +88,19 @@ public class SootCodeAnalyzer {
     private final Map<String, List<IndexEntry>> fieldReferences = new HashMap<>();
 
     // 存储调用图信息
-    private final Map<String, List<String>> callGraph = new HashMap<>();
+    private final CallGraphStore callGraph = new CallGraphStore();
 
-    // 存储指针分析结果
-    private final Map<String, Map<String, Set<String>>> pointsToLocals = new HashMap<>();      // 局部变量
-    private final Map<String, Set<String>> pointsToInstanceFields = new HashMap<>();           // 实例字段
-    private final Map<String, Set<String>> pointsToStaticFields = new HashMap<>();             // 静态字段
-    private final Map<String, Map<String, Object>> pointsToArrays = new HashMap<>();           // 数组
+    // 存储指针分析结果，指向集合为分配点表中的编号
+    private AllocSiteTable allocSites = new AllocSiteTable();                                 // 分配点
+    private final Map<String, Map<String, int[]>> pointsToLocals = new HashMap<>();            // 局部变量
+    private final Map<String, int[]> pointsToInstanceFields = new HashMap<>();                 // 实例字段
+    private final Map<String, int[]> pointsToStaticFields = new HashMap<>();                   // 静态字段
+    private final Map<String, ArrayPointsTo> pointsToArrays = new HashMap<>();                 // 数组
 
     /**
      * 索引条目，记录定义或引用的位置
      */
-    static class IndexEntry {
+    public static class IndexEntry {
         String className;
         String memberName;
         String signature;
@@ -82,6 +114,187 @@ public class SootCodeAnalyzer {
             this.sourceFile = sourceFile;
             this.lineNumber = lineNumber;
         }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getMemberName() {
+            return memberName;
+        }
+
+        public String getSignature() {
+            return signature;
+        }
+
+        public String getSourceFile() {
+            return sourceFile;
+        }
+
+        public int getLineNumber() {
+            return lineNumber;
+        }
+    }
+
+    /**
+     * 数组变量的指向结果
+     */
+    private static final class ArrayPointsTo {
+        final String elementType;
+        final int[] pointsTo;
+
+        ArrayPointsTo(String elementType, int[] pointsTo) {
+            this.elementType = elementType;
+            this.pointsTo = pointsTo;
+        }
+    }
+
+    /**
+     * 指针分析结果的分片，并行提取时每个类的结果先写入独立的分片（使用自己的分配点表），再按类的顺序合并
+     */
+    static class PointsToShard {
+        final AllocSiteTable allocSites;
+        final Map<String, Map<String, int[]>> locals;
+        final Map<String, int[]> instanceFields;
+        final Map<String, int[]> staticFields;
+        final Map<String, ArrayPointsTo> arrays;
+
+        PointsToShard() {
+            this(new AllocSiteTable(), new LinkedHashMap<>(), new LinkedHashMap<>(), new LinkedHashMap<>(), new LinkedHashMap<>());
+        }
+
+        PointsToShard(AllocSiteTable allocSites,
+                      Map<String, Map<String, int[]>> locals,
+                      Map<String, int[]> instanceFields,
+                      Map<String, int[]> staticFields,
+                      Map<String, ArrayPointsTo> arrays) {
+            this.allocSites = allocSites;
+            this.locals = locals;
+            this.instanceFields = instanceFields;
+            this.staticFields = staticFields;
+            this.arrays = arrays;
+        }
+
+        /**
+         * 将当前分片合并到目标分片，分配点编号转换为目标分片中的编号
+         * 实例字段在多个类中出现时与串行提取一样保留先出现的结果，其余的键都以类名开头，不会在分片之间重复
+         */
+        void mergeInto(PointsToShard target) {
+            int[] mapping = target.allocSites.addAll(allocSites);
+            for (Map.Entry<String, Map<String, int[]>> method : locals.entrySet()) {
+                Map<String, int[]> targetLocals = new HashMap<>();
+                for (Map.Entry<String, int[]> local : method.getValue().entrySet()) {
+                    targetLocals.put(local.getKey(), target.allocSites.translate(local.getValue(), mapping));
+                }
+                target.locals.put(method.getKey(), targetLocals);
+            }
+            for (Map.Entry<String, int[]> field : instanceFields.entrySet()) {
+                if (!target.instanceFields.containsKey(field.getKey())) {
+                    target.instanceFields.put(field.getKey(), target.allocSites.translate(field.getValue(), mapping));
+                }
+            }
+            for (Map.Entry<String, int[]> field : staticFields.entrySet()) {
+                target.staticFields.put(field.getKey(), target.allocSites.translate(field.getValue(), mapping));
+            }
+            for (Map.Entry<String, ArrayPointsTo> array : arrays.entrySet()) {
+                ArrayPointsTo value = array.getValue();
+                target.arrays.put(array.getKey(),
+                        new ArrayPointsTo(value.elementType, target.allocSites.translate(value.pointsTo, mapping)));
+            }
+        }
+
+        /**
+         * 去掉未被引用的分配点，并按与提取顺序无关的顺序重新编号
+         */
+        void compact() {
+            BitSet referenced = new BitSet(allocSites.size());
+            for (Map<String, int[]> methodLocals : locals.values()) {
+                methodLocals.values().forEach(sites -> mark(referenced, sites));
+            }
+            instanceFields.values().forEach(sites -> mark(referenced, sites));
+            staticFields.values().forEach(sites -> mark(referenced, sites));
+            arrays.values().forEach(array -> mark(referenced, array.pointsTo));
+
+            int[] mapping = allocSites.compact(referenced);
+            for (Map<String, int[]> methodLocals : locals.values()) {
+                methodLocals.replaceAll((name, sites) -> allocSites.translate(sites, mapping));
+            }
+            instanceFields.replaceAll((name, sites) -> allocSites.translate(sites, mapping));
+            staticFields.replaceAll((name, sites) -> allocSites.translate(sites, mapping));
+            arrays.replaceAll((name, array) ->
+                    new ArrayPointsTo(array.elementType, allocSites.translate(array.pointsTo, mapping)));
+        }
+
+        private static void mark(BitSet referenced, int[] sites) {
+            for (int site : sites) {
+                referenced.set(site);
+            }
+        }
+    }
+
+    /**
+     * 索引输出格式
+     */
+    public enum IndexFormat {
+        JSON,   // index/*.json
+        BINARY, // index/code_index.bin，可内存映射查询
+        BOTH
+    }
+
+    /**
+     * 索引分片，保存一部分类的索引和调用图信息
+     * 并行分析时每个类写入独立的分片，最后按类的顺序合并，保证结果与串行分析一致
+     */
+    static class IndexShard {
+        final Map<String, List<IndexEntry>> methodDefinitions;
+        final Map<String, List<IndexEntry>> methodInvocations;
+        final Map<String, List<IndexEntry>> fieldDefinitions;
+        final Map<String, List<IndexEntry>> fieldReferences;
+        final CallGraphStore callGraph;
+
+        IndexShard() {
+            // 使用LinkedHashMap保留键的首次出现顺序，合并时才能复现串行分析的插入顺序
+            this(new LinkedHashMap<>(), new LinkedHashMap<>(), new LinkedHashMap<>(), new LinkedHashMap<>(), new CallGraphStore());
+        }
+
+        IndexShard(Map<String, List<IndexEntry>> methodDefinitions,
+                   Map<String, List<IndexEntry>> methodInvocations,
+                   Map<String, List<IndexEntry>> fieldDefinitions,
+                   Map<String, List<IndexEntry>> fieldReferences,
+                   CallGraphStore callGraph) {
+            this.methodDefinitions = methodDefinitions;
+            this.methodInvocations = methodInvocations;
+            this.fieldDefinitions = fieldDefinitions;
+            this.fieldReferences = fieldReferences;
+            this.callGraph = callGraph;
+        }
+
+        /**
+         * 将当前分片合并到目标分片
+         */
+        void mergeInto(IndexShard target) {
+            mergeEntries(methodDefinitions, target.methodDefinitions);
+            mergeEntries(methodInvocations, target.methodInvocations);
+            mergeEntries(fieldDefinitions, target.fieldDefinitions);
+            mergeEntries(fieldReferences, target.fieldReferences);
+
+            callGraph.mergeInto(target.callGraph);
+        }
+
+        /**
+         * 注意不要使用computeIfAbsent：HashMap在冲突桶中会把它插入的键放在链表头部，
+         * 与串行分析使用的put顺序不同，导致输出顺序不一致
+         */
+        private static void mergeEntries(Map<String, List<IndexEntry>> source, Map<String, List<IndexEntry>> target) {
+            for (Map.Entry<String, List<IndexEntry>> entry : source.entrySet()) {
+                List<IndexEntry> entries = target.get(entry.getKey());
+                if (entries == null) {
+                    entries = new ArrayList<>();
+                    target.put(entry.getKey(), entries);
+                }
+                entries.addAll(entry.getValue());
+            }
+        }
     }
 
     public SootCodeAnalyzer(String targetPath, String outputPath) {
@@ -92,9 +305,17 @@ public class SootCodeAnalyzer {
     /**
      * 初始化Soot
      */
-    private void initializeSoot() {
+    void initializeSoot() {
         G.reset();
 
+        // Soot按阶段对象保存选项，带预算的SPARK需要在设置cg.spark的选项之前替换进cg包
+        SparkProfile profile = effectiveSparkProfile();
+        if (profile != null && profile.hasBudget()) {
+            Pack callGraphPack = PackManager.v().getPack("cg");
+            callGraphPack.remove("cg.spark");
+            callGraphPack.insertAfter(new Transform("cg.spark", profile.newTransformer()), "cg.cha");
+        }
+
         // 设置Soot选项
         Options.v().set_prepend_classpath(true);
         Options.v().set_allow_phantom_refs(true);
@@ -122,21 +343,20 @@ public class SootCodeAnalyzer {
             Options.v().set_whole_program(true);
             Options.v().setPhaseOption("cg", "safe-newinstance:true");
             Options.v().setPhaseOption("cg.spark", "on");
+            if (profile != null) {
+                logger.info("SPARK配置：{}", profile);
+                profile.apply();
+            }
+
+            if (generatePointsToAnalysis && demandPointsTo) {
+                // SPARK求解后用 DemandCSPointsTo 包装PAG，查询时在预算内按需做上下文敏感的细化
+                Options.v().setPhaseOption("cg.spark", "cs-demand:true");
+                Options.v().setPhaseOption("cg.spark", "traversal:" + DEMAND_MAX_TRAVERSAL);
+                Options.v().setPhaseOption("cg.spark", "passes:" + DEMAND_MAX_PASSES);
+            }
 
-            // 针对指针分析的额外配置
-            if (generatePointsToAnalysis) {
-                // 增强指针分析配置
-                Options.v().setPhaseOption("cg.spark", "verbose:true");
-                Options.v().setPhaseOption("cg.spark", "on-fly-cg:true");
-                Options.v().setPhaseOption("cg.spark", "propagator:worklist");
-                Options.v().setPhaseOption("cg.spark", "set-impl:double");
-                Options.v().setPhaseOption("cg.spark", "double-set-old:hybrid");
-                Options.v().setPhaseOption("cg.spark", "double-set-new:hybrid");
-                Options.v().setPhaseOption("cg.spark", "field-based:false");
-                Options.v().setPhaseOption("cg.spark", "types-for-sites:true");
-                Options.v().setPhaseOption("cg.spark", "merge-stringbuffer:true");
-                Options.v().setPhaseOption("cg.spark", "string-constants:true");
-                Options.v().setPhaseOption("cg.spark", "simulate-natives:true");
+            if (callGraphAlgorithm != null) {
+                configureCallGraphAlgorithm(callGraphAlgorithm);
             }
         }
 
@@ -152,6 +372,51 @@ public class SootCodeAnalyzer {
         logger.info("Soot初始化完成");
     }
 
+    /**
+     * 指针分析使用cg阶段的SPARK结果，CHA会关闭SPARK，RTA/VTA会把PAG本身退化为rta/vta模式，
+     * 因此指针分析时只允许SPARK
+     *
+     * @throws IllegalArgumentException 同时指定指针分析和其他调用图算法时
+     */
+    private void checkCallGraphAlgorithm() {
+        if (generatePointsToAnalysis && callGraphAlgorithm != null
+                && callGraphAlgorithm != CallGraphGenerator.CallGraphAlgorithm.SPARK) {
+            throw new IllegalArgumentException("指针分析只能使用SPARK调用图算法，不能与 " + callGraphAlgorithm + " 一起使用");
+        }
+    }
+
+    /**
+     * 实际使用的SPARK调优配置
+     */
+    private SparkProfile effectiveSparkProfile() {
+        if (sparkProfile != null) {
+            return sparkProfile;
+        }
+        return generatePointsToAnalysis ? SparkProfile.builtin(SparkProfile.POINTS_TO) : null;
+    }
+
+    /**
+     * 设置cg阶段使用的调用图算法，RTA和VTA是Spark的退化配置，不能在传播时构建调用图
+     */
+    private static void configureCallGraphAlgorithm(CallGraphGenerator.CallGraphAlgorithm algorithm) {
+        switch (algorithm) {
+            case CHA:
+                Options.v().setPhaseOption("cg.spark", "enabled:false");
+                Options.v().setPhaseOption("cg.cha", "enabled:true");
+                break;
+            case RTA:
+                Options.v().setPhaseOption("cg.spark", "rta:true");
+                Options.v().setPhaseOption("cg.spark", "on-fly-cg:false");
+                break;
+            case VTA:
+                Options.v().setPhaseOption("cg.spark", "vta:true");
+                Options.v().setPhaseOption("cg.spark", "on-fly-cg:false");
+                break;
+            default:
+                break;
+        }
+    }
+
     /**
      * 获取排除的包列表
      */
@@ -169,20 +434,30 @@ public class SootCodeAnalyzer {
         logger.info("开始分析目标代码：{}", targetPath);
 
         // 提取方法源码
-        if (extractMethodSource && methodSignature != null && sourcePath != null) {
+        if (extractMethodSource && (methodSignature != null || signaturesFile != null) && sourcePath != null) {
             logger.info("使用提取源码模式");
             // 创建输出目录
             createOutputDirectory();
-            extractMethodSource();
+            if (signaturesFile != null) {
+                extractMethodSources();
+            } else {
+                extractMethodSource();
+            }
             return; // 如果只是提取方法源码，完成后直接返回
         }
 
         // 以下是普通分析模式，需要初始化Soot
+        checkCallGraphAlgorithm();
         initializeSoot();
 
         // 创建输出目录
         createOutputDirectory();
 
+        // 增量模式：加载上次的索引，只重新分析新增或变化的类
+        if (incremental && generateIndex) {
+            prepareIncrementalIndex();
+        }
+
         // 分析所有类
         analyzeClasses();
 
@@ -204,11 +479,44 @@ public class SootCodeAnalyzer {
         // 保存分析结果
         if (generateIndex) {
             saveIndexResults();
+            saveClassHashes();
         }
 
         logger.info("分析完成");
     }
 
+    /**
+     * 加载目标并建立内存中的索引和调用图，不写出任何结果
+     * 供常驻的分析服务使用，Soot的Scene在加载后保持可用
+     */
+    void load() {
+        logger.info("加载目标代码：{}", targetPath);
+        clearIndex();
+        initializeSoot();
+        analyzeClasses();
+        logger.info("加载完成：{} 个方法名，{} 个调用者", methodDefinitions.size(), callGraph.callerCount());
+    }
+
+    Map<String, List<IndexEntry>> getMethodDefinitions() {
+        return methodDefinitions;
+    }
+
+    Map<String, List<IndexEntry>> getMethodInvocations() {
+        return methodInvocations;
+    }
+
+    Map<String, List<IndexEntry>> getFieldDefinitions() {
+        return fieldDefinitions;
+    }
+
+    Map<String, List<IndexEntry>> getFieldReferences() {
+        return fieldReferences;
+    }
+
+    CallGraphStore getCallGraph() {
+        return callGraph;
+    }
+
     /**
      * 提取方法源码并保存到文件
      */
@@ -216,8 +524,9 @@ public class SootCodeAnalyzer {
         logger.info("开始提取方法源码：{}", methodSignature);
         
         try {
-            // 使用SpoonMethodSourceExtractor提取源码
-            SpoonMethodSourceExtractor extractor = new SpoonMethodSourceExtractor(sourcePath);
+            // 使用SpoonMethodSourceExtractor提取源码，同一源码路径的Spoon模型只构建一次
+            SpoonMethodSourceExtractor extractor = SpoonMethodSourceExtractor.forSourceRoot(sourcePath);
+            extractor.setVerbose(verboseExtraction);
             
             // 创建输出路径
             Path methodOutputPath = Paths.get(outputPath, "method_source");
@@ -241,6 +550,48 @@ public class SootCodeAnalyzer {
         }
     }
     
+    /**
+     * 批量提取方法源码
+     * 签名文件每行一个方法签名，空行和以#开头的行会被忽略；Spoon模型只构建一次
+     */
+    private void extractMethodSources() {
+        logger.info("开始批量提取方法源码：{}", signaturesFile);
+
+        try {
+            List<String> signatures = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(signaturesFile), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    signatures.add(line);
+                }
+            }
+
+            SpoonMethodSourceExtractor extractor = SpoonMethodSourceExtractor.forSourceRoot(sourcePath);
+            extractor.setVerbose(verboseExtraction);
+            Path methodOutputPath = Paths.get(outputPath, "method_source");
+            Files.createDirectories(methodOutputPath);
+
+            int extracted = 0;
+            for (String signature : signatures) {
+                Path outputFile = methodOutputPath.resolve(getSafeFileName(signature) + ".java");
+                try {
+                    if (extractor.writeMethodSourceToFile(signature, outputFile.toString())) {
+                        extracted++;
+                    } else {
+                        logger.warn("提取方法源码失败：{}", signature);
+                    }
+                } catch (IllegalArgumentException e) {
+                    logger.warn("提取方法源码失败：{}，{}", signature, e.getMessage());
+                }
+            }
+
+            logger.info("批量提取完成：成功 {} 个，失败 {} 个，结果保存在：{}",
+                    extracted, signatures.size() - extracted, methodOutputPath);
+        } catch (IOException e) {
+            logger.error("批量提取方法源码时出错：{}", e.getMessage());
+        }
+    }
+
     /**
      * 根据方法签名生成安全的文件名
      */
@@ -281,51 +632,363 @@ public class SootCodeAnalyzer {
         }
     }
 
+    /**
+     * 准备增量索引
+     * 对比上次运行保存的类内容哈希，加载上次的索引并丢弃来自已变化或已删除类的条目，
+     * 以及引用了它们（或它们的子类型）的未变化类的条目，随后只需要重新分析这些类
+     */
+    private void prepareIncrementalIndex() {
+        Path indexDir = Paths.get(outputPath, "index");
+        if (callGraphAlgorithm != null) {
+            // 算法解析出的调用目标依赖整个程序，无法只更新变化的类
+            logger.info("指定了调用图算法，执行完整分析");
+            clearIndex();
+            return;
+        }
+        try {
+            currentClassHashes = new TreeMap<>();
+            Map<String, ClassFileHashes.ClassDependencies> dependencies = new HashMap<>();
+            ClassFileHashes.forEach(targetPath, (className, bytes) -> {
+                currentClassHashes.put(className, ClassFileHashes.sha256(bytes));
+                dependencies.put(className, ClassFileHashes.readDependencies(bytes));
+            });
+            ClassFileHashes.Manifest manifest = ClassFileHashes.load(indexDir.resolve(CLASS_HASHES_FILE));
+            Map<String, String> previousHashes = manifest.getClasses();
+            if (generateCallGraph && !previousHashes.isEmpty() && !manifest.hasCallGraph()) {
+                // 上次运行没有生成调用图，输出目录中的调用图来自更早的版本，其中变化的类无从得知
+                logger.info("上次运行没有生成调用图，执行完整分析");
+                clearIndex();
+                return;
+            }
+            if (previousHashes.isEmpty() || !loadPreviousIndex(indexDir)) {
+                logger.info("没有可用的上次索引结果，执行完整分析");
+                clearIndex();
+                return;
+            }
+
+            // 变化或删除的类的旧条目需要丢弃，新增或变化的类需要重新分析
+            Set<String> staleClasses = new HashSet<>();
+            Set<String> changedClasses = new HashSet<>();
+            for (Map.Entry<String, String> entry : currentClassHashes.entrySet()) {
+                if (!entry.getValue().equals(previousHashes.get(entry.getKey()))) {
+                    changedClasses.add(entry.getKey());
+                    staleClasses.add(entry.getKey());
+                }
+            }
+            for (String className : previousHashes.keySet()) {
+                if (!currentClassHashes.containsKey(className)) {
+                    staleClasses.add(className);
+                }
+            }
+            int deletedCount = staleClasses.size() - changedClasses.size();
+
+            // 未变化的类中对变化类（或其子类型，子类型可能继承或重写了变化的方法）的引用可能解析到不同的声明类，
+            // 需要一起重新分析；依赖来自当前的class文件和上次索引中记录的引用目标
+            Set<String> affectedClasses = withSubtypes(staleClasses, dependencies);
+            Set<String> dependentClasses = new HashSet<>();
+            for (Map.Entry<String, ClassFileHashes.ClassDependencies> entry : dependencies.entrySet()) {
+                if (!Collections.disjoint(entry.getValue().references, affectedClasses)) {
+                    dependentClasses.add(entry.getKey());
+                }
+            }
+            addReferencingClasses(methodInvocations, affectedClasses, dependentClasses);
+            addReferencingClasses(fieldReferences, affectedClasses, dependentClasses);
+            dependentClasses.removeIf(className -> staleClasses.contains(className)
+                    || !currentClassHashes.containsKey(className));
+            staleClasses.addAll(dependentClasses);
+            changedClasses.addAll(dependentClasses);
+
+            removeEntriesOfClasses(methodDefinitions, staleClasses);
+            removeEntriesOfClasses(methodInvocations, staleClasses);
+            removeEntriesOfClasses(fieldDefinitions, staleClasses);
+            removeEntriesOfClasses(fieldReferences, staleClasses);
+            callGraph.removeCallers(caller -> staleClasses.contains(getDeclaringClassName(caller)));
+
+            classesToAnalyze = changedClasses;
+            logger.info("增量模式：{} 个类新增或变化，{} 个类已删除，{} 个依赖它们的类需要重新分析",
+                    changedClasses.size() - dependentClasses.size(), deletedCount, dependentClasses.size());
+        } catch (Exception e) {
+            logger.warn("加载上次索引结果失败，执行完整分析：{}", e.getMessage());
+            clearIndex();
+        }
+    }
+
+    /**
+     * 获取指定的类及其在类路径中的所有子类型
+     */
+    private static Set<String> withSubtypes(Set<String> classNames,
+                                            Map<String, ClassFileHashes.ClassDependencies> dependencies) {
+        Map<String, List<String>> subtypes = new HashMap<>();
+        for (Map.Entry<String, ClassFileHashes.ClassDependencies> entry : dependencies.entrySet()) {
+            for (String supertype : entry.getValue().supertypes) {
+                subtypes.computeIfAbsent(supertype, key -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+
+        Set<String> result = new HashSet<>(classNames);
+        Deque<String> worklist = new ArrayDeque<>(classNames);
+        while (!worklist.isEmpty()) {
+            for (String subtype : subtypes.getOrDefault(worklist.poll(), Collections.emptyList())) {
+                if (result.add(subtype)) {
+                    worklist.add(subtype);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把索引中引用了指定类的条目所在的类加入结果
+     */
+    private static void addReferencingClasses(Map<String, List<IndexEntry>> index, Set<String> classNames,
+                                              Set<String> result) {
+        for (List<IndexEntry> entries : index.values()) {
+            for (IndexEntry entry : entries) {
+                if (classNames.contains(entry.className)) {
+                    result.add(getOriginClassName(entry));
+                }
+            }
+        }
+    }
+
+    /**
+     * 加载上次保存的索引（优先JSON，其次二进制格式），需要生成调用图时同时加载调用图
+     *
+     * @return 是否加载成功
+     */
+    private boolean loadPreviousIndex(Path indexDir) throws IOException {
+        Path callGraphFile = Paths.get(outputPath, "call_graph.json");
+        if (generateCallGraph) {
+            if (!Files.exists(callGraphFile)) {
+                return false;
+            }
+            callGraph.readJson(callGraphFile);
+        }
+
+        Path methodDefsFile = indexDir.resolve("method_definitions.json");
+        if (Files.exists(methodDefsFile)) {
+            methodDefinitions.putAll(readIndexJson(methodDefsFile));
+            methodInvocations.putAll(readIndexJson(indexDir.resolve("method_invocations.json")));
+            fieldDefinitions.putAll(readIndexJson(indexDir.resolve("field_definitions.json")));
+            fieldReferences.putAll(readIndexJson(indexDir.resolve("field_references.json")));
+            return true;
+        }
+
+        Path binaryFile = indexDir.resolve("code_index.bin");
+        if (Files.exists(binaryFile)) {
+            try (BinaryIndexReader reader = BinaryIndexReader.open(binaryFile)) {
+                methodDefinitions.putAll(reader.readAll(BinaryIndexWriter.Section.METHOD_DEFINITIONS));
+                methodInvocations.putAll(reader.readAll(BinaryIndexWriter.Section.METHOD_INVOCATIONS));
+                fieldDefinitions.putAll(reader.readAll(BinaryIndexWriter.Section.FIELD_DEFINITIONS));
+                fieldReferences.putAll(reader.readAll(BinaryIndexWriter.Section.FIELD_REFERENCES));
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    private Map<String, List<IndexEntry>> readIndexJson(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, List<IndexEntry>> index = new Gson().fromJson(reader,
+                    new TypeToken<Map<String, List<IndexEntry>>>() {
+                    }.getType());
+            return index != null ? index : new HashMap<>();
+        }
+    }
+
+    /**
+     * 删除来自指定类的索引条目
+     * 所有条目的sourceFile都记录为“所在类名.java”，据此判断条目来自哪个类
+     */
+    private void removeEntriesOfClasses(Map<String, List<IndexEntry>> index, Set<String> classNames) {
+        Iterator<Map.Entry<String, List<IndexEntry>>> iterator = index.entrySet().iterator();
+        while (iterator.hasNext()) {
+            List<IndexEntry> entries = iterator.next().getValue();
+            entries.removeIf(entry -> classNames.contains(getOriginClassName(entry)));
+            if (entries.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 获取索引条目来自的类名
+     */
+    private static String getOriginClassName(IndexEntry entry) {
+        String sourceFile = entry.sourceFile;
+        if (sourceFile != null && sourceFile.endsWith(".java")) {
+            return sourceFile.substring(0, sourceFile.length() - ".java".length());
+        }
+        return sourceFile;
+    }
+
+    /**
+     * 从Soot方法签名（<类名: 返回类型 方法名(参数)>）中获取声明类名
+     */
+    private static String getDeclaringClassName(String methodSignature) {
+        int colon = methodSignature.indexOf(':');
+        if (methodSignature.startsWith("<") && colon > 0) {
+            return methodSignature.substring(1, colon);
+        }
+        return methodSignature;
+    }
+
+    /**
+     * 清空索引和调用图，并恢复为分析所有类
+     */
+    void clearIndex() {
+        methodDefinitions.clear();
+        methodInvocations.clear();
+        fieldDefinitions.clear();
+        fieldReferences.clear();
+        callGraph.clear();
+        classesToAnalyze = null;
+    }
+
+    /**
+     * 保存类内容哈希清单，供下次增量分析使用
+     */
+    private void saveClassHashes() {
+        try {
+            if (currentClassHashes == null) {
+                currentClassHashes = ClassFileHashes.compute(targetPath);
+            }
+            ClassFileHashes.save(currentClassHashes, generateCallGraph, Paths.get(outputPath, "index", CLASS_HASHES_FILE));
+        } catch (IOException e) {
+            logger.error("保存类哈希清单失败：{}", e.getMessage());
+        }
+    }
+
     /**
      * 分析所有应用类
      */
-    private void analyzeClasses() {
+    void analyzeClasses() {
         logger.info("开始分析应用类...");
 
         // 创建应用类的副本以避免并发修改异常
         List<SootClass> applicationClasses = new ArrayList<>(Scene.v().getApplicationClasses());
+        if (classesToAnalyze != null) {
+            applicationClasses.removeIf(sootClass -> !classesToAnalyze.contains(sootClass.getName()));
+            logger.info("增量模式：重新分析 {} 个类", applicationClasses.size());
+        }
+        IndexShard index = new IndexShard(methodDefinitions, methodInvocations, fieldDefinitions, fieldReferences, callGraph);
+
+        if (threads > 1) {
+            analyzeClassesInParallel(applicationClasses, index);
+            return;
+        }
 
         // 遍历所有应用类
         for (SootClass sootClass : applicationClasses) {
-            if (sootClass.isPhantom()) {
-                continue;
+            if (!sootClass.isPhantom()) {
+                analyzeClass(sootClass, prepareClass(sootClass), index);
             }
+        }
+    }
 
-            String className = sootClass.getName();
-            logger.debug("分析类：{}", className);
+    /**
+     * 并行分析应用类
+     * 构建方法体和解析方法、字段引用会修改Scene（允许幽灵引用时会向类中添加幽灵成员），
+     * 因此先在当前线程准备好所有类；工作线程只读取方法体提取索引，结果按类的原始顺序合并
+     */
+    private void analyzeClassesInParallel(List<SootClass> applicationClasses, IndexShard index) {
+        Map<SootClass, List<Body>> bodies = new LinkedHashMap<>();
+        for (SootClass sootClass : applicationClasses) {
+            if (!sootClass.isPhantom()) {
+                bodies.put(sootClass, prepareClass(sootClass));
+            }
+        }
+        logger.info("使用 {} 个线程并行分析 {} 个应用类", threads, bodies.size());
 
-            // 分析字段
-            List<SootField> fields = new ArrayList<>(sootClass.getFields());
-            for (SootField field : fields) {
-                analyzeField(field);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<IndexShard>> futures = new ArrayList<>(bodies.size());
+            for (Map.Entry<SootClass, List<Body>> entry : bodies.entrySet()) {
+                futures.add(executor.submit(() -> {
+                    IndexShard shard = new IndexShard();
+                    analyzeClass(entry.getKey(), entry.getValue(), shard);
+                    return shard;
+                }));
             }
 
-            // 分析方法
-            List<SootMethod> methods = new ArrayList<>(sootClass.getMethods());
-            for (SootMethod method : methods) {
-                if (!method.hasActiveBody()) {
-                    try {
-                        method.retrieveActiveBody();
-                    } catch (Exception e) {
-                        logger.warn("无法获取方法体：{}.{}", className, method.getName());
-                        continue;
+            // 按类的顺序合并分片，保证输出与串行分析完全一致
+            for (Future<IndexShard> future : futures) {
+                future.get().mergeInto(index);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("并行分析被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("并行分析失败：" + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 准备要分析的类：取出方法体，解析其中的方法和字段引用，需要时生成Jimple IR
+     * 这些操作会修改Scene，只能在调用线程中执行
+     *
+     * @return 能取出方法体的方法，按类中方法的顺序
+     */
+    private List<Body> prepareClass(SootClass sootClass) {
+        String className = sootClass.getName();
+        List<Body> bodies = new ArrayList<>();
+        for (SootMethod method : new ArrayList<>(sootClass.getMethods())) {
+            if (!method.hasActiveBody()) {
+                try {
+                    method.retrieveActiveBody();
+                } catch (Exception e) {
+                    logger.warn("无法获取方法体：{}.{}", className, method.getName());
+                    continue;
+                }
+            }
+            Body body = method.getActiveBody();
+
+            // 解析引用；解析结果会缓存在Scene中，之后提取索引时只读取
+            for (Unit unit : body.getUnits()) {
+                for (ValueBox valueBox : unit.getUseAndDefBoxes()) {
+                    Value value = valueBox.getValue();
+                    if (value instanceof InvokeExpr) {
+                        ((InvokeExpr) value).getMethod();
+                    } else if (value instanceof FieldRef) {
+                        ((FieldRef) value).getField();
                     }
                 }
+            }
 
-                analyzeMethod(method);
+            // 如果需要，生成Jimple IR
+            if (generateJimple && !isExcludedClass(className)) {
+                generateJimpleIR(method);
             }
+            bodies.add(body);
+        }
+        return bodies;
+    }
+
+    /**
+     * 分析单个已准备好的应用类，结果写入指定的分片
+     */
+    private void analyzeClass(SootClass sootClass, List<Body> bodies, IndexShard shard) {
+        logger.debug("分析类：{}", sootClass.getName());
+
+        // 分析字段
+        List<SootField> fields = new ArrayList<>(sootClass.getFields());
+        for (SootField field : fields) {
+            analyzeField(field, shard);
+        }
+
+        // 分析方法
+        for (Body body : bodies) {
+            analyzeMethod(body, shard);
         }
     }
 
     /**
      * 分析字段定义
      */
-    private void analyzeField(SootField field) {
+    private void analyzeField(SootField field, IndexShard shard) {
         SootClass declaringClass = field.getDeclaringClass();
         String className = declaringClass.getName();
 
@@ -344,16 +1007,17 @@ public class SootCodeAnalyzer {
         // 添加到字段定义索引
         IndexEntry entry = new IndexEntry(className, fieldName, signature, declaringClass.getName() + ".java", lineNumber);
 
-        if (!fieldDefinitions.containsKey(fieldName)) {
-            fieldDefinitions.put(fieldName, new ArrayList<>());
+        if (!shard.fieldDefinitions.containsKey(fieldName)) {
+            shard.fieldDefinitions.put(fieldName, new ArrayList<>());
         }
-        fieldDefinitions.get(fieldName).add(entry);
+        shard.fieldDefinitions.get(fieldName).add(entry);
     }
 
     /**
      * 分析方法
      */
-    private void analyzeMethod(SootMethod method) {
+    private void analyzeMethod(Body body, IndexShard shard) {
+        SootMethod method = body.getMethod();
         SootClass declaringClass = method.getDeclaringClass();
         String className = declaringClass.getName();
 
@@ -372,32 +1036,26 @@ public class SootCodeAnalyzer {
         // 添加到方法定义索引
         IndexEntry entry = new IndexEntry(className, methodName, signature, declaringClass.getName() + ".java", lineNumber);
 
-        if (!methodDefinitions.containsKey(methodName)) {
-            methodDefinitions.put(methodName, new ArrayList<>());
+        if (!shard.methodDefinitions.containsKey(methodName)) {
+            shard.methodDefinitions.put(methodName, new ArrayList<>());
         }
-        methodDefinitions.get(methodName).add(entry);
+        shard.methodDefinitions.get(methodName).add(entry);
 
         // 分析方法体
-        Body body = method.getActiveBody();
-        analyzeMethodBody(body);
-
-        // 如果需要，生成Jimple IR
-        if (generateJimple) {
-            generateJimpleIR(method);
-        }
+        analyzeMethodBody(body, shard);
     }
 
     /**
      * 分析方法体
      */
-    private void analyzeMethodBody(Body body) {
+    private void analyzeMethodBody(Body body, IndexShard shard) {
         SootMethod method = body.getMethod();
         SootClass declaringClass = method.getDeclaringClass();
         String className = declaringClass.getName();
         String sourceFile = getSourceFile(declaringClass);
 
-        // 创建控制流图
-        DirectedGraph<Unit> graph = new ExceptionalUnitGraph(body);
+        // 调用者的签名只计算一次
+        int caller = shard.callGraph.intern(method.getSignature());
 
         // 创建语句的副本以避免并发修改异常
         List<Unit> units = new ArrayList<>();
@@ -427,16 +1085,8 @@ public class SootCodeAnalyzer {
                     String calledClassName = calledMethod.getDeclaringClass().getName();
                     String calledSignature = calledMethod.getSignature();
 
-                    // 添加到调用图（不过滤系统类，保持调用图的完整性）
-                    String caller = method.getSignature();
-                    String callee = calledSignature;
-
-                    if (!callGraph.containsKey(caller)) {
-                        callGraph.put(caller, new ArrayList<>());
-                    }
-                    if (!callGraph.get(caller).contains(callee)) {
-                        callGraph.get(caller).add(callee);
-                    }
+                    // 添加到调用图（不过滤系统类，保持调用图的完整性），重复的边在哈希集合中常数时间去重
+                    shard.callGraph.addCall(caller, shard.callGraph.intern(calledSignature));
 
                     // 过滤掉系统类方法调用（仅针对方法调用索引）
                     if (isExcludedClass(calledClassName)) {
@@ -446,10 +1096,10 @@ public class SootCodeAnalyzer {
                     // 添加到方法调用索引
                     IndexEntry entry = new IndexEntry(calledClassName, calledMethodName, calledSignature, declaringClass.getName() + ".java", lineNumber);
 
-                    if (!methodInvocations.containsKey(calledMethodName)) {
-                        methodInvocations.put(calledMethodName, new ArrayList<>());
+                    if (!shard.methodInvocations.containsKey(calledMethodName)) {
+                        shard.methodInvocations.put(calledMethodName, new ArrayList<>());
                     }
-                    methodInvocations.get(calledMethodName).add(entry);
+                    shard.methodInvocations.get(calledMethodName).add(entry);
                 }
             }
 
@@ -472,10 +1122,10 @@ public class SootCodeAnalyzer {
                     // 添加到字段引用索引
                     IndexEntry entry = new IndexEntry(fieldClassName, fieldName, fieldSignature, declaringClass.getName() + ".java", lineNumber);
 
-                    if (!fieldReferences.containsKey(fieldName)) {
-                        fieldReferences.put(fieldName, new ArrayList<>());
+                    if (!shard.fieldReferences.containsKey(fieldName)) {
+                        shard.fieldReferences.put(fieldName, new ArrayList<>());
                     }
-                    fieldReferences.get(fieldName).add(entry);
+                    shard.fieldReferences.get(fieldName).add(entry);
                 }
             }
         }
@@ -484,7 +1134,7 @@ public class SootCodeAnalyzer {
     /**
      * 生成Jimple IR
      */
-    private void generateJimpleIR(SootMethod method) {
+    void generateJimpleIR(SootMethod method) {
         String className = method.getDeclaringClass().getName();
         String outputDir = outputPath + "/jimple/" + className.replace(".", "/");
         new File(outputDir).mkdirs();
@@ -505,13 +1155,22 @@ public class SootCodeAnalyzer {
     private void generateCallGraph() {
         logger.info("生成调用图...");
 
-        // 保存调用图到JSON文件
-        try {
-            Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
-            String json = gson.toJson(callGraph);
+        // 指定算法时，把算法解析出的调用目标（如虚调用的实际实现）合并进调用图
+        if (callGraphAlgorithm != null && buildSootCallGraph()) {
+            int before = callGraph.callCount();
+            for (Edge edge : Scene.v().getCallGraph()) {
+                SootMethod src = edge.src();
+                if (src.getDeclaringClass().isApplicationClass() && !isExcludedClass(src.getDeclaringClass().getName())) {
+                    callGraph.addCall(src.getSignature(), edge.tgt().getSignature());
+                }
+            }
+            logger.info("{} 算法新增 {} 条调用边", callGraphAlgorithm, callGraph.callCount() - before);
+        }
 
+        // 保存调用图到JSON文件，逐条流式写出
+        try {
             Path filePath = Paths.get(outputPath, "call_graph.json");
-            Files.write(filePath, json.getBytes());
+            callGraph.writeJson(filePath);
 
             logger.info("调用图已保存到：{}", filePath);
         } catch (IOException e) {
@@ -522,7 +1181,7 @@ public class SootCodeAnalyzer {
     /**
      * 生成指针分析结果
      */
-    private void generatePointsToAnalysis() {
+    void generatePointsToAnalysis() {
         logger.info("生成指针分析结果...");
 
         if (!Options.v().whole_program()) {
@@ -531,20 +1190,8 @@ public class SootCodeAnalyzer {
         }
 
         // 确保Spark已启用并执行指针分析
-        if (!Scene.v().hasCallGraph()) {
-            logger.info("执行Spark指针分析...");
-            // 显式构建调用图
-            Scene.v().setEntryPoints(getEntryPoints());
-            logger.info("设置入口点完成，共 {} 个入口点", Scene.v().getEntryPoints().size());
-
-            // 执行调用图构建
-            PackManager.v().getPack("cg").apply();
-
-            if (!Scene.v().hasCallGraph()) {
-                logger.error("调用图构建失败");
-                return;
-            }
-            logger.info("调用图构建完成");
+        if (!buildSootCallGraph()) {
+            return;
         }
 
         // 获取指针分析器
@@ -553,117 +1200,254 @@ public class SootCodeAnalyzer {
             logger.error("无法获取指针分析器");
             return;
         }
+        if (pta instanceof DumbPointerAnalysis) {
+            logger.warn("SPARK超出预算后已退回CHA，没有指针分析结果，不输出指向关系");
+            return;
+        }
 
         logger.info("使用指针分析器: {}", pta.getClass().getName());
 
-        // 检查是否使用的是Spark分析器，以便获取PAG
-        PAG pag = getPAG();
-        if (pag != null) {
-            logger.info("成功获取PAG，将使用更详细的对象分配信息");
+        // cs-demand 时Scene中为 DemandCSPointsTo，只用于查询的局部变量，其余的提取直接使用其底层的PAG
+        DemandCSPointsTo demandPta = null;
+        if (pta instanceof DemandCSPointsTo) {
+            demandPta = (DemandCSPointsTo) pta;
+            pta = demandPta.getPAG();
         }
 
+        // 每次分析重新建立分配点表
+        allocSites = new AllocSiteTable();
+        pointsToLocals.clear();
+        pointsToInstanceFields.clear();
+        pointsToStaticFields.clear();
+        pointsToArrays.clear();
+        PointsToShard result = new PointsToShard(allocSites, pointsToLocals, pointsToInstanceFields,
+                pointsToStaticFields, pointsToArrays);
+
         // 分析所有变量的指向关系
         logger.info("分析变量的指向关系...");
+        long start = System.currentTimeMillis();
 
         // 创建应用类的副本以避免并发修改异常
         List<SootClass> applicationClasses = new ArrayList<>(Scene.v().getApplicationClasses());
-
-        for (SootClass sootClass : applicationClasses) {
-            if (sootClass.isPhantom() || isExcludedClass(sootClass.getName())) {
-                continue;
+        applicationClasses.removeIf(sootClass -> sootClass.isPhantom() || isExcludedClass(sootClass.getName()));
+
+        // 指定入口点时只分析可达的方法；getReachableMethods()会更新内部状态，在工作线程启动前取出
+        Set<SootMethod> reachableMethods = null;
+        if (!entryPoints.isEmpty()) {
+            reachableMethods = new HashSet<>();
+            for (Iterator<MethodOrMethodContext> it = Scene.v().getReachableMethods().listener(); it.hasNext(); ) {
+                reachableMethods.add(it.next().method());
             }
+        }
 
-            String className = sootClass.getName();
+        if (!pointsToQueries.isEmpty()) {
+            extractPointsToQueries(pta, demandPta, result);
+        } else if (ptaThreads > 1) {
+            extractPointsToInParallel(applicationClasses, pta, reachableMethods, result);
+        } else {
+            for (SootClass sootClass : applicationClasses) {
+                analyzePointsTo(sootClass, collectBodies(sootClass, reachableMethods), pta, result);
+            }
+        }
+        result.compact();
+        logger.info("指向关系提取完成，共 {} 个分配点，耗时 {} ms", allocSites.size(), System.currentTimeMillis() - start);
 
-            // 分析静态字段
-            analyzeStaticFields(sootClass, pta, pag);
+        // 保存指针分析结果
+        savePointsToAnalysisResults();
+    }
 
-            // 遍历所有方法
-            for (SootMethod method : sootClass.getMethods()) {
-                if (!method.hasActiveBody()) {
-                    try {
-                        method.retrieveActiveBody();
-                    } catch (Exception e) {
-                        continue;
-                    }
-                }
+    /**
+     * 只提取查询的方法或变量的指向关系
+     * 查询为方法签名时提取方法中全部局部变量以及访问的字段和数组，为 方法签名:变量名 时只提取该变量。
+     * 启用按需细化时，局部变量的指向集合由 DemandCSPointsTo 在预算内做上下文敏感的细化，超出预算时为SPARK的结果
+     */
+    private void extractPointsToQueries(PointsToAnalysis pta, DemandCSPointsTo demandPta, PointsToShard result) {
+        PointsToAnalysis localPta = pta;
+        if (demandPta != null) {
+            localPta = demandPta;
+            logger.info("使用 DemandCSPointsTo 按需细化查询的变量");
+        } else if (demandPointsTo) {
+            logger.warn("按需细化需要在SPARK求解前启用，使用 {} 的结果", pta.getClass().getSimpleName());
+        }
 
-                Body body = method.getActiveBody();
+        for (String query : pointsToQueries) {
+            String signature = query.trim();
+            String localName = null;
+            int separator = signature.lastIndexOf(">:");
+            if (separator >= 0) {
+                localName = signature.substring(separator + 2).trim();
+                signature = signature.substring(0, separator + 1);
+            }
 
-                // 分析局部变量
-                analyzeLocalVariables(className, method, body, pta, pag);
+            SootMethod method = Scene.v().grabMethod(signature);
+            if (method == null || !method.isConcrete()) {
+                logger.warn("找不到要查询的方法：{}", signature);
+                continue;
+            }
+            Body body;
+            try {
+                body = method.retrieveActiveBody();
+            } catch (Exception e) {
+                logger.warn("无法获取方法体：{}", signature);
+                continue;
+            }
 
-                // 分析字段和数组
-                analyzeFieldsAndArrays(className, method, body, pta, pag);
+            String className = method.getDeclaringClass().getName();
+            analyzeLocalVariables(className, method, body, localPta, localName, result);
+            if (localName == null) {
+                analyzeFieldsAndArrays(className, method, body, pta, result);
             }
         }
-
-        // 保存指针分析结果
-        savePointsToAnalysisResults();
     }
 
     /**
-     * 获取PAG分析器实例
+     * 并行提取指针分析结果
+     * 构建方法体会修改Scene，因此先在当前线程取出所有方法体；工作线程只读取方法体和查询PAG，
+     * 每个类写入独立的分片，再按类的原始顺序合并
      */
-    private PAG getPAG() {
+    private void extractPointsToInParallel(List<SootClass> applicationClasses, PointsToAnalysis pta,
+                                           Set<SootMethod> reachableMethods, PointsToShard result) {
+        Map<SootClass, List<Body>> bodies = new LinkedHashMap<>();
+        for (SootClass sootClass : applicationClasses) {
+            bodies.put(sootClass, collectBodies(sootClass, reachableMethods));
+        }
+        logger.info("使用 {} 个线程并行提取 {} 个应用类的指向关系", ptaThreads, applicationClasses.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(ptaThreads);
         try {
-            PointsToAnalysis pta = Scene.v().getPointsToAnalysis();
-            if (pta != null && pta.getClass().getName().contains("Spark")) {
-                // 尝试使用反射获取PAG实例
-                java.lang.reflect.Method method = pta.getClass().getMethod("getPag");
-                if (method != null) {
-                    Object pag = method.invoke(pta);
-                    if (pag instanceof PAG) {
-                        return (PAG) pag;
-                    }
+            List<Future<PointsToShard>> futures = new ArrayList<>(applicationClasses.size());
+            for (Map.Entry<SootClass, List<Body>> entry : bodies.entrySet()) {
+                futures.add(executor.submit(() -> {
+                    PointsToShard shard = new PointsToShard();
+                    analyzePointsTo(entry.getKey(), entry.getValue(), pta, shard);
+                    return shard;
+                }));
+            }
+
+            for (Future<PointsToShard> future : futures) {
+                future.get().mergeInto(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("并行提取指向关系被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("并行提取指向关系失败：" + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 取出类中要分析的方法体，没有方法体的按需构建；指定了可达方法时只取可达的方法
+     */
+    private static List<Body> collectBodies(SootClass sootClass, Set<SootMethod> reachableMethods) {
+        List<Body> bodies = new ArrayList<>();
+        for (SootMethod method : new ArrayList<>(sootClass.getMethods())) {
+            if (reachableMethods != null && !reachableMethods.contains(method)) {
+                continue;
+            }
+            if (!method.hasActiveBody()) {
+                try {
+                    method.retrieveActiveBody();
+                } catch (Exception e) {
+                    continue;
                 }
             }
-        } catch (Exception e) {
-            logger.debug("获取PAG实例失败: {}", e.getMessage());
+            bodies.add(method.getActiveBody());
+        }
+        return bodies;
+    }
+
+    /**
+     * 提取单个类的静态字段，以及已取出的方法体中局部变量、字段和数组的指向关系，结果写入指定的分片
+     */
+    private void analyzePointsTo(SootClass sootClass, List<Body> bodies, PointsToAnalysis pta, PointsToShard shard) {
+        String className = sootClass.getName();
+
+        // 分析静态字段
+        analyzeStaticFields(sootClass, pta, shard);
+
+        for (Body body : bodies) {
+            // 分析局部变量
+            analyzeLocalVariables(className, body.getMethod(), body, pta, null, shard);
+
+            // 分析字段和数组
+            analyzeFieldsAndArrays(className, body.getMethod(), body, pta, shard);
         }
-        return null;
+    }
+
+    /**
+     * 从入口点出发执行cg阶段，构建Soot的调用图（默认使用Spark），已构建过时直接返回
+     *
+     * @return 是否构建成功
+     */
+    private boolean buildSootCallGraph() {
+        if (Scene.v().hasCallGraph()) {
+            return true;
+        }
+
+        logger.info("执行 {} 调用图构建...", callGraphAlgorithm != null ? callGraphAlgorithm : "SPARK");
+        // 显式构建调用图
+        if (!entryPoints.isEmpty()) {
+            // 只从指定入口点出发，SPARK只分析可达的方法
+            List<SootMethod> entryPointList = CallGraphGenerator.resolveEntryPoints(entryPoints);
+            Scene.v().setEntryPoints(entryPointList.isEmpty() ? getEntryPoints() : entryPointList);
+        } else {
+            Scene.v().setEntryPoints(getEntryPoints());
+        }
+        logger.info("设置入口点完成，共 {} 个入口点", Scene.v().getEntryPoints().size());
+
+        // 执行调用图构建，SPARK超出预算时退回CHA
+        try {
+            PackManager.v().getPack("cg").apply();
+        } catch (BudgetedSparkTransformer.BudgetExceededException e) {
+            logger.warn("{}，退回CHA构建调用图", e.getMessage());
+            CallGraphGenerator.fallBackToCha();
+        }
+
+        if (!Scene.v().hasCallGraph()) {
+            logger.error("调用图构建失败");
+            return false;
+        }
+        logger.info("调用图构建完成");
+        return true;
     }
 
     /**
      * 分析静态字段
      */
-    private void analyzeStaticFields(SootClass sootClass, PointsToAnalysis pta, PAG pag) {
+    private void analyzeStaticFields(SootClass sootClass, PointsToAnalysis pta, PointsToShard shard) {
         for (SootField field : sootClass.getFields()) {
             if (!field.isStatic() || !(field.getType() instanceof RefLikeType)) {
                 continue;
             }
 
             String fieldKey = sootClass.getName() + "." + field.getName() + " (" + field.getType() + ")";
-            Set<String> pointsToSet = new HashSet<>();
-            pointsToStaticFields.put(fieldKey, pointsToSet);
 
             // 获取静态字段指向的对象
             PointsToSet pts = pta.reachingObjects(field);
             if (pts == null) {
                 logger.debug("静态字段的指向集合为null: {}", fieldKey);
-                continue;
-            }
-
-            // 使用详细的分析方法
-            if (pag != null) {
-                // 使用PAG获取更详细的对象信息
-                addPointsToFromPAG(pts, pointsToSet, pag);
-            } else {
-                // 使用基本方法
-                addPointsToTypes(pts, pointsToSet);
             }
+            int[] pointsTo = shard.allocSites.pointsTo(pts);
+            shard.staticFields.put(fieldKey, pointsTo);
 
-            logger.debug("静态字段 {} 指向 {} 个对象", fieldKey, pointsToSet.size());
+            logger.debug("静态字段 {} 指向 {} 个对象", fieldKey, pointsTo.length);
         }
     }
 
     /**
-     * 分析局部变量
+     * 分析局部变量，localName 不为null时只分析该变量
+     * 同名的重载方法共用一个条目
      */
-    private void analyzeLocalVariables(String className, SootMethod method, Body body, PointsToAnalysis pta, PAG pag) {
+    private void analyzeLocalVariables(String className, SootMethod method, Body body, PointsToAnalysis pta,
+                                       String localName, PointsToShard shard) {
         String methodKey = className + "." + method.getName();
-        Map<String, Set<String>> localsMap = new HashMap<>();
-        pointsToLocals.put(methodKey, localsMap);
+        Map<String, int[]> localsMap = shard.locals.get(methodKey);
+        if (localsMap == null) {
+            localsMap = new HashMap<>();
+            shard.locals.put(methodKey, localsMap);
+        }
 
         // 创建一个本地变量名称映射，用于保存原始变量名
         Map<Local, String> localNameMap = extractOriginalVariableNames(body);
@@ -672,53 +1456,32 @@ public class SootCodeAnalyzer {
             if (!(local.getType() instanceof RefLikeType)) {
                 continue; // 只分析引用类型和数组类型
             }
-            if (local.isStackLocal()) {
-                continue;
-            }
             // 尝试使用原始变量名，如果没有则使用Jimple变量名
             String varName = localNameMap.getOrDefault(local, local.getName());
+            if (localName != null ? !varName.equals(localName) : local.isStackLocal()) {
+                continue; // 查询的变量可以是栈变量
+            }
 
             // 尝试记录变量类型以帮助识别
             String varNameWithType = varName + " (" + local.getType().toString() + ")";
 
-            Set<String> pointsToSet = new HashSet<>();
-            localsMap.put(varNameWithType, pointsToSet);
-
             // 获取变量指向的对象
             PointsToSet pts = pta.reachingObjects(local);
             if (pts == null) {
                 logger.debug("变量的指向集合为null: {}.{}.{}", className, method.getName(), varName);
+                localsMap.put(varNameWithType, AllocSiteTable.EMPTY);
                 continue;
             }
+            int[] pointsTo = shard.allocSites.pointsTo(pts);
+            localsMap.put(varNameWithType, pointsTo);
 
-            // 使用详细的分析方法
-            if (pag != null) {
-                // 使用PAG获取更详细的对象信息
-                addPointsToFromPAG(pts, pointsToSet, pag);
-            } else {
-                // 使用基本方法
-                addPointsToTypes(pts, pointsToSet);
-            }
+            logger.debug("变量 {}.{}.{} 指向 {} 个对象", className, method.getName(), varName, pointsTo.length);
 
-            logger.debug("变量 {}.{}.{} 指向 {} 个对象", className, method.getName(), varName, pointsToSet.size());
-
-            // 处理数组类型
+            // 处理数组类型，数组与变量共用同一个指向集合
             if (local.getType() instanceof ArrayType) {
-                Map<String, Object> arrayInfo = new HashMap<>();
-                arrayInfo.put("elementType", ((ArrayType) local.getType()).getElementType().toString());
-
-                Set<String> arrayPointsTo = new HashSet<>();
-                if (pag != null) {
-                    addPointsToFromPAG(pts, arrayPointsTo, pag);
-                } else {
-                    addPointsToTypes(pts, arrayPointsTo);
-                }
-
-                arrayInfo.put("pointsTo", arrayPointsTo);
-                arrayInfo.put("pointsToCount", arrayPointsTo.size()); // 添加统计信息
-
                 String arrayKey = methodKey + "." + varName;
-                pointsToArrays.put(arrayKey, arrayInfo);
+                shard.arrays.put(arrayKey,
+                        new ArrayPointsTo(((ArrayType) local.getType()).getElementType().toString(), pointsTo));
             }
         }
     }
@@ -726,7 +1489,8 @@ public class SootCodeAnalyzer {
     /**
      * 分析字段和数组访问
      */
-    private void analyzeFieldsAndArrays(String className, SootMethod method, Body body, PointsToAnalysis pta, PAG pag) {
+    private void analyzeFieldsAndArrays(String className, SootMethod method, Body body, PointsToAnalysis pta,
+                                        PointsToShard shard) {
         for (Unit unit : body.getUnits()) {
             for (ValueBox valueBox : unit.getUseAndDefBoxes()) {
                 Value value = valueBox.getValue();
@@ -742,470 +1506,64 @@ public class SootCodeAnalyzer {
 
                     String fieldKey = field.getDeclaringClass().getName() + "." + field.getName() + " (" + field.getType() + ")";
 
-                    // 已经分析过的字段跳过
-                    if (pointsToInstanceFields.containsKey(fieldKey)) {
-                        continue;
-                    }
-
-                    Set<String> fieldPointsTo = new HashSet<>();
-                    pointsToInstanceFields.put(fieldKey, fieldPointsTo);
-
-                    // 获取字段的基对象
-                    Local base = (Local) fieldRef.getBase();
-                    PointsToSet basePoints = pta.reachingObjects(base);
-                    if (basePoints == null || basePoints.isEmpty()) {
-                        logger.debug("基对象的指向集合为空: {}.{}", base.getName(), field.getName());
-                        continue;
-                    }
-
-                    // 获取字段指向的对象
-                    PointsToSet fieldPoints = pta.reachingObjects(basePoints, field);
-                    if (fieldPoints == null) {
-                        logger.debug("字段的指向集合为null: {}", fieldKey);
-                        continue;
-                    }
-
-                    // 使用详细的分析方法
-                    if (pag != null) {
-                        addPointsToFromPAG(fieldPoints, fieldPointsTo, pag);
-                    } else {
-                        addPointsToTypes(fieldPoints, fieldPointsTo);
-                    }
-
-                    logger.debug("实例字段 {} 指向 {} 个对象", fieldKey, fieldPointsTo.size());
-                }
-                // 分析数组元素访问
-                else if (value instanceof ArrayRef) {
-                    ArrayRef arrayRef = (ArrayRef) value;
-                    Local baseArray = (Local) arrayRef.getBase();
-
-                    if (!(baseArray.getType() instanceof ArrayType)) {
-                        continue;
-                    }
-
-                    String varName = baseArray.getName();
-                    String arrayKey = className + "." + method.getName() + "." + varName + " (" + baseArray.getType() + ")";
-
-                    // 已经分析过的数组跳过
-                    if (pointsToArrays.containsKey(arrayKey)) {
-                        continue;
-                    }
-
-                    Map<String, Object> arrayInfo = new HashMap<>();
-                    arrayInfo.put("elementType", ((ArrayType) baseArray.getType()).getElementType().toString());
-
-                    Set<String> arrayPointsTo = new HashSet<>();
-                    PointsToSet pts = pta.reachingObjects(baseArray);
-                    if (pts == null) {
-                        logger.debug("数组的指向集合为null: {}", arrayKey);
-                    } else {
-                        if (pag != null) {
-                            addPointsToFromPAG(pts, arrayPointsTo, pag);
-                        } else {
-                            addPointsToTypes(pts, arrayPointsTo);
-                        }
-                        logger.debug("数组 {} 指向 {} 个对象", arrayKey, arrayPointsTo.size());
-                    }
-
-                    arrayInfo.put("pointsTo", arrayPointsTo);
-                    arrayInfo.put("pointsToCount", arrayPointsTo.size());
-
-                    pointsToArrays.put(arrayKey, arrayInfo);
-                }
-            }
-        }
-    }
-
-    /**
-     * 使用PAG分析器获取详细的对象分配点信息
-     */
-    private void addPointsToFromPAG(final PointsToSet pts, final Set<String> targetSet, final PAG pag) {
-        if (pts == null) {
-            return;
-        }
-
-        try {
-            // 由于PointsToSetVisitorFactory可能不可用，我们需要尝试其他方式获取分配点
-            // 1. 尝试使用反射获取pts内部的数据结构
-            boolean added = tryGetAllocationNodesViaReflection(pts, targetSet);
-
-            // 2. 如果不成功，尝试使用Spark直接查询某些关键类型的分配节点
-            if (!added && pag != null) {
-                // 遍历pts的possibleTypes
-                for (Type type : pts.possibleTypes()) {
-                    if (type instanceof RefType) {
-                        RefType refType = (RefType) type;
-                        String className = refType.getClassName();
-
-                        // 过滤掉异常和堆栈相关的类型
-                        if (!className.contains("Exception") &&
-                                !className.contains("Error") &&
-                                !className.contains("Throwable") &&
-                                !className.contains("Stack")) {
-
-                            // 尝试找到所有这个类型的分配点 (不一定精确，但可能有用)
-                            String objectInfo = "Object: " + className + " (from analysis)";
-                            targetSet.add(objectInfo);
-                            added = true;
-                        }
-                    } else if (type instanceof ArrayType) {
-                        String typeName = type.toString();
-
-                        // 过滤掉异常和堆栈相关的类型
-                        if (!typeName.contains("Exception") &&
-                                !typeName.contains("Error") &&
-                                !typeName.contains("Throwable") &&
-                                !typeName.contains("Stack")) {
-
-                            String objectInfo = "Array: " + typeName + " (from analysis)";
-                            targetSet.add(objectInfo);
-                            added = true;
-                        }
-                    }
-                }
-            }
-
-            // 3. 如果上述方法都失败，回退到基本的toString分析
-            if (!added) {
-                addPointsToTypes(pts, targetSet);
-            }
-        } catch (Exception e) {
-            logger.debug("使用PAG分析时出错: {}", e.getMessage());
-            // 如果PAG分析失败，回退到基本分析
-            addPointsToTypes(pts, targetSet);
-        }
-    }
-
-    /**
-     * 通过反射获取PointsToSet内部的分配节点
-     */
-    private boolean tryGetAllocationNodesViaReflection(PointsToSet pts, Set<String> targetSet) {
-        try {
-            // 尝试反射获取pts的内部结构
-            // 注意: 这依赖于Soot的内部实现，可能会随版本变化而不可用
-            String ptsClassName = pts.getClass().getName();
-
-            // 尝试获取内部节点集合
-            java.lang.reflect.Method method = null;
-            Object nodeCollection = null;
-
-            // 针对不同的PointsToSet实现，尝试不同的方法
-            if (ptsClassName.contains("HybridPointsToSet") ||
-                    ptsClassName.contains("DoublePointsToSet")) {
-                // 尝试获取内部的nodeSet
-                try {
-                    method = pts.getClass().getMethod("getOldSet");
-                    if (method != null) {
-                        nodeCollection = method.invoke(pts);
-                    }
-                } catch (Exception e) {
-                    // 如果getOldSet失败，尝试其他方法
-                    try {
-                        method = pts.getClass().getMethod("getNodes");
-                        if (method != null) {
-                            nodeCollection = method.invoke(pts);
-                        }
-                    } catch (Exception e2) {
-                        // 忽略
-                    }
-                }
-            } else if (ptsClassName.contains("PointsToSetInternal")) {
-                // 尝试直接转换为Collection
-                try {
-                    if (pts instanceof Collection) {
-                        nodeCollection = pts;
-                    }
-                } catch (Exception e) {
-                    // 忽略
-                }
-            }
-
-            // 如果找到了节点集合，遍历并提取信息
-            if (nodeCollection != null) {
-                if (nodeCollection instanceof Collection) {
-                    Collection<?> nodes = (Collection<?>) nodeCollection;
-                    for (Object node : nodes) {
-                        if (node != null) {
-                            // 处理AllocNode
-                            if (node instanceof AllocNode) {
-                                addAllocationNodeInfo((AllocNode) node, targetSet);
-                            } else {
-                                // 其他类型的节点
-                                String nodeInfo = node.toString();
-                                if (nodeInfo != null &&
-                                        !nodeInfo.contains("Exception") &&
-                                        !nodeInfo.contains("Error") &&
-                                        !nodeInfo.contains("Throwable") &&
-                                        !nodeInfo.contains("Stack")) {
-
-                                    targetSet.add("Node: " + formatNodeInfo(nodeInfo));
-                                }
-                            }
-                        }
-                    }
-                    return !nodes.isEmpty();
-                }
-            }
-        } catch (Exception e) {
-            logger.debug("通过反射获取分配节点失败: {}", e.getMessage());
-        }
-        return false;
-    }
-
-    /**
-     * 格式化节点信息
-     */
-    private String formatNodeInfo(String nodeInfo) {
-        if (nodeInfo == null) {
-            return "null";
-        }
-
-        // 裁剪过长的信息
-        if (nodeInfo.length() > 100) {
-            return nodeInfo.substring(0, 97) + "...";
-        }
-        return nodeInfo;
-    }
-
-    /**
-     * 添加分配节点的详细信息
-     */
-    private void addAllocationNodeInfo(AllocNode allocNode, Set<String> targetSet) {
-        if (allocNode == null) {
-            return;
-        }
-
-        try {
-            // 获取分配点的新表达式
-            Object newExpr = allocNode.getNewExpr();
-            String allocInfo = null;
-
-            if (newExpr instanceof NewExpr) {
-                // 普通对象创建
-                NewExpr ne = (NewExpr) newExpr;
-                SootClass allocClass = ((RefType) ne.getType()).getSootClass();
-                SootMethod method = allocNode.getMethod();
-
-                // 过滤掉异常和堆栈相关的对象
-                String className = allocClass.getName();
-                if (className.contains("Exception") ||
-                        className.contains("Error") ||
-                        className.contains("Throwable") ||
-                        className.contains("Stack")) {
-                    return;
-                }
-
-                allocInfo = "Object: " + className;
-                if (method != null) {
-                    allocInfo += " created in " + method.getDeclaringClass().getShortName() + "." + method.getName();
-                }
-            } else if (newExpr instanceof NewArrayExpr) {
-                // 数组创建
-                NewArrayExpr nae = (NewArrayExpr) newExpr;
-                SootMethod method = allocNode.getMethod();
-                String typeName = nae.getBaseType().toString();
-
-                // 过滤掉异常和堆栈相关的数组
-                if (typeName.contains("Exception") ||
-                        typeName.contains("Error") ||
-                        typeName.contains("Throwable") ||
-                        typeName.contains("Stack")) {
-                    return;
-                }
-
-                allocInfo = "Array: " + typeName + "[]";
-                if (method != null) {
-                    allocInfo += " created in " + method.getDeclaringClass().getShortName() + "." + method.getName();
-                }
-            } else if (newExpr instanceof StringConstant) {
-                // 字符串常量
-                StringConstant sc = (StringConstant) newExpr;
-                String value = sc.value;
-                if (value.length() > 30) {
-                    value = value.substring(0, 27) + "...";
-                }
-                allocInfo = "String: \"" + value + "\"";
-            } else if (newExpr instanceof ClassConstant) {
-                // 类常量
-                ClassConstant cc = (ClassConstant) newExpr;
-                allocInfo = "Class: " + cc.getValue();
-            } else if (newExpr != null) {
-                // 其他类型的分配点
-                allocInfo = "Allocation: " + newExpr.toString();
-                if (allocInfo.length() > 100) {
-                    allocInfo = allocInfo.substring(0, 97) + "...";
-                }
-            }
-
-            if (allocInfo != null) {
-                targetSet.add(allocInfo);
-            }
-        } catch (Exception e) {
-            logger.debug("处理分配节点时出错: {}", e.getMessage());
-        }
-    }
+                    // 已经分析过的字段跳过
+                    if (shard.instanceFields.containsKey(fieldKey)) {
+                        continue;
+                    }
 
-    /**
-     * 基本方法：添加指向类型到集合
-     * 改进为收集具体对象信息而不仅仅是类型
-     */
-    private int addPointsToTypes(PointsToSet pts, Set<String> targetSet) {
-        int count = 0;
-        if (pts == null) {
-            return count;
-        }
+                    shard.instanceFields.put(fieldKey, AllocSiteTable.EMPTY);
 
-        try {
-            // 获取分配对象的信息
-            // 首先尝试直接使用toString()获取原始信息，处理为更友好的格式
-            String ptsStr = pts.toString();
-            if (ptsStr != null && !ptsStr.isEmpty() && !ptsStr.equals("{}")) {
-                // 移除花括号，分离各个对象
-                ptsStr = ptsStr.replaceAll("[{}]", "");
-                String[] objects = ptsStr.split(",");
-
-                for (String objStr : objects) {
-                    objStr = objStr.trim();
-                    if (!objStr.isEmpty()) {
-                        // 过滤掉异常和堆栈相关的对象
-                        if (!objStr.contains("Exception") &&
-                                !objStr.contains("Error") &&
-                                !objStr.contains("Throwable") &&
-                                !objStr.contains("Stack")) {
-
-                            // 格式化对象信息
-                            String formattedInfo = formatObjectInfo(objStr);
-                            targetSet.add(formattedInfo);
-                            count++;
-                        }
+                    // 获取字段的基对象
+                    Local base = (Local) fieldRef.getBase();
+                    PointsToSet basePoints = pta.reachingObjects(base);
+                    if (basePoints == null || basePoints.isEmpty()) {
+                        logger.debug("基对象的指向集合为空: {}.{}", base.getName(), field.getName());
+                        continue;
                     }
-                }
-            }
 
-            // 如果无法从toString获取信息，则使用类型信息作为备份
-            if (count == 0) {
-                for (Type type : pts.possibleTypes()) {
-                    if (type instanceof RefType) {
-                        String typeName = ((RefType) type).getClassName();
-
-                        // 过滤掉异常和堆栈相关的类型
-                        if (!typeName.contains("Exception") &&
-                                !typeName.contains("Error") &&
-                                !typeName.contains("Throwable") &&
-                                !typeName.contains("Stack")) {
-
-                            targetSet.add("Type: " + typeName);
-                            count++;
-                        }
-                    } else if (type instanceof ArrayType) {
-                        String typeName = type.toString();
-
-                        // 过滤掉异常和堆栈相关的数组类型
-                        if (!typeName.contains("Exception") &&
-                                !typeName.contains("Error") &&
-                                !typeName.contains("Throwable") &&
-                                !typeName.contains("Stack")) {
-
-                            targetSet.add("ArrayType: " + typeName);
-                            count++;
-                        }
+                    // 获取字段指向的对象；按字段类型过滤时会更新PAG的TypeManager，并行提取时需要串行执行
+                    PointsToSet fieldPoints;
+                    synchronized (pta) {
+                        fieldPoints = pta.reachingObjects(basePoints, field);
+                    }
+                    if (fieldPoints == null) {
+                        logger.debug("字段的指向集合为null: {}", fieldKey);
+                        continue;
                     }
-                }
-            }
-        } catch (Exception e) {
-            logger.debug("处理指向集合时出错: {}", e.getMessage());
-        }
 
-        return count;
-    }
+                    int[] pointsTo = shard.allocSites.pointsTo(fieldPoints);
+                    shard.instanceFields.put(fieldKey, pointsTo);
 
-    /**
-     * 格式化对象信息为更易读的形式
-     */
-    private String formatObjectInfo(String objStr) {
-        if (objStr == null) {
-            return "null";
-        }
+                    logger.debug("实例字段 {} 指向 {} 个对象", fieldKey, pointsTo.length);
+                }
+                // 分析数组元素访问
+                else if (value instanceof ArrayRef) {
+                    ArrayRef arrayRef = (ArrayRef) value;
+                    Local baseArray = (Local) arrayRef.getBase();
 
-        try {
-            // 尝试提取更有用的信息
-            if (objStr.contains("NewExpr")) {
-                // 对于新创建的对象，提取对象类型和创建位置
-                int typeStart = objStr.indexOf("(");
-                int typeEnd = objStr.indexOf(")");
-                if (typeStart >= 0 && typeEnd > typeStart) {
-                    String type = objStr.substring(typeStart + 1, typeEnd);
-
-                    // 查找创建位置
-                    int locStart = objStr.indexOf("in ");
-                    String location = "";
-                    if (locStart >= 0) {
-                        location = " at " + objStr.substring(locStart);
+                    if (!(baseArray.getType() instanceof ArrayType)) {
+                        continue;
                     }
 
-                    return "Object: " + type + location;
-                }
-            } else if (objStr.contains("StringConstant")) {
-                // 对于字符串常量，提取字符串值
-                int valueStart = objStr.indexOf("value:");
-                if (valueStart >= 0) {
-                    String value = objStr.substring(valueStart + 6).trim();
-                    // 截断过长的字符串
-                    if (value.length() > 30) {
-                        value = value.substring(0, 27) + "...";
+                    String varName = baseArray.getName();
+                    String arrayKey = className + "." + method.getName() + "." + varName + " (" + baseArray.getType() + ")";
+
+                    // 已经分析过的数组跳过
+                    if (shard.arrays.containsKey(arrayKey)) {
+                        continue;
                     }
-                    return "String: \"" + value + "\"";
-                }
-            } else if (objStr.contains("ClassConstant")) {
-                // 对于类常量，提取类名
-                int valueStart = objStr.indexOf("value:");
-                if (valueStart >= 0) {
-                    String value = objStr.substring(valueStart + 6).trim();
-                    return "Class: " + value;
-                }
-            } else if (objStr.contains("Alloc")) {
-                // 对于一般的分配点
-                if (objStr.contains("type:")) {
-                    int typeStart = objStr.indexOf("type:");
-                    int typeEnd = objStr.indexOf(",", typeStart);
-                    if (typeStart >= 0 && (typeEnd > typeStart || typeEnd == -1)) {
-                        String type = typeEnd > typeStart
-                                ? objStr.substring(typeStart + 5, typeEnd).trim()
-                                : objStr.substring(typeStart + 5).trim();
-
-                        // 查找创建位置
-                        String location = "";
-                        int methodStart = objStr.indexOf("method:");
-                        if (methodStart >= 0) {
-                            int methodEnd = objStr.indexOf(")", methodStart);
-                            if (methodEnd > methodStart) {
-                                location = " in " + objStr.substring(methodStart + 7, methodEnd + 1);
-                            }
-                        }
-
-                        return "Allocated: " + type + location;
+
+                    PointsToSet pts = pta.reachingObjects(baseArray);
+                    if (pts == null) {
+                        logger.debug("数组的指向集合为null: {}", arrayKey);
                     }
-                }
-            }
+                    int[] pointsTo = shard.allocSites.pointsTo(pts);
+                    logger.debug("数组 {} 指向 {} 个对象", arrayKey, pointsTo.length);
 
-            // 尝试从字符串中提取有用的信息
-            if (objStr.contains("@")) {
-                // 可能是对象的哈希码引用
-                int atIndex = objStr.indexOf("@");
-                if (atIndex > 0) {
-                    String type = objStr.substring(0, atIndex).trim();
-                    return "Instance: " + type;
+                    shard.arrays.put(arrayKey,
+                            new ArrayPointsTo(((ArrayType) baseArray.getType()).getElementType().toString(), pointsTo));
                 }
             }
-
-            // 如果无法提取特定信息，返回裁剪过的原始字符串
-            if (objStr.length() > 100) {
-                return objStr.substring(0, 97) + "...";
-            }
-            return objStr;
-        } catch (Exception e) {
-            logger.debug("获取对象信息时出错: {}", e.getMessage());
-            return objStr;
         }
     }
 
@@ -1340,34 +1698,39 @@ public class SootCodeAnalyzer {
 
     /**
      * 保存索引结果
+     * 使用流式写出，逐条输出索引条目，避免整个索引在内存中再生成一份JSON字符串
      */
-    private void saveIndexResults() {
+    void saveIndexResults() {
         logger.info("保存索引结果...");
 
         try {
-            Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
-
             // 创建结果目录
             Path indexDir = Paths.get(outputPath, "index");
             if (!Files.exists(indexDir)) {
                 Files.createDirectories(indexDir);
             }
 
-            // 保存方法定义索引
-            String methodDefsJson = gson.toJson(methodDefinitions);
-            Files.write(Paths.get(indexDir.toString(), "method_definitions.json"), methodDefsJson.getBytes());
+            if (indexFormat != IndexFormat.BINARY) {
+                IndexJsonWriter writer = new IndexJsonWriter(prettyPrintJson);
+
+                // 保存方法定义索引
+                writer.write(methodDefinitions, indexDir.resolve("method_definitions.json"));
 
-            // 保存方法调用索引
-            String methodInvocsJson = gson.toJson(methodInvocations);
-            Files.write(Paths.get(indexDir.toString(), "method_invocations.json"), methodInvocsJson.getBytes());
+                // 保存方法调用索引
+                writer.write(methodInvocations, indexDir.resolve("method_invocations.json"));
 
-            // 保存字段定义索引
-            String fieldDefsJson = gson.toJson(fieldDefinitions);
-            Files.write(Paths.get(indexDir.toString(), "field_definitions.json"), fieldDefsJson.getBytes());
+                // 保存字段定义索引
+                writer.write(fieldDefinitions, indexDir.resolve("field_definitions.json"));
+
+                // 保存字段引用索引
+                writer.write(fieldReferences, indexDir.resolve("field_references.json"));
+            }
 
-            // 保存字段引用索引
-            String fieldRefsJson = gson.toJson(fieldReferences);
-            Files.write(Paths.get(indexDir.toString(), "field_references.json"), fieldRefsJson.getBytes());
+            // 保存二进制索引
+            if (indexFormat != IndexFormat.JSON) {
+                new BinaryIndexWriter().write(indexDir.resolve("code_index.bin"),
+                        methodDefinitions, methodInvocations, fieldDefinitions, fieldReferences);
+            }
 
             logger.info("索引结果已保存到：{}", indexDir);
         } catch (IOException e) {
@@ -1381,39 +1744,58 @@ public class SootCodeAnalyzer {
     private void savePointsToAnalysisResults() {
         logger.info("保存指针分析结果...");
 
-        try {
-            Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
-
-            // 创建结果对象
-            JsonObject resultsObject = new JsonObject();
-
-            // 添加局部变量指向分析结果
-            JsonObject localsObject = gson.toJsonTree(pointsToLocals).getAsJsonObject();
-            resultsObject.add("locals", localsObject);
+        Path filePath = Paths.get(outputPath, "points_to_analysis.json");
+        try (JsonWriter writer = IndexJsonWriter.open(filePath, prettyPrintJson)) {
+            writer.beginObject();
 
-            // 添加实例字段指向分析结果
-            JsonObject instanceFieldsObject = gson.toJsonTree(pointsToInstanceFields).getAsJsonObject();
-            resultsObject.add("instanceFields", instanceFieldsObject);
+            // 分配点表，其余部分的指向集合都是其中的编号
+            writer.name("allocSites");
+            allocSites.writeJson(writer);
 
-            // 添加静态字段指向分析结果
-            JsonObject staticFieldsObject = gson.toJsonTree(pointsToStaticFields).getAsJsonObject();
-            resultsObject.add("staticFields", staticFieldsObject);
-
-            // 添加数组指向分析结果
-            JsonObject arraysObject = gson.toJsonTree(pointsToArrays).getAsJsonObject();
-            resultsObject.add("arrays", arraysObject);
-
-            // 写入文件
-            String json = gson.toJson(resultsObject);
-            Path filePath = Paths.get(outputPath, "points_to_analysis.json");
-            Files.write(filePath, json.getBytes());
+            // 局部变量指向分析结果
+            writer.name("locals");
+            writer.beginObject();
+            for (Map.Entry<String, Map<String, int[]>> method : pointsToLocals.entrySet()) {
+                writer.name(method.getKey());
+                writePointsTo(writer, method.getValue());
+            }
+            writer.endObject();
+
+            // 实例字段和静态字段指向分析结果
+            writer.name("instanceFields");
+            writePointsTo(writer, pointsToInstanceFields);
+            writer.name("staticFields");
+            writePointsTo(writer, pointsToStaticFields);
+
+            // 数组指向分析结果
+            writer.name("arrays");
+            writer.beginObject();
+            for (Map.Entry<String, ArrayPointsTo> array : pointsToArrays.entrySet()) {
+                writer.name(array.getKey());
+                writer.beginObject();
+                writer.name("elementType").value(array.getValue().elementType);
+                writer.name("pointsTo");
+                AllocSiteTable.writeIds(writer, array.getValue().pointsTo);
+                writer.endObject();
+            }
+            writer.endObject();
 
-            logger.info("指针分析结果已保存到：{}", filePath);
+            writer.endObject();
+            logger.info("指针分析结果已保存到：{}（{} 个分配点）", filePath, allocSites.size());
         } catch (IOException e) {
             logger.error("保存指针分析结果失败：{}", e.getMessage());
         }
     }
 
+    private static void writePointsTo(JsonWriter writer, Map<String, int[]> pointsTo) throws IOException {
+        writer.beginObject();
+        for (Map.Entry<String, int[]> entry : pointsTo.entrySet()) {
+            writer.name(entry.getKey());
+            AllocSiteTable.writeIds(writer, entry.getValue());
+        }
+        writer.endObject();
+    }
+
     /**
      * 从方法体中提取原始变量名
      */
@@ -1441,20 +1823,12 @@ public class SootCodeAnalyzer {
         }
 
         try {
-            // 加载目标类
-            SootClass targetClass = Scene.v().loadClassAndSupport(targetClassName);
-            targetClass.setApplicationClass();
-
-            // 获取目标方法
-            SootMethod targetMethod = targetClass.getMethodByName(targetMethodName);
-            if (targetMethod == null) {
+            UnitGraph cfg = buildCFG(targetClassName, targetMethodName);
+            if (cfg == null) {
                 logger.error("未找到方法: {}.{}", targetClassName, targetMethodName);
                 return;
             }
-
-            // 获取方法体
-            Body body = targetMethod.retrieveActiveBody();
-            UnitGraph cfg = new BriefUnitGraph(body);
+            SootMethod targetMethod = cfg.getBody().getMethod();
 
             // 创建DOT图
             DotGraph dotGraph = new DotGraph("CFG_" + targetClassName + "_" + targetMethodName);
@@ -1498,6 +1872,58 @@ public class SootCodeAnalyzer {
         }
     }
 
+    /**
+     * 构建指定方法的控制流图
+     *
+     * @return 控制流图，找不到方法或方法没有方法体时返回null
+     * @throws IllegalArgumentException 方法名有多个重载时，异常信息中列出候选签名
+     */
+    UnitGraph buildCFG(String className, String methodName) {
+        // 加载目标类
+        SootClass targetClass = Scene.v().loadClassAndSupport(className);
+        targetClass.setApplicationClass();
+
+        // 获取目标方法，重载时无法只按方法名确定
+        List<String> candidates = new ArrayList<>();
+        SootMethod targetMethod = null;
+        for (SootMethod method : targetClass.getMethods()) {
+            if (method.getName().equals(methodName)) {
+                candidates.add(method.getSignature());
+                targetMethod = method;
+            }
+        }
+        if (candidates.size() > 1) {
+            throw new IllegalArgumentException("方法 " + className + "." + methodName
+                    + " 有多个重载，请使用完整签名：" + String.join(", ", candidates));
+        }
+        return targetMethod != null ? buildCFG(targetMethod) : null;
+    }
+
+    /**
+     * 按完整的Soot方法签名构建控制流图
+     *
+     * @return 控制流图，找不到方法或方法没有方法体时返回null
+     * @throws IllegalArgumentException 签名格式无效时
+     */
+    UnitGraph buildCFG(String signature) {
+        String className = getDeclaringClassName(signature);
+        if (className.equals(signature) || !signature.endsWith(">")) {
+            throw new IllegalArgumentException("无效的方法签名：" + signature);
+        }
+        Scene.v().loadClassAndSupport(className).setApplicationClass();
+        SootMethod targetMethod = Scene.v().grabMethod(signature);
+        return targetMethod != null ? buildCFG(targetMethod) : null;
+    }
+
+    private static UnitGraph buildCFG(SootMethod targetMethod) {
+        if (!targetMethod.isConcrete()) {
+            return null;
+        }
+        // 获取方法体
+        Body body = targetMethod.retrieveActiveBody();
+        return new BriefUnitGraph(body);
+    }
+
     /**
      * 计算控制流图的边数
      */
@@ -1513,6 +1939,27 @@ public class SootCodeAnalyzer {
      * 主方法
      */
     public static void main(String[] args) {
+        // 子命令：serve 启动常驻分析服务
+        if (args.length > 0 && args[0].equals("serve")) {
+            AnalysisServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // 子命令：query 查询调用图的可达性
+        if (args.length > 0 && args[0].equals("query")) {
+            CallGraphQuery.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // 子命令：scc 计算调用图的强连通分量和自底向上的拓扑顺序
+        if (args.length > 0 && args[0].equals("scc")) {
+            CallGraphComponents.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // 子命令：diff 比较两个版本的调用图
+        if (args.length > 0 && args[0].equals("diff")) {
+            CallGraphDiff.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         // 创建命令行选项
         org.apache.commons.cli.Options cliOptions = new org.apache.commons.cli.Options();
         HelpFormatter formatter = new HelpFormatter();
@@ -1556,9 +2003,19 @@ public class SootCodeAnalyzer {
                     
             cliOptions.addOption(Option.builder("m")
                     .longOpt("method-signature")
-                    .desc("方法签名，用于提取方法源码")
+                    .desc("方法签名，用于提取方法源码（与--signatures-file二选一）")
                     .hasArg()
-                    .required(true)
+                    .build());
+
+            cliOptions.addOption(Option.builder()
+                    .longOpt("signatures-file")
+                    .desc("方法签名文件，每行一个签名，批量提取方法源码")
+                    .hasArg()
+                    .build());
+
+            cliOptions.addOption(Option.builder()
+                    .longOpt("verbose")
+                    .desc("输出源码模型中的全部方法，以及查找失败时类中可用的方法")
                     .build());
                     
             cliOptions.addOption(Option.builder("t")
@@ -1611,6 +2068,38 @@ public class SootCodeAnalyzer {
             analyzer.setGenerateIndex(cmd.hasOption("i"));
             analyzer.setGeneratePointsToAnalysis(cmd.hasOption("p"));
             analyzer.setGenerateCFG(cmd.hasOption("cfg"));
+            analyzer.setThreads(parseIntOption(cmd, "threads", 1));
+            analyzer.setPtaThreads(parseIntOption(cmd, "pta-threads", 1));
+            if (cmd.hasOption("pta-query")) {
+                analyzer.setPointsToQueries(readListFile(cmd.getOptionValue("pta-query")));
+            }
+            analyzer.setDemandPointsTo(cmd.hasOption("pta-demand"));
+            if (cmd.hasOption("spark-profile") || cmd.hasOption("spark-timeout") || cmd.hasOption("spark-max-heap")) {
+                String profileName = cmd.getOptionValue("spark-profile",
+                        cmd.hasOption("p") ? SparkProfile.POINTS_TO : SparkProfile.DEFAULT);
+                int timeout = parseIntOption(cmd, "spark-timeout", -1);
+                int maxHeap = parseIntOption(cmd, "spark-max-heap", -1);
+                try {
+                    analyzer.setSparkProfile(SparkProfile.resolve(profileName).withBudget(timeout, maxHeap));
+                } catch (IOException | IllegalArgumentException e) {
+                    throw new ParseException("无法加载SPARK配置：" + e.getMessage());
+                }
+            }
+            analyzer.setPrettyPrintJson(!cmd.hasOption("compact-json"));
+            analyzer.setIncremental(cmd.hasOption("incremental"));
+            if (cmd.hasOption("cg-algorithm")) {
+                CallGraphGenerator.CallGraphAlgorithm algorithm = parseCallGraphAlgorithm(cmd.getOptionValue("cg-algorithm"));
+                if (cmd.hasOption("p") && algorithm != CallGraphGenerator.CallGraphAlgorithm.SPARK) {
+                    throw new ParseException("--cg-algorithm 与 -p 一起使用时只能为 spark");
+                }
+                analyzer.setCallGraphAlgorithm(algorithm);
+            }
+            if (cmd.hasOption("entry-points")) {
+                analyzer.setEntryPoints(Arrays.asList(cmd.getOptionValue("entry-points").split(",")));
+            }
+            if (cmd.hasOption("index-format")) {
+                analyzer.setIndexFormat(parseIndexFormat(cmd.getOptionValue("index-format")));
+            }
             
             // 设置目标类和方法
             if (cmd.hasOption("class")) {
@@ -1622,8 +2111,13 @@ public class SootCodeAnalyzer {
             
             // 设置提取方法源码相关选项
             if (cmd.hasOption("extract")) {
+                if (!cmd.hasOption("m") && !cmd.hasOption("signatures-file")) {
+                    throw new MissingOptionException("提取源码模式需要指定 -m 或 --signatures-file");
+                }
                 analyzer.setExtractMethodSource(true);
                 analyzer.setMethodSignature(cmd.getOptionValue("m"));
+                analyzer.setSignaturesFile(cmd.getOptionValue("signatures-file"));
+                analyzer.setVerboseExtraction(cmd.hasOption("verbose"));
                 analyzer.setSourcePath(cmd.getOptionValue("s"));
             }
 
@@ -1636,6 +2130,61 @@ public class SootCodeAnalyzer {
         }
     }
     
+    /**
+     * 读取每行一项的列表文件，空行和以#开头的行会被忽略
+     */
+    private static List<String> readListFile(String file) throws ParseException {
+        try {
+            List<String> items = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    items.add(line);
+                }
+            }
+            return items;
+        } catch (IOException e) {
+            throw new ParseException("无法读取文件：" + file);
+        }
+    }
+
+    /**
+     * 解析整数类型的命令行选项
+     */
+    private static int parseIntOption(CommandLine cmd, String option, int defaultValue) throws ParseException {
+        String value = cmd.getOptionValue(option);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ParseException("选项 " + option + " 需要整数值：" + value);
+        }
+    }
+
+    /**
+     * 解析索引输出格式
+     */
+    private static IndexFormat parseIndexFormat(String value) throws ParseException {
+        try {
+            return IndexFormat.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("无效的索引格式：" + value + "（可选 json、binary、both）");
+        }
+    }
+
+    /**
+     * 解析调用图算法
+     */
+    private static CallGraphGenerator.CallGraphAlgorithm parseCallGraphAlgorithm(String value) throws ParseException {
+        try {
+            return CallGraphGenerator.CallGraphAlgorithm.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("无效的调用图算法：" + value + "（可选 cha、rta、vta、spark）");
+        }
+    }
+
     /**
      * 添加所有命令行选项
      */
@@ -1695,6 +2244,17 @@ public class SootCodeAnalyzer {
                 .hasArg()
                 .build());
 
+        cliOptions.addOption(Option.builder()
+                .longOpt("signatures-file")
+                .desc("方法签名文件，每行一个签名，批量提取方法源码")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("verbose")
+                .desc("输出源码模型中的全部方法，以及查找失败时类中可用的方法")
+                .build());
+
         cliOptions.addOption(Option.builder("s")
                 .longOpt("source-path")
                 .desc("源代码路径，用于提取方法源码")
@@ -1706,6 +2266,75 @@ public class SootCodeAnalyzer {
                 .desc("提取方法源码")
                 .build());
 
+        cliOptions.addOption(Option.builder()
+                .longOpt("threads")
+                .desc("并行分析的线程数（默认1，即串行分析）")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("pta-threads")
+                .desc("SPARK求解后并行提取指向关系的线程数（默认1，即串行提取）")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("pta-query")
+                .desc("指针分析查询文件，每行一个方法签名或 方法签名:变量名，只提取这些方法或变量的指向关系")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("pta-demand")
+                .desc("与--pta-query一起使用，用DemandCSPointsTo按需细化查询变量的指向集合")
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("spark-profile")
+                .desc("SPARK调优配置：default、pointsto（指针分析的默认值）、precise、fast，或properties文件")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("spark-timeout")
+                .desc("SPARK传播的时间预算（秒），超出后退回CHA，0表示不限")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("spark-max-heap")
+                .desc("SPARK传播的堆内存预算（MB），超出后退回CHA，0表示不限")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("compact-json")
+                .desc("输出紧凑格式的索引JSON（不美化输出）")
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("index-format")
+                .desc("索引输出格式：json（默认）、binary 或 both")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("incremental")
+                .desc("增量索引：只重新分析class文件内容发生变化的类")
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("cg-algorithm")
+                .desc("调用图算法：cha、rta、vta 或 spark（默认只在指针分析时使用 spark）。与 -c 一起使用时把解析出的调用目标合并进调用图")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("entry-points")
+                .desc("指针分析的入口点，逗号分隔，格式为 类名:方法名 或 类名:*（默认使用所有公共方法）")
+                .hasArg()
+                .build());
+
         cliOptions.addOption(Option.builder("h")
                 .longOpt("help")
                 .desc("显示帮助信息")
@@ -1774,6 +2403,75 @@ public class SootCodeAnalyzer {
                 .desc("提取方法源码")
                 .build());
 
+        cliOptions.addOption(Option.builder()
+                .longOpt("threads")
+                .desc("并行分析的线程数（默认1，即串行分析）")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("pta-threads")
+                .desc("SPARK求解后并行提取指向关系的线程数（默认1，即串行提取）")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("pta-query")
+                .desc("指针分析查询文件，每行一个方法签名或 方法签名:变量名，只提取这些方法或变量的指向关系")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("pta-demand")
+                .desc("与--pta-query一起使用，用DemandCSPointsTo按需细化查询变量的指向集合")
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("spark-profile")
+                .desc("SPARK调优配置：default、pointsto（指针分析的默认值）、precise、fast，或properties文件")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("spark-timeout")
+                .desc("SPARK传播的时间预算（秒），超出后退回CHA，0表示不限")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("spark-max-heap")
+                .desc("SPARK传播的堆内存预算（MB），超出后退回CHA，0表示不限")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("compact-json")
+                .desc("输出紧凑格式的索引JSON（不美化输出）")
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("index-format")
+                .desc("索引输出格式：json（默认）、binary 或 both")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("incremental")
+                .desc("增量索引：只重新分析class文件内容发生变化的类")
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("cg-algorithm")
+                .desc("调用图算法：cha、rta、vta 或 spark（默认只在指针分析时使用 spark）。与 -c 一起使用时把解析出的调用目标合并进调用图")
+                .hasArg()
+                .build());
+
+        cliOptions.addOption(Option.builder()
+                .longOpt("entry-points")
+                .desc("指针分析的入口点，逗号分隔，格式为 类名:方法名 或 类名:*（默认使用所有公共方法）")
+                .hasArg()
+                .build());
+
         cliOptions.addOption(Option.builder("h")
                 .longOpt("help")
                 .desc("显示帮助信息")
@@ -1833,6 +2531,20 @@ public class SootCodeAnalyzer {
         this.methodSignature = methodSignature;
     }
     
+    /**
+     * 设置批量提取源码使用的签名文件
+     */
+    public void setSignaturesFile(String signaturesFile) {
+        this.signaturesFile = signaturesFile;
+    }
+
+    /**
+     * 设置提取源码时是否输出诊断信息
+     */
+    public void setVerboseExtraction(boolean verboseExtraction) {
+        this.verboseExtraction = verboseExtraction;
+    }
+
     public void setSourcePath(String sourcePath) {
         this.sourcePath = sourcePath;
     }
@@ -1840,4 +2552,74 @@ public class SootCodeAnalyzer {
     public void setExtractMethodSource(boolean extractMethodSource) {
         this.extractMethodSource = extractMethodSource;
     }
+
+    /**
+     * 设置分析应用类时使用的线程数，小于等于1时串行分析
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * 设置指针分析查询，每项为方法签名或 方法签名:变量名，只提取这些方法或变量的指向关系
+     */
+    public void setPointsToQueries(List<String> pointsToQueries) {
+        this.pointsToQueries = new ArrayList<>(pointsToQueries);
+    }
+
+    /**
+     * 设置是否用 DemandCSPointsTo 按需细化查询变量的指向集合（需要在分析前设置，只对查询生效）
+     */
+    public void setDemandPointsTo(boolean demandPointsTo) {
+        this.demandPointsTo = demandPointsTo;
+    }
+
+    /**
+     * 设置SPARK调优配置（需要在分析前设置），配置带预算时SPARK超出预算后退回CHA
+     */
+    public void setSparkProfile(SparkProfile sparkProfile) {
+        this.sparkProfile = sparkProfile;
+    }
+
+    /**
+     * 设置提取指针分析结果时使用的线程数，小于等于1时串行提取
+     */
+    public void setPtaThreads(int ptaThreads) {
+        this.ptaThreads = Math.max(1, ptaThreads);
+    }
+
+    /**
+     * 设置索引JSON是否美化输出
+     */
+    public void setPrettyPrintJson(boolean prettyPrintJson) {
+        this.prettyPrintJson = prettyPrintJson;
+    }
+
+    /**
+     * 设置索引输出格式
+     */
+    public void setIndexFormat(IndexFormat indexFormat) {
+        this.indexFormat = indexFormat;
+    }
+
+    /**
+     * 设置是否增量生成索引
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * 设置指针分析的入口点，格式为 类名:方法名 或 类名:*
+     */
+    public void setEntryPoints(List<String> entryPoints) {
+        this.entryPoints = new ArrayList<>(entryPoints);
+    }
+
+    /**
+     * 设置Soot调用图算法，为null时只在指针分析时使用SPARK；生成指针分析结果时只能为null或SPARK
+     */
+    public void setCallGraphAlgorithm(CallGraphGenerator.CallGraphAlgorithm callGraphAlgorithm) {
+        this.callGraphAlgorithm = callGraphAlgorithm;
+    }
 }
@@ -0,0 +1,233 @@
+package edu.thu.soot;
+
+import soot.jimple.spark.SparkTransformer;
+import soot.options.Options;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * SPARK调优配置：cg.spark阶段的选项，以及传播阶段的时间和堆内存预算
+ * 内置 default、pointsto、precise 和 fast 四种配置，也可以从properties文件加载：
+ * base 指定基于的内置配置，timeout-seconds 和 max-heap-mb 指定预算（0表示不限），其余键都是cg.spark的选项
+ */
+public final class SparkProfile {
+
+    /** CallGraphGenerator原来的SPARK选项：在Soot默认选项上打开 verbose，构建SPARK调用图时使用 */
+    public static final String DEFAULT = "default";
+    /** 指针分析原来的选项：按类型合并分配点和StringBuffer，保留字符串常量 */
+    public static final String POINTS_TO = "pointsto";
+    /** 每个分配点单独建模，不按类型合并分配点和StringBuffer，精度最高但PAG最大 */
+    public static final String PRECISE = "precise";
+    /** 基于字段的分析和位集合，精度较低但PAG更小、传播更快 */
+    public static final String FAST = "fast";
+
+    static final String BASE_KEY = "base";
+    static final String TIMEOUT_KEY = "timeout-seconds";
+    static final String MAX_HEAP_KEY = "max-heap-mb";
+
+    private final String name;
+    private final Map<String, String> options;
+    private final long timeoutSeconds;
+    private final long maxHeapMb;
+
+    private SparkProfile(String name, Map<String, String> options, long timeoutSeconds, long maxHeapMb) {
+        this.name = name;
+        this.options = Collections.unmodifiableMap(new LinkedHashMap<>(options));
+        this.timeoutSeconds = timeoutSeconds;
+        this.maxHeapMb = maxHeapMb;
+    }
+
+    /**
+     * 获取内置配置
+     *
+     * @param name default、pointsto、precise 或 fast
+     */
+    public static SparkProfile builtin(String name) {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("verbose", "true");
+        options.put("on-fly-cg", "true");
+        options.put("propagator", "worklist");
+        options.put("simple-edges-bidirectional", "false");
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case DEFAULT:
+                options.put("set-impl", "double");
+                options.put("double-set-old", "hybrid");
+                options.put("double-set-new", "hybrid");
+                return new SparkProfile(DEFAULT, options, 0, 0);
+            case POINTS_TO:
+                options.put("set-impl", "double");
+                options.put("double-set-old", "hybrid");
+                options.put("double-set-new", "hybrid");
+                options.put("field-based", "false");
+                options.put("types-for-sites", "true");
+                options.put("merge-stringbuffer", "true");
+                options.put("string-constants", "true");
+                options.put("simulate-natives", "true");
+                return new SparkProfile(POINTS_TO, options, 0, 0);
+            case PRECISE:
+                options.put("set-impl", "double");
+                options.put("double-set-old", "hybrid");
+                options.put("double-set-new", "hybrid");
+                options.put("field-based", "false");
+                options.put("types-for-sites", "false");
+                options.put("merge-stringbuffer", "false");
+                options.put("string-constants", "true");
+                options.put("simulate-natives", "true");
+                return new SparkProfile(PRECISE, options, 0, 0);
+            case FAST:
+                options.put("verbose", "false");
+                options.put("set-impl", "bit");
+                options.put("field-based", "true");
+                options.put("types-for-sites", "true");
+                options.put("merge-stringbuffer", "true");
+                options.put("string-constants", "false");
+                options.put("simulate-natives", "true");
+                return new SparkProfile(FAST, options, 0, 0);
+            default:
+                throw new IllegalArgumentException("未知的SPARK配置：" + name);
+        }
+    }
+
+    /**
+     * 按名称获取内置配置，不是内置配置的名称时作为properties文件路径加载
+     */
+    public static SparkProfile resolve(String nameOrFile) throws IOException {
+        String lower = nameOrFile.toLowerCase(Locale.ROOT);
+        if (lower.equals(DEFAULT) || lower.equals(POINTS_TO) || lower.equals(PRECISE)
+                || lower.equals(FAST)) {
+            return builtin(lower);
+        }
+        return load(Paths.get(nameOrFile));
+    }
+
+    /**
+     * 从properties文件加载配置，文件中的选项覆盖 base 指定的内置配置（默认 pointsto）
+     */
+    public static SparkProfile load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        SparkProfile base = builtin(properties.getProperty(BASE_KEY, POINTS_TO).trim());
+        Map<String, String> options = new LinkedHashMap<>(base.options);
+        long timeoutSeconds = parseBudget(properties, TIMEOUT_KEY, base.timeoutSeconds);
+        long maxHeapMb = parseBudget(properties, MAX_HEAP_KEY, base.maxHeapMb);
+
+        Set<String> declared = new HashSet<>(Arrays.asList(
+                Options.getDeclaredOptionsForPhase("cg.spark").trim().split("\\s+")));
+        // 按键排序，使同一文件得到的选项顺序固定
+        for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+            if (key.equals(BASE_KEY) || key.equals(TIMEOUT_KEY) || key.equals(MAX_HEAP_KEY)) {
+                continue;
+            }
+            if (key.equals("enabled") || !declared.contains(key)) {
+                throw new IllegalArgumentException("不支持的cg.spark选项：" + key + "（" + file + "）");
+            }
+            options.put(key, properties.getProperty(key).trim());
+        }
+
+        String fileName = file.getFileName().toString();
+        String name = fileName.endsWith(".properties")
+                ? fileName.substring(0, fileName.length() - ".properties".length()) : fileName;
+        return new SparkProfile(name, options, timeoutSeconds, maxHeapMb);
+    }
+
+    private static long parseBudget(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long budget = Long.parseLong(value.trim());
+            if (budget < 0) {
+                throw new IllegalArgumentException(key + " 不能为负数：" + value);
+            }
+            return budget;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的" + key + "：" + value);
+        }
+    }
+
+    /**
+     * 替换预算，参数为负数时保留原来的值，0表示不限
+     */
+    public SparkProfile withBudget(long timeoutSeconds, long maxHeapMb) {
+        return new SparkProfile(name, options,
+                timeoutSeconds < 0 ? this.timeoutSeconds : timeoutSeconds,
+                maxHeapMb < 0 ? this.maxHeapMb : maxHeapMb);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, String> getOptions() {
+        return options;
+    }
+
+    public long getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    public long getMaxHeapMb() {
+        return maxHeapMb;
+    }
+
+    public boolean hasBudget() {
+        return timeoutSeconds > 0 || maxHeapMb > 0;
+    }
+
+    /**
+     * 作为 SparkTransformer.transform 参数的阶段选项
+     */
+    Map<String, String> toPhaseOptions() {
+        Map<String, String> phaseOptions = new LinkedHashMap<>();
+        phaseOptions.put("enabled", "true");
+        phaseOptions.putAll(options);
+        return phaseOptions;
+    }
+
+    /**
+     * 把选项设置到Soot的cg.spark阶段
+     */
+    void apply() {
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            Options.v().setPhaseOption("cg.spark", option.getKey() + ":" + option.getValue());
+        }
+    }
+
+    /**
+     * 有预算时返回检查预算的SparkTransformer，否则返回Soot的单例
+     */
+    SparkTransformer newTransformer() {
+        if (!hasBudget()) {
+            return SparkTransformer.v();
+        }
+        return new BudgetedSparkTransformer(timeoutSeconds * 1000L, maxHeapMb * 1024L * 1024L);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(name).append(' ').append(options);
+        if (hasBudget()) {
+            text.append("，预算 ").append(timeoutSeconds > 0 ? timeoutSeconds + " 秒" : "不限时")
+                    .append(" / ").append(maxHeapMb > 0 ? maxHeapMb + " MB" : "不限内存");
+        }
+        return text.toString();
+    }
+}
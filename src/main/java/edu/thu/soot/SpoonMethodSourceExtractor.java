@@ -1,7 +1,15 @@
 package edu.thu.soot;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import spoon.Launcher;
+import spoon.reflect.cu.SourcePosition;
+import spoon.reflect.declaration.CtAnonymousExecutable;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtExecutable;
 import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.declaration.ModifierKind;
 import spoon.reflect.factory.Factory;
 import spoon.reflect.visitor.filter.TypeFilter;
 
@@ -9,39 +17,200 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 class SpoonMethodSourceExtractor {
-    private final Launcher launcher;
-    private final Factory factory;
+    private static final Logger logger = LoggerFactory.getLogger(SpoonMethodSourceExtractor.class);
+
+    // 按类名定位单个源文件时尝试的源码根目录（相对于sourcePath）
+    private static final String[] SOURCE_ROOTS = {"", "src/main/java", "src/test/java"};
+
+    // 按源码根目录缓存的提取器数量上限，每个提取器持有一个完整的Spoon模型
+    private static final int MAX_CACHED_MODELS = 4;
+
+    // 按源码根目录缓存提取器（LRU），同一JVM中重复提取时复用已构建的Spoon模型
+    private static final Map<String, SpoonMethodSourceExtractor> CACHE =
+            new LinkedHashMap<String, SpoonMethodSourceExtractor>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SpoonMethodSourceExtractor> eldest) {
+                    return size() > MAX_CACHED_MODELS;
+                }
+            };
+
+    // 单文件模型缓存上限
+    private static final int MAX_CACHED_FILES = 64;
+
+    private final String sourcePath;
+
+    // 完整模型的签名索引，只在单文件解析失败时才构建
+    private MethodSignatureIndex fullModel;
+
+    // 按源文件缓存的单文件模型签名索引（LRU），值为null表示该文件解析失败，不再重复解析
+    private final Map<Path, MethodSignatureIndex> fileModels =
+            new LinkedHashMap<Path, MethodSignatureIndex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Path, MethodSignatureIndex> eldest) {
+                    return size() > MAX_CACHED_FILES;
+                }
+            };
+
+    // 是否输出诊断信息：模型中的全部方法、查找失败时类中可用的方法
+    private volatile boolean verbose = false;
+
+    /**
+     * 获取指定源码根目录的提取器，已缓存时直接复用其Spoon模型
+     *
+     * @param sourcePath 源代码路径
+     * @return 提取器
+     */
+    public static SpoonMethodSourceExtractor forSourceRoot(String sourcePath) {
+        String key = cacheKey(sourcePath);
+        synchronized (CACHE) {
+            SpoonMethodSourceExtractor extractor = CACHE.get(key);
+            if (extractor == null) {
+                extractor = new SpoonMethodSourceExtractor(sourcePath);
+                CACHE.put(key, extractor);
+            }
+            return extractor;
+        }
+    }
+
+    /**
+     * 丢弃指定源码根目录的缓存模型，源码发生变化后调用
+     */
+    public static void evict(String sourcePath) {
+        synchronized (CACHE) {
+            CACHE.remove(cacheKey(sourcePath));
+        }
+    }
+
+    private static String cacheKey(String sourcePath) {
+        return Paths.get(sourcePath).toAbsolutePath().normalize().toString();
+    }
 
     public SpoonMethodSourceExtractor(String sourcePath) {
-        launcher = new Launcher();
+        this.sourcePath = sourcePath;
+    }
+
+    /**
+     * 设置是否输出诊断信息
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * 获取完整模型，首次调用时解析源码路径下的全部文件并建立签名索引
+     */
+    private synchronized MethodSignatureIndex getFullModel() {
+        if (fullModel != null) {
+            return fullModel;
+        }
+
+        long start = System.currentTimeMillis();
+        fullModel = new MethodSignatureIndex(buildModel(sourcePath, false));
+        logger.info("完整Spoon模型构建完成，共 {} 个方法，耗时 {} ms：{}",
+                fullModel.size(), System.currentTimeMillis() - start, sourcePath);
+
+        if (verbose) {
+            for (CtMethod<?> method : fullModel.getFactory().getModel().getElements(new TypeFilter<>(CtMethod.class))) {
+                logger.info("已加载方法：{}: {} {}({})", method.getDeclaringType().getQualifiedName(),
+                        method.getType().getSimpleName(), method.getSimpleName(), getParameterTypes(method));
+            }
+        }
+        return fullModel;
+    }
+
+    private static Factory buildModel(String inputResource, boolean noClasspath) {
+        Launcher launcher = new Launcher();
         // 配置Spoon
         launcher.getEnvironment().setAutoImports(true);
         launcher.getEnvironment().setLevel("OFF");
         launcher.getEnvironment().setComplianceLevel(11);
+        if (noClasspath) {
+            launcher.getEnvironment().setNoClasspath(true);
+        }
 
         // 添加源代码路径
-        launcher.addInputResource(sourcePath);
+        launcher.addInputResource(inputResource);
 
         // 构建模型
         launcher.buildModel();
-        factory = launcher.getFactory();
+        return launcher.getFactory();
+    }
 
-        // 打印加载的类信息
-        List<CtMethod<?>> methods = factory.getModel().getRootPackage().getElements(new TypeFilter<>(CtMethod.class));
-        System.out.println("Loaded methods:");
-        for (CtMethod<?> method : methods) {
-            System.out.println(method.getDeclaringType().getQualifiedName() + ": " +
-                             method.getType().getSimpleName() + " " +
-                             method.getSimpleName() + "(" +
-                             getParameterTypes(method) + ")");
+    /**
+     * 只解析类所在的单个源文件，得到不依赖类路径的模型
+     *
+     * @return 单文件模型，找不到源文件或解析失败时返回null（解析失败的结果同样缓存）
+     */
+    private synchronized MethodSignatureIndex getFileModel(String className) {
+        Path file = findSourceFile(className);
+        if (file == null) {
+            return null;
+        }
+
+        MethodSignatureIndex model = fileModels.get(file);
+        if (model == null && !fileModels.containsKey(file)) {
+            try {
+                model = new MethodSignatureIndex(buildModel(file.toString(), true));
+            } catch (RuntimeException e) {
+                logger.debug("单文件解析失败：{}，{}", file, e.getMessage());
+            }
+            fileModels.put(file, model);
         }
+        return model;
     }
 
-    private String getParameterTypes(CtMethod<?> method) {
+    /**
+     * 根据完全限定类名定位源文件，内部类对应其最外层类所在的文件
+     */
+    Path findSourceFile(String className) {
+        String outerClassName = className;
+        int innerSeparator = outerClassName.indexOf('$');
+        if (innerSeparator >= 0) {
+            outerClassName = outerClassName.substring(0, innerSeparator);
+        }
+        String relativePath = outerClassName.replace('.', '/') + ".java";
+
+        for (String root : SOURCE_ROOTS) {
+            Path candidate = Paths.get(sourcePath, root, relativePath);
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 查找类型：先在单文件模型中查找，找不到时回退到完整模型
+     */
+    private CtType<?> getType(String className) {
+        if (!isFullModelBuilt()) {
+            MethodSignatureIndex fileModel = getFileModel(className);
+            if (fileModel != null) {
+                CtType<?> type = fileModel.getFactory().Type().get(className);
+                if (type != null) {
+                    return type;
+                }
+            }
+            logger.debug("单文件解析未找到类，回退到完整模型：{}", className);
+        }
+        return getFullModel().getFactory().Type().get(className);
+    }
+
+    /**
+     * 完整模型是否已经构建
+     */
+    synchronized boolean isFullModelBuilt() {
+        return fullModel != null;
+    }
+
+    private String getParameterTypes(CtExecutable<?> method) {
         return method.getParameters().stream()
                 .map(param -> param.getType().getSimpleName())
                 .reduce((a, b) -> a + ", " + b)
@@ -49,8 +218,38 @@ class SpoonMethodSourceExtractor {
     }
 
     public String getMethodSource(String methodSignature) {
-        CtMethod<?> method = getMethod(methodSignature);
-        return method.toString();
+        return extract(methodSignature).getSource();
+    }
+
+    /**
+     * 提取方法源码及其在源文件中的行号范围
+     * 字节码中的 &lt;clinit&gt; 包含类中所有的静态初始化块，因此提取全部静态初始化块，依次拼接
+     *
+     * @param methodSignature 方法签名
+     * @return 方法源码
+     */
+    public MethodSource extract(String methodSignature) {
+        CtExecutable<?> executable = getExecutable(methodSignature);
+        if (executable instanceof CtAnonymousExecutable) {
+            return new MethodSource(staticInitializers((CtAnonymousExecutable) executable));
+        }
+        return new MethodSource(List.of(executable));
+    }
+
+    /**
+     * 与给定静态初始化块在同一个类中的全部静态初始化块，按源码顺序
+     */
+    private static List<CtAnonymousExecutable> staticInitializers(CtAnonymousExecutable block) {
+        List<CtAnonymousExecutable> blocks = new ArrayList<>();
+        CtType<?> type = block.getParent(CtType.class);
+        if (type instanceof CtClass) {
+            for (CtAnonymousExecutable executable : ((CtClass<?>) type).getAnonymousExecutables()) {
+                if (executable.hasModifier(ModifierKind.STATIC)) {
+                    blocks.add(executable);
+                }
+            }
+        }
+        return blocks.isEmpty() ? List.of(block) : blocks;
     }
 
     /**
@@ -62,13 +261,10 @@ class SpoonMethodSourceExtractor {
      * @throws IOException 如果写入文件时发生IO错误
      */
     public boolean writeMethodSourceToFile(String methodSignature, String outputFilePath) throws IOException {
-        CtMethod<?> method = getMethod(methodSignature);
-        if (method == null) {
-            return false;
-        }
+        MethodSource method = extract(methodSignature);
 
         // 获取方法源码
-        String methodSource = method.toString();
+        String methodSource = method.getSource();
 
         // 创建父目录（如果不存在）
         Path filePath = Paths.get(outputFilePath);
@@ -76,7 +272,8 @@ class SpoonMethodSourceExtractor {
 
         // 写入文件
         Files.writeString(filePath, methodSource);
-        System.out.println("方法源码已写入文件: " + outputFilePath);
+        logger.info("方法源码已写入文件：{}（源文件 {} 第 {}-{} 行）",
+                outputFilePath, method.getSourceFile(), method.getStartLine(), method.getEndLine());
 
         return true;
     }
@@ -91,7 +288,7 @@ class SpoonMethodSourceExtractor {
      */
     public int writeAllMethodSourcesToDirectory(String className, String outputDirPath) throws IOException {
         // 获取类
-        var type = factory.Type().get(className);
+        var type = getType(className);
         if (type == null) {
             throw new IllegalArgumentException("Class not found: " + className);
         }
@@ -111,7 +308,7 @@ class SpoonMethodSourceExtractor {
 
             // 写入方法源码
             Files.writeString(filePath, method.toString());
-            System.out.println("方法 " + methodName + " 源码已写入文件: " + filePath);
+            logger.info("方法 {} 源码已写入文件：{}", methodName, filePath);
 
             count++;
         }
@@ -119,67 +316,112 @@ class SpoonMethodSourceExtractor {
         return count;
     }
 
+    /**
+     * 按签名查找方法声明
+     *
+     * @param methodSignature 方法签名
+     * @return 方法声明
+     * @throws IllegalArgumentException 如果签名格式错误、找不到方法或签名指向构造函数/静态初始化块
+     */
     public CtMethod<?> getMethod(String methodSignature) {
-        // 支持Soot风格的签名：<className: returnType methodName(paramType1, paramType2, ...)>
-        if (methodSignature.startsWith("<") && methodSignature.endsWith(">")) {
-            methodSignature = methodSignature.substring(1, methodSignature.length() - 1);
+        CtExecutable<?> executable = getExecutable(methodSignature);
+        if (!(executable instanceof CtMethod)) {
+            throw new IllegalArgumentException("Not a method: " + methodSignature);
         }
+        return (CtMethod<?>) executable;
+    }
 
-        // 解析方法签名
-        // 格式: className: returnType methodName(paramType1, paramType2, ...)
-        String[] parts = methodSignature.split(": ");
-        if (parts.length != 2) {
-            throw new IllegalArgumentException("Invalid method signature format. Expected: className: returnType methodName(paramType1, paramType2, ...)");
+    /**
+     * 按签名查找方法、构造函数（&lt;init&gt;）或静态初始化块（&lt;clinit&gt;）
+     * 类中有多个静态初始化块时返回第一个，需要完整的 &lt;clinit&gt; 时使用 extract
+     *
+     * @param methodSignature 方法签名
+     * @return 声明
+     * @throws IllegalArgumentException 如果签名格式错误或找不到声明
+     */
+    public CtExecutable<?> getExecutable(String methodSignature) {
+        MethodSignatureIndex.Signature signature = MethodSignatureIndex.Signature.parse(methodSignature);
+
+        // 优先只解析类所在的源文件，失败时才回退到完整模型
+        if (!isFullModelBuilt()) {
+            MethodSignatureIndex fileModel = getFileModel(signature.className);
+            CtExecutable<?> executable = fileModel != null ? fileModel.find(signature) : null;
+            if (executable != null) {
+                return executable;
+            }
+            logger.debug("单文件解析未找到方法，回退到完整模型：{}", methodSignature);
         }
 
-        String className = parts[0];
-        String methodPart = parts[1];
+        MethodSignatureIndex model = getFullModel();
+        CtExecutable<?> executable = model.find(signature);
+        if (executable != null) {
+            return executable;
+        }
 
-        // 解析返回类型和方法名
-        String[] methodParts = methodPart.split(" ", 2);
-        if (methodParts.length != 2) {
-            throw new IllegalArgumentException("Invalid method part format");
+        if (model.getFactory().Type().get(signature.className) == null) {
+            throw new IllegalArgumentException("Class not found: " + signature.className);
         }
+        if (verbose) {
+            logger.info("类 {} 中可用的方法：", signature.className);
+            for (CtExecutable<?> e : model.executablesOf(signature.className)) {
+                logger.info("- {}({})", e.getSimpleName(), String.join(",", MethodSignatureIndex.parameterTypes(e)));
+            }
+        }
+        throw new IllegalArgumentException("Method not found: " + methodSignature);
+    }
 
-        String returnType = methodParts[0];
-        String methodName = methodParts[1].split("\\(")[0];
+    /**
+     * 方法源码及其位置
+     * 由多个静态初始化块组成时，源码以空行分隔，行号范围从第一个块开始到最后一个块结束
+     */
+    public static class MethodSource {
+        private final String source;
+        private final String sourceFile;
+        private final int startLine;
+        private final int endLine;
 
-        // 获取简单类名（不含包名）
-        String simpleReturnType = returnType;
-        if (returnType.contains(".")) {
-            simpleReturnType = returnType.substring(returnType.lastIndexOf('.') + 1);
+        MethodSource(List<? extends CtExecutable<?>> parts) {
+            List<String> sources = new ArrayList<>();
+            for (CtExecutable<?> part : parts) {
+                sources.add(part.toString());
+            }
+            this.source = String.join("\n\n", sources);
+            SourcePosition first = parts.get(0).getPosition();
+            SourcePosition last = parts.get(parts.size() - 1).getPosition();
+            if (first.isValidPosition() && last.isValidPosition()) {
+                this.sourceFile = first.getFile() != null ? first.getFile().getPath() : null;
+                this.startLine = first.getLine();
+                this.endLine = last.getEndLine();
+            } else {
+                this.sourceFile = null;
+                this.startLine = -1;
+                this.endLine = -1;
+            }
         }
 
-        // 获取类
-        var type = factory.Type().get(className);
-        if (type == null) {
-            throw new IllegalArgumentException("Class not found: " + className);
+        public String getSource() {
+            return source;
         }
 
-        // 获取方法声明
-        CtMethod<?> method = null;
-        for (CtMethod<?> m : type.getMethods()) {
-            if (m.getSimpleName().equals(methodName) &&
-                (m.getType().getSimpleName().equals(simpleReturnType) ||
-                 m.getType().getQualifiedName().equals(returnType))) {
-                method = m;
-                break;
-            }
+        /**
+         * 方法所在的源文件，位置未知时返回null
+         */
+        public String getSourceFile() {
+            return sourceFile;
         }
 
-        if (method == null) {
-            // 打印更多调试信息
-            System.out.println("Available methods in class " + className + ":");
-            Set<CtMethod<?>> methods = type.getMethods();
-            for (CtMethod<?> m : methods) {
-                System.out.println("- " + m.getType().getSimpleName() + " " +
-                                 m.getSimpleName() + "(" +
-                                 getParameterTypes(m) + ")");
-                System.out.println("  Return type qualified: " + m.getType().getQualifiedName());
-            }
-            throw new IllegalArgumentException("Method not found: " + methodSignature);
+        /**
+         * 方法起始行号，位置未知时返回-1
+         */
+        public int getStartLine() {
+            return startLine;
         }
 
-        return method;
+        /**
+         * 方法结束行号，位置未知时返回-1
+         */
+        public int getEndLine() {
+            return endLine;
+        }
     }
 }
@@ -0,0 +1,138 @@
+package edu.thu.soot;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisServerTest {
+    private static final HttpClient client = HttpClient.newHttpClient();
+    private static AnalysisServer server;
+    private static Path classesDir;
+
+    @TempDir
+    static Path tempDir;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        Path sourceDir = TestProjects.writeSampleSources(tempDir);
+        classesDir = TestProjects.compile(sourceDir, tempDir.resolve("classes"));
+
+        server = new AnalysisServer(classesDir.toString(), sourceDir.toString(), 0);
+        server.start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    private static HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testIndexLookup() throws Exception {
+        HttpResponse<String> response = get("/index/method-definitions?name=process");
+        assertEquals(200, response.statusCode());
+        JsonArray entries = JsonParser.parseString(response.body()).getAsJsonArray();
+        assertEquals(2, entries.size());
+        assertEquals("com.example.app.Service", entries.get(0).getAsJsonObject().get("className").getAsString());
+
+        response = get("/index/field-references?name=repository");
+        assertEquals(200, response.statusCode());
+        assertFalse(JsonParser.parseString(response.body()).getAsJsonArray().isEmpty());
+
+        assertEquals(400, get("/index/method-definitions").statusCode());
+    }
+
+    @Test
+    void testCallGraphNeighbours() throws Exception {
+        String process = "<com.example.app.Service: void process(java.lang.String)>";
+
+        HttpResponse<String> response = get("/callgraph/callees?method=" + encode(process));
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("<com.example.app.Repository: void save(java.lang.String)>"));
+
+        response = get("/callgraph/callers?method=" + encode(process));
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("<com.example.app.Main: void main(java.lang.String[])>"));
+    }
+
+    @Test
+    void testCfgAndSource() throws Exception {
+        HttpResponse<String> response = get("/cfg?class=com.example.app.Service&method=count");
+        assertEquals(200, response.statusCode());
+        JsonObject cfg = JsonParser.parseString(response.body()).getAsJsonObject();
+        assertTrue(cfg.getAsJsonArray("nodes").size() > 0);
+        assertTrue(cfg.getAsJsonArray("edges").size() > 0);
+
+        assertEquals(404, get("/cfg?class=com.example.app.Service&method=missing").statusCode());
+
+        // 重载的方法只按方法名无法确定，返回400并列出候选签名；完整签名可以查询任意一个重载
+        response = get("/cfg?class=com.example.app.Service&method=process");
+        assertEquals(400, response.statusCode());
+        assertTrue(response.body().contains("<com.example.app.Service: void process(byte[])>"), response.body());
+        response = get("/cfg?signature=" + encode("<com.example.app.Service: void process(byte[])>"));
+        assertEquals(200, response.statusCode());
+        assertEquals("<com.example.app.Service: void process(byte[])>",
+                JsonParser.parseString(response.body()).getAsJsonObject().get("method").getAsString());
+        assertEquals(404, get("/cfg?signature=" + encode("<com.example.app.Service: void process(int)>")).statusCode());
+
+        response = get("/source?signature=" + encode("<com.example.app.Service: int count()>"));
+        assertEquals(200, response.statusCode());
+        JsonObject source = JsonParser.parseString(response.body()).getAsJsonObject();
+        assertTrue(source.get("source").getAsString().contains("repository.findAll().size()"));
+        assertTrue(source.get("startLine").getAsInt() > 0);
+    }
+
+    private static HttpResponse<String> reload() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + "/reload"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testReload() throws Exception {
+        HttpResponse<String> response = reload();
+        assertEquals(200, response.statusCode());
+        assertTrue(JsonParser.parseString(response.body()).getAsJsonObject().get("methodNames").getAsInt() > 0);
+
+        assertEquals(200, get("/index/method-definitions?name=save").statusCode());
+
+        // 加载失败后不再使用已被重置的Scene，重新加载成功后恢复
+        Path classFile = classesDir.resolve("com/example/app/Service.class");
+        byte[] original = Files.readAllBytes(classFile);
+        Files.write(classFile, new byte[]{(byte) 0xCA, (byte) 0xFE, 0, 1});
+        try {
+            assertEquals(500, reload().statusCode());
+            assertEquals(503, get("/status").statusCode());
+            assertEquals(503, get("/cfg?signature=" + encode("<com.example.app.Service: int count()>")).statusCode());
+        } finally {
+            Files.write(classFile, original);
+        }
+        assertEquals(200, reload().statusCode());
+        assertEquals(200, get("/index/method-definitions?name=save").statusCode());
+    }
+}
@@ -0,0 +1,81 @@
+package edu.thu.soot;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import edu.thu.soot.BinaryIndexWriter.Section;
+import edu.thu.soot.SootCodeAnalyzer.IndexEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryIndexReaderTest {
+    private static final Type INDEX_TYPE = new TypeToken<Map<String, List<IndexEntry>>>() {
+    }.getType();
+
+    private final Gson gson = new Gson();
+
+    @TempDir
+    Path tempDir;
+
+    private Map<String, List<IndexEntry>> readJson(Path file) throws IOException {
+        return gson.fromJson(Files.readString(file), INDEX_TYPE);
+    }
+
+    private void assertSectionEquals(Map<String, List<IndexEntry>> expected, BinaryIndexReader reader, Section section) {
+        assertEquals(expected.size(), reader.keyCount(section));
+        for (Map.Entry<String, List<IndexEntry>> entry : expected.entrySet()) {
+            List<IndexEntry> actual = reader.find(section, entry.getKey());
+            assertEquals(gson.toJson(entry.getValue()), gson.toJson(actual), section + " " + entry.getKey());
+        }
+    }
+
+    @Test
+    void testRoundTripAgainstJsonOutput() throws IOException {
+        Path classesDir = TestProjects.compileSample(tempDir);
+        Path outputDir = tempDir.resolve("output");
+
+        SootCodeAnalyzer analyzer = new SootCodeAnalyzer(classesDir.toString(), outputDir.toString());
+        analyzer.setGenerateIndex(true);
+        analyzer.setIndexFormat(SootCodeAnalyzer.IndexFormat.BOTH);
+        analyzer.analyze();
+
+        Path indexDir = outputDir.resolve("index");
+        try (BinaryIndexReader reader = BinaryIndexReader.open(indexDir.resolve("code_index.bin"))) {
+            assertSectionEquals(readJson(indexDir.resolve("method_definitions.json")), reader, Section.METHOD_DEFINITIONS);
+            assertSectionEquals(readJson(indexDir.resolve("method_invocations.json")), reader, Section.METHOD_INVOCATIONS);
+            assertSectionEquals(readJson(indexDir.resolve("field_definitions.json")), reader, Section.FIELD_DEFINITIONS);
+            assertSectionEquals(readJson(indexDir.resolve("field_references.json")), reader, Section.FIELD_REFERENCES);
+
+            List<IndexEntry> process = reader.findMethodDefinitions("process");
+            assertEquals(2, process.size());
+            assertEquals("com.example.app.Service", process.get(0).getClassName());
+            assertFalse(reader.findFieldReferences("repository").isEmpty());
+            assertTrue(reader.findMethodInvocations("noSuchMethod").isEmpty());
+        }
+    }
+
+    @Test
+    void testNullsAndNonAsciiKeys() throws IOException {
+        Map<String, List<IndexEntry>> definitions = new HashMap<>();
+        definitions.put("处理", List.of(new IndexEntry("a.B", "处理", "<a.B: void 处理()>", null, 7)));
+        definitions.put("zeta", List.of(new IndexEntry("a.B", "zeta", "<a.B: void zeta()>", "a.B.java", -1)));
+        definitions.put("alpha", new ArrayList<>());
+
+        Path file = tempDir.resolve("code_index.bin");
+        new BinaryIndexWriter().write(file, definitions, Map.of(), Map.of(), Map.of());
+
+        try (BinaryIndexReader reader = BinaryIndexReader.open(file)) {
+            assertSectionEquals(definitions, reader, Section.METHOD_DEFINITIONS);
+            assertNull(reader.findMethodDefinitions("处理").get(0).getSourceFile());
+            assertEquals(0, reader.keyCount(Section.FIELD_REFERENCES));
+            assertTrue(reader.findFieldReferences("alpha").isEmpty());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package edu.thu.soot;
+
+import edu.thu.soot.CallGraphGenerator.CallGraphAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import soot.Scene;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallGraphAlgorithmTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Set<String> build(Path classesDir, CallGraphAlgorithm algorithm) {
+        return build(classesDir, algorithm, SparkProfile.builtin(SparkProfile.DEFAULT));
+    }
+
+    private static Set<String> build(Path classesDir, CallGraphAlgorithm algorithm, SparkProfile profile) {
+        load(classesDir);
+        return edges(CallGraphGenerator.buildCallGraph(algorithm, profile));
+    }
+
+    private static void load(Path classesDir) {
+        TestProjects.loadWholeProgram(classesDir);
+        Scene.v().setEntryPoints(CallGraphGenerator.resolveEntryPoints(List.of(TestProjects.SHAPES_ENTRY_POINT)));
+    }
+
+    private static Set<String> edges(CallGraph callGraph) {
+        Set<String> edges = new HashSet<>();
+        for (Edge edge : callGraph) {
+            if (edge.src().getDeclaringClass().getName().startsWith("d.")) {
+                edges.add(edge.src().getName() + " -> " + edge.tgt().getDeclaringClass().getShortJavaStyleName()
+                        + "." + edge.tgt().getName());
+            }
+        }
+        return edges;
+    }
+
+    @Test
+    void testPrecisionOrder() throws IOException {
+        Path classesDir = TestProjects.compileShapes(tempDir);
+
+        Set<String> cha = build(classesDir, CallGraphAlgorithm.CHA);
+        Set<String> rta = build(classesDir, CallGraphAlgorithm.RTA);
+        Set<String> vta = build(classesDir, CallGraphAlgorithm.VTA);
+        Set<String> spark = build(classesDir, CallGraphAlgorithm.SPARK);
+
+        // CHA连接所有实现类
+        assertTrue(cha.contains("measure -> Shapes$Unused.area"), cha.toString());
+        // RTA只连接实例化过的类型
+        assertFalse(rta.contains("measure -> Shapes$Unused.area"), rta.toString());
+        assertTrue(rta.contains("measure -> Shapes$Square.area"));
+        assertTrue(rta.contains("measure -> Shapes$Circle.area"));
+        // VTA和SPARK按变量的类型区分调用点
+        assertTrue(vta.contains("measure -> Shapes$Square.area"), vta.toString());
+        assertFalse(vta.contains("measure -> Shapes$Circle.area"));
+        assertFalse(spark.contains("measure -> Shapes$Circle.area"), spark.toString());
+
+        assertTrue(cha.containsAll(rta));
+        assertTrue(rta.containsAll(vta));
+    }
+
+    @Test
+    void testSparkProfilesAndBudgetFallback() throws IOException {
+        Path classesDir = TestProjects.compileShapes(tempDir);
+
+        // fast 基于字段并使用位集合，局部变量仍按实例化过的类型解析
+        Set<String> fast = build(classesDir, CallGraphAlgorithm.SPARK, SparkProfile.builtin(SparkProfile.FAST));
+        assertTrue(fast.contains("measure -> Shapes$Square.area"), fast.toString());
+        assertFalse(fast.contains("measure -> Shapes$Unused.area"), fast.toString());
+
+        // 1 MB的堆内存预算在第一次检查时就会超出
+        load(classesDir);
+        SparkProfile tight = SparkProfile.builtin(SparkProfile.DEFAULT).withBudget(0, 1);
+        assertThrows(BudgetedSparkTransformer.BudgetExceededException.class,
+                () -> CallGraphGenerator.buildCallGraph(CallGraphAlgorithm.SPARK, tight));
+        Set<String> fallback = edges(CallGraphGenerator.fallBackToCha());
+        assertTrue(fallback.contains("measure -> Shapes$Unused.area"), fallback.toString());
+    }
+}
@@ -0,0 +1,92 @@
+package edu.thu.soot;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallGraphComponentsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CsrCallGraphReader open(int nodeCount, int[][] edges) throws IOException {
+        CsrCallGraphWriter writer = new CsrCallGraphWriter();
+        for (int node = 0; node < nodeCount; node++) {
+            writer.addNode("<a.C" + node + ": void m()>", -1, true);
+        }
+        for (int[] edge : edges) {
+            writer.addEdge(edge[0], edge[1], "STATIC");
+        }
+        Path file = tempDir.resolve("call_graph.csr");
+        writer.write(file);
+        return CsrCallGraphReader.open(file);
+    }
+
+    @Test
+    void testRecursionAndBottomUpOrder() throws IOException {
+        // 0 → 1 ⇄ 2 → 3，3 调用自身，0 → 4
+        int[][] edges = {{0, 1}, {1, 2}, {2, 1}, {2, 3}, {3, 3}, {0, 4}, {1, 3}};
+        try (CsrCallGraphReader graph = open(5, edges)) {
+            CallGraphComponents components = CallGraphComponents.compute(graph);
+
+            assertEquals(4, components.getComponentCount());
+            int cycle = components.getComponent(1);
+            assertEquals(cycle, components.getComponent(2));
+            assertEquals(2, components.getMembers(cycle).length);
+            assertTrue(components.isRecursive(cycle));
+            assertTrue(components.isRecursive(components.getComponent(3)));
+            assertFalse(components.isRecursive(components.getComponent(0)));
+            assertFalse(components.isRecursive(components.getComponent(4)));
+            assertEquals(2, components.getRecursiveComponentCount());
+
+            // 分量1→3的两条边只保留一条
+            assertEquals(1, components.getSuccessorCount(cycle));
+            assertEquals(components.getComponent(3), components.getSuccessor(cycle, 0));
+
+            // 自底向上的顺序中，被调用者总在调用者之前
+            int[] position = new int[components.getComponentCount()];
+            int[] order = components.bottomUpOrder();
+            for (int i = 0; i < order.length; i++) {
+                position[order[i]] = i;
+            }
+            for (int[] edge : edges) {
+                assertTrue(position[components.getComponent(edge[1])] <= position[components.getComponent(edge[0])]);
+            }
+            assertEquals(components.getComponent(0), components.topologicalOrder()[0]);
+
+            Path file = tempDir.resolve("call_graph_scc.json");
+            components.writeJson(file, true);
+            JsonObject json = JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8)).getAsJsonObject();
+            assertEquals(4, json.get("componentCount").getAsInt());
+            assertEquals(2, json.get("recursiveComponentCount").getAsInt());
+            JsonArray cycleMethods = json.getAsJsonArray("components").get(cycle).getAsJsonObject().getAsJsonArray("methods");
+            assertEquals(2, cycleMethods.size());
+        }
+    }
+
+    @Test
+    void testDeepChainDoesNotOverflow() throws IOException {
+        // 20万层的调用链，中间的方法调用回开头形成一个大环，其后的方法不在环上
+        int nodeCount = 200_000;
+        int[][] edges = new int[nodeCount][];
+        for (int node = 0; node < nodeCount - 1; node++) {
+            edges[node] = new int[]{node, node + 1};
+        }
+        edges[nodeCount - 1] = new int[]{nodeCount / 2, 0};
+
+        try (CsrCallGraphReader graph = open(nodeCount, edges)) {
+            CallGraphComponents components = CallGraphComponents.compute(graph);
+            assertEquals(nodeCount / 2 + 1, components.getMembers(components.getComponent(0)).length);
+            assertEquals(nodeCount / 2, components.getComponentCount());
+        }
+    }
+}
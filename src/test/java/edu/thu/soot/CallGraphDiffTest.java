@@ -0,0 +1,114 @@
+package edu.thu.soot;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallGraphDiffTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static String signature(int node) {
+        return "<a.C" + node + ": void m()>";
+    }
+
+    private Path writeCsr(String name, int nodeCount, int[][] edges, String kind) throws IOException {
+        CsrCallGraphWriter writer = new CsrCallGraphWriter();
+        for (int node = 0; node < nodeCount; node++) {
+            writer.addNode(signature(node), -1, true);
+        }
+        for (int[] edge : edges) {
+            writer.addEdge(edge[0], edge[1], kind);
+        }
+        Path file = tempDir.resolve(name);
+        writer.write(file);
+        return file;
+    }
+
+    private static Set<String> changes(String output) {
+        Set<String> changes = new HashSet<>();
+        for (String line : output.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            JsonObject change = JsonParser.parseString(line).getAsJsonObject();
+            String text = change.get("change").getAsString() + " ";
+            if (change.has("node")) {
+                text += change.get("node").getAsString();
+            } else {
+                JsonObject edge = change.getAsJsonObject("edge");
+                text += edge.get("source").getAsString() + " -> " + edge.get("target").getAsString();
+                if (edge.has("type")) {
+                    text += " " + edge.get("type").getAsString();
+                }
+            }
+            assertTrue(changes.add(text), "重复的差异：" + text);
+        }
+        return changes;
+    }
+
+    @Test
+    void testDiffWithSpilledChunks() throws IOException {
+        Path oldGraph = writeCsr("old.csr", 5, new int[][]{{0, 1}, {1, 2}, {2, 3}, {0, 4}}, "VIRTUAL");
+        Path newGraph = writeCsr("new.csr", 6, new int[][]{{0, 1}, {1, 2}, {2, 5}, {0, 4}, {4, 3}}, "VIRTUAL");
+
+        Set<String> expected = new HashSet<>(Arrays.asList(
+                "added " + signature(5),
+                "removed " + signature(2) + " -> " + signature(3) + " VIRTUAL",
+                "added " + signature(2) + " -> " + signature(5) + " VIRTUAL",
+                "added " + signature(4) + " -> " + signature(3) + " VIRTUAL"));
+
+        // 每块只有2条记录时需要多路归并，结果应与全部在内存中排序时一致
+        for (int maxRecords : new int[]{2, 3, 1000}) {
+            StringWriter out = new StringWriter();
+            CallGraphDiff.Summary summary = new CallGraphDiff(maxRecords, false).diff(oldGraph, newGraph, out);
+            assertEquals(expected, changes(out.toString()), "maxRecords=" + maxRecords);
+            assertEquals(1, summary.getAddedNodes());
+            assertEquals(0, summary.getRemovedNodes());
+            assertEquals(2, summary.getAddedEdges());
+            assertEquals(1, summary.getRemovedEdges());
+        }
+
+        StringWriter same = new StringWriter();
+        CallGraphDiff.Summary summary = new CallGraphDiff(2, false).diff(newGraph, newGraph, same);
+        assertEquals("", same.toString());
+        assertEquals(0, summary.getAddedNodes() + summary.getAddedEdges());
+    }
+
+    @Test
+    void testDiffAnalyzerFormatIgnoringKind() throws IOException {
+        Path csr = writeCsr("call_graph.csr", 3, new int[][]{{0, 1}, {0, 2}}, "STATIC");
+        // SootCodeAnalyzer -c 的格式没有调用类型，被调用者会重复出现
+        Path analyzer = tempDir.resolve("call_graph.json");
+        Files.writeString(analyzer, "{\n" +
+                "  \"" + signature(0) + "\": [\"" + signature(1) + "\"],\n" +
+                "  \"" + signature(2) + "\": [\"" + signature(1) + "\"]\n" +
+                "}\n", StandardCharsets.UTF_8);
+
+        StringWriter out = new StringWriter();
+        new CallGraphDiff(2, true).diff(csr, analyzer, out);
+        assertEquals(new HashSet<>(Arrays.asList(
+                "removed " + signature(0) + " -> " + signature(2),
+                "added " + signature(2) + " -> " + signature(1))), changes(out.toString()));
+
+        // 不忽略调用类型时，所有边的类型都不同
+        StringWriter withKind = new StringWriter();
+        CallGraphDiff.Summary summary = new CallGraphDiff(1000, false).diff(csr, analyzer, withKind);
+        assertEquals(2, summary.getRemovedEdges());
+        assertEquals(2, summary.getAddedEdges());
+        assertEquals(0, summary.getAddedNodes() + summary.getRemovedNodes());
+    }
+}
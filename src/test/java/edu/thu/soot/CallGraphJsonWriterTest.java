@@ -0,0 +1,187 @@
+package edu.thu.soot;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import soot.*;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.tagkit.SourceFileTag;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallGraphJsonWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CallGraph callGraph;
+    private final Map<SootMethod, Integer> lineNumbers = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        G.reset();
+
+        SootClass main = addClass("com.example.Main", "Main.java");
+        main.setApplicationClass();
+        SootClass service = addClass("com.example.Service", "Service.java");
+        service.setApplicationClass();
+        SootClass printStream = addClass("java.io.PrintStream", null);
+        printStream.setLibraryClass();
+        SootClass object = addClass("java.lang.Object", null);
+        object.setLibraryClass();
+
+        SootMethod mainMethod = addMethod(main, "main", VoidType.v(), Modifier.PUBLIC | Modifier.STATIC,
+                ArrayType.v(RefType.v("java.lang.String"), 1));
+        SootMethod init = addMethod(service, "<init>", VoidType.v(), Modifier.PUBLIC);
+        SootMethod process = addMethod(service, "process", IntType.v(), Modifier.PUBLIC,
+                RefType.v("java.lang.String"), IntType.v());
+        SootMethod println = addMethod(printStream, "println", VoidType.v(), Modifier.PUBLIC, RefType.v("java.lang.String"));
+        SootMethod objectInit = addMethod(object, "<init>", VoidType.v(), Modifier.PUBLIC);
+        SootMethod toString = addMethod(object, "toString", RefType.v("java.lang.String"), Modifier.PUBLIC);
+
+        lineNumbers.put(mainMethod, 3);
+        lineNumbers.put(init, 8);
+        lineNumbers.put(process, 12);
+
+        callGraph = new CallGraph();
+        callGraph.addEdge(new Edge(mainMethod, null, init, Kind.SPECIAL));
+        callGraph.addEdge(new Edge(mainMethod, null, process, Kind.VIRTUAL));
+        callGraph.addEdge(new Edge(init, null, objectInit, Kind.SPECIAL));
+        callGraph.addEdge(new Edge(process, null, println, Kind.VIRTUAL));
+        callGraph.addEdge(new Edge(println, null, toString, Kind.VIRTUAL)); // 库方法之间的调用会被跳过
+        callGraph.addEdge(new Edge(mainMethod, null, println, Kind.VIRTUAL));
+    }
+
+    private static SootClass addClass(String name, String sourceFile) {
+        SootClass sootClass = new SootClass(name, Modifier.PUBLIC);
+        if (sourceFile != null) {
+            sootClass.addTag(new SourceFileTag(sourceFile));
+        }
+        Scene.v().addClass(sootClass);
+        return sootClass;
+    }
+
+    private static SootMethod addMethod(SootClass sootClass, String name, Type returnType, int modifiers, Type... parameters) {
+        SootMethod method = Scene.v().makeSootMethod(name, Arrays.asList(parameters), returnType, modifiers);
+        sootClass.addMethod(method);
+        return method;
+    }
+
+    /**
+     * 原先基于 JsonObject 树和 Gson 美化输出的实现
+     */
+    private String treeJson() {
+        JsonArray nodes = new JsonArray();
+        JsonArray edges = new JsonArray();
+        Set<SootMethod> added = new HashSet<>();
+        for (Edge edge : callGraph) {
+            if (CallGraphGenerator.isLibraryMethod(edge.src()) && CallGraphGenerator.isLibraryMethod(edge.tgt())) {
+                continue;
+            }
+            for (SootMethod method : List.of(edge.src(), edge.tgt())) {
+                if (added.add(method)) {
+                    JsonObject node = new JsonObject();
+                    node.addProperty("id", method.getSignature());
+                    node.addProperty("name", method.getName());
+                    node.addProperty("class", method.getDeclaringClass().getName());
+                    node.addProperty("returnType", method.getReturnType().toString());
+                    node.addProperty("modifier", Modifier.toString(method.getModifiers()));
+                    node.addProperty("isApplicationMethod", !CallGraphGenerator.isLibraryMethod(method));
+                    SourceFileTag tag = (SourceFileTag) method.getDeclaringClass().getTag("SourceFileTag");
+                    if (tag != null) {
+                        node.addProperty("sourceFile", tag.getSourceFile());
+                    }
+                    if (lineNumbers.containsKey(method)) {
+                        node.addProperty("lineNumber", lineNumbers.get(method));
+                    }
+                    JsonArray parameters = new JsonArray();
+                    for (Type type : method.getParameterTypes()) {
+                        JsonObject parameter = new JsonObject();
+                        parameter.addProperty("type", type.toString());
+                        parameters.add(parameter);
+                    }
+                    node.add("parameters", parameters);
+                    nodes.add(node);
+                }
+            }
+            JsonObject call = new JsonObject();
+            call.addProperty("source", edge.src().getSignature());
+            call.addProperty("target", edge.tgt().getSignature());
+            call.addProperty("type", edge.kind().toString());
+            if (lineNumbers.containsKey(edge.src())) {
+                call.addProperty("sourceLineNumber", lineNumbers.get(edge.src()));
+            }
+            if (lineNumbers.containsKey(edge.tgt())) {
+                call.addProperty("targetLineNumber", lineNumbers.get(edge.tgt()));
+            }
+            edges.add(call);
+        }
+        JsonObject root = new JsonObject();
+        root.add("nodes", nodes);
+        root.add("edges", edges);
+        return new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(root);
+    }
+
+    @Test
+    void testMatchesTreeOutput() throws IOException {
+        CallGraphJsonWriter writer = new CallGraphJsonWriter(lineNumbers, false);
+        Path file = tempDir.resolve("call_graph.json");
+        writer.write(callGraph, file);
+
+        assertEquals(treeJson(), Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals(5, writer.getMethodCount());
+        assertEquals(5, writer.getEdgeCount());
+    }
+
+    @Test
+    void testGzipNdjson() throws IOException {
+        CallGraphJsonWriter writer = new CallGraphJsonWriter(lineNumbers, true);
+        Path file = tempDir.resolve("call_graph.ndjson.gz");
+        writer.writeLines(callGraph, file);
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+
+        // 每行一条记录，节点出现在引用它的边之前，内容与JSON格式一致
+        JsonObject expected = JsonParser.parseString(treeJson()).getAsJsonObject();
+        JsonArray nodes = new JsonArray();
+        JsonArray edges = new JsonArray();
+        Set<String> seen = new HashSet<>();
+        for (String line : lines) {
+            JsonObject record = JsonParser.parseString(line).getAsJsonObject();
+            assertEquals(1, record.size(), line);
+            if (record.has("node")) {
+                nodes.add(record.get("node"));
+                seen.add(record.getAsJsonObject("node").get("id").getAsString());
+            } else {
+                JsonObject edge = record.getAsJsonObject("edge");
+                assertTrue(seen.contains(edge.get("source").getAsString()));
+                assertTrue(seen.contains(edge.get("target").getAsString()));
+                edges.add(edge);
+            }
+        }
+        assertEquals(expected.get("nodes"), nodes);
+        assertEquals(expected.get("edges"), edges);
+        assertEquals(10, lines.size());
+    }
+}
@@ -0,0 +1,123 @@
+package edu.thu.soot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallGraphQueryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static String signature(int node) {
+        return "<a.C" + node + ": void m()>";
+    }
+
+    private Path writeGraph(int nodeCount, int[][] edges) throws IOException {
+        CsrCallGraphWriter writer = new CsrCallGraphWriter();
+        for (int node = 0; node < nodeCount; node++) {
+            writer.addNode(signature(node), -1, true);
+        }
+        for (int[] edge : edges) {
+            writer.addEdge(edge[0], edge[1], "VIRTUAL");
+        }
+        Path file = tempDir.resolve("call_graph.csr");
+        writer.write(file);
+        return file;
+    }
+
+    @Test
+    void testReachabilityAndWitnessPath() throws IOException {
+        // 0 → 1 → 2 → 1（环），2 → 3，0 → 4 → 3，5 单独
+        Path file = writeGraph(6, new int[][]{{0, 1}, {1, 2}, {2, 1}, {2, 3}, {0, 4}, {4, 3}});
+
+        try (CallGraphQuery query = CallGraphQuery.open(file)) {
+            assertEquals(bits(0, 1, 2, 3, 4), query.reachableFrom(0));
+            assertEquals(bits(1, 2, 3), query.reachableFrom(2));
+            assertEquals(bits(0, 1, 2, 3, 4, 5), query.reachableFrom(0, 5));
+            assertEquals(bits(0, 1, 2, 3, 4), query.reachingTo(3));
+
+            assertTrue(query.canReach(0, 3));
+            assertFalse(query.canReach(3, 0));
+            assertFalse(query.canReach(new int[]{3, 5}, 1));
+
+            // 最短调用链经过4而不是1、2
+            assertArrayEquals(new int[]{0, 4, 3}, query.shortestPath(new int[]{0}, 3));
+            assertArrayEquals(new int[]{2, 3}, query.shortestPath(new int[]{0, 2}, 3));
+            assertArrayEquals(new int[0], query.shortestPath(new int[]{5}, 3));
+
+            query.buildIndex(3);
+            assertEquals(5, query.getComponents().getComponentCount());
+            assertEquals(query.getComponents().getComponent(1), query.getComponents().getComponent(2));
+            assertTrue(query.canReach(2, 1));
+            assertTrue(query.canReach(0, 3));
+            assertFalse(query.canReach(3, 4));
+            assertFalse(query.canReach(5, 0));
+        }
+    }
+
+    @Test
+    void testIndexMatchesSearch() throws IOException {
+        int nodeCount = 300;
+        Random random = new Random(7);
+        int[][] edges = new int[700][];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = new int[]{random.nextInt(nodeCount), random.nextInt(nodeCount)};
+        }
+        Path file = writeGraph(nodeCount, edges);
+
+        try (CallGraphQuery query = CallGraphQuery.open(file)) {
+            BitSet[] expected = new BitSet[nodeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                expected[node] = query.reachableFrom(node);
+            }
+
+            query.buildIndex(2);
+            for (int source = 0; source < nodeCount; source++) {
+                for (int target = 0; target < nodeCount; target++) {
+                    assertEquals(expected[source].get(target), query.canReach(source, target), source + " → " + target);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testOpenJson() throws IOException {
+        Path json = tempDir.resolve("call_graph.json");
+        Files.writeString(json, "{\n" +
+                "  \"nodes\": [\n" +
+                "    {\"id\": \"" + signature(0) + "\", \"isApplicationMethod\": true, \"lineNumber\": 3, \"parameters\": []},\n" +
+                "    {\"id\": \"" + signature(1) + "\", \"isApplicationMethod\": true, \"parameters\": []},\n" +
+                "    {\"id\": \"<java.io.PrintStream: void println()>\", \"isApplicationMethod\": false, \"parameters\": []}\n" +
+                "  ],\n" +
+                "  \"edges\": [\n" +
+                "    {\"source\": \"" + signature(0) + "\", \"target\": \"" + signature(1) + "\", \"type\": \"STATIC\"},\n" +
+                "    {\"source\": \"" + signature(1) + "\", \"target\": \"<java.io.PrintStream: void println()>\", \"type\": \"VIRTUAL\"}\n" +
+                "  ]\n" +
+                "}\n", StandardCharsets.UTF_8);
+
+        try (CallGraphQuery query = CallGraphQuery.open(json)) {
+            int main = query.findNode(signature(0));
+            int println = query.findNode("<java.io.PrintStream: void println()>");
+            assertEquals(3, query.getGraph().getLineNumber(main));
+            assertFalse(query.getGraph().isApplicationMethod(println));
+            assertEquals(3, query.shortestPath(new int[]{main}, println).length);
+        }
+    }
+
+    private static BitSet bits(int... nodes) {
+        BitSet bits = new BitSet();
+        for (int node : nodes) {
+            bits.set(node);
+        }
+        return bits;
+    }
+}
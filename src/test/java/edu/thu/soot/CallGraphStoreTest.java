@@ -0,0 +1,86 @@
+package edu.thu.soot;
+
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallGraphStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testOutputMatchesMapBasedCallGraph() throws IOException {
+        // 与原先的 HashMap<String, List<String>> + contains 去重 + Gson 美化输出逐字节比较
+        Map<String, List<String>> expected = new HashMap<>();
+        CallGraphStore store = new CallGraphStore();
+
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            String caller = "<com.example.C" + random.nextInt(300) + ": void m" + random.nextInt(5) + "()>";
+            String callee = "<com.example.C" + random.nextInt(300) + ": int \"callee\"" + random.nextInt(40) + "(java.lang.String)>";
+
+            if (!expected.containsKey(caller)) {
+                expected.put(caller, new ArrayList<>());
+            }
+            if (!expected.get(caller).contains(callee)) {
+                expected.get(caller).add(callee);
+            }
+            store.addCall(caller, callee);
+        }
+
+        Path file = tempDir.resolve("call_graph.json");
+        store.writeJson(file);
+
+        String json = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(expected);
+        assertEquals(json, Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals(expected.size(), store.callerCount());
+        assertEquals(expected.values().stream().mapToInt(List::size).sum(), store.callCount());
+    }
+
+    @Test
+    void testReverseRemoveAndRoundTrip() throws IOException {
+        CallGraphStore store = new CallGraphStore();
+        store.addCall("a", "b");
+        store.addCall("a", "c");
+        store.addCall("a", "b");
+        store.addCall("b", "c");
+        store.addCall("d", "c");
+
+        assertEquals(List.of("b", "c"), store.getCallees("a"));
+        assertEquals(4, store.callCount());
+        assertTrue(store.getCallees("c").isEmpty());
+        assertTrue(store.getCallees("missing").isEmpty());
+
+        assertEquals(List.of("a", "b", "d"), store.reverse().getCallees("c"));
+
+        store.removeCallers(caller -> caller.equals("a"));
+        assertTrue(store.getCallees("a").isEmpty());
+        assertEquals(2, store.callerCount());
+        assertEquals(2, store.callCount());
+
+        // 删除后重新添加同一条边不会被误判为重复
+        store.addCall("a", "b");
+        assertEquals(List.of("b"), store.getCallees("a"));
+
+        Path file = tempDir.resolve("call_graph.json");
+        store.writeJson(file);
+        CallGraphStore loaded = new CallGraphStore();
+        loaded.readJson(file);
+        assertEquals(store.callCount(), loaded.callCount());
+        assertEquals(List.of("c"), loaded.getCallees("d"));
+        assertEquals(List.of("b"), loaded.getCallees("a"));
+    }
+}
@@ -0,0 +1,81 @@
+package edu.thu.soot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsrCallGraphReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        CsrCallGraphWriter writer = new CsrCallGraphWriter();
+        int main = writer.addNode("<a.Main: void main(java.lang.String[])>", 3, true);
+        int run = writer.addNode("<a.Main: void run()>", 7, true);
+        int println = writer.addNode("<java.io.PrintStream: void println(java.lang.String)>", -1, false);
+        int helper = writer.addNode("<a.Helper: int 计算(int)>", 12, true);
+
+        writer.addEdge(main, run, "STATIC");
+        writer.addEdge(main, println, "VIRTUAL");
+        writer.addEdge(run, println, "VIRTUAL");
+        writer.addEdge(run, helper, "SPECIAL");
+
+        Path file = tempDir.resolve("call_graph.csr");
+        writer.write(file);
+
+        try (CsrCallGraphReader reader = CsrCallGraphReader.open(file)) {
+            assertEquals(4, reader.getNodeCount());
+            assertEquals(4, reader.getEdgeCount());
+            assertEquals(3, reader.getKindCount());
+
+            assertEquals(helper, reader.findNode("<a.Helper: int 计算(int)>"));
+            assertEquals(println, reader.findNode("<java.io.PrintStream: void println(java.lang.String)>"));
+            assertEquals(-1, reader.findNode("<a.Main: void missing()>"));
+
+            assertEquals("<a.Main: void run()>", reader.getSignature(run));
+            assertEquals(7, reader.getLineNumber(run));
+            assertEquals(-1, reader.getLineNumber(println));
+            assertTrue(reader.isApplicationMethod(main));
+            assertFalse(reader.isApplicationMethod(println));
+
+            // 出边保持添加顺序
+            assertEquals(2, reader.getOutDegree(run));
+            assertEquals(println, reader.getSuccessor(run, 0));
+            assertEquals("VIRTUAL", reader.getKindName(reader.getSuccessorKind(run, 0)));
+            assertEquals(helper, reader.getSuccessor(run, 1));
+            assertEquals("SPECIAL", reader.getKindName(reader.getSuccessorKind(run, 1)));
+            assertEquals(0, reader.getOutDegree(println));
+
+            assertEquals(2, reader.getInDegree(println));
+            assertEquals(main, reader.getPredecessor(println, 0));
+            assertEquals(run, reader.getPredecessor(println, 1));
+            assertEquals(0, reader.getInDegree(main));
+
+            List<String> callers = new ArrayList<>();
+            reader.forEachPredecessor(println, (node, kind) ->
+                    callers.add(reader.getSignature(node) + " " + reader.getKindName(kind)));
+            assertEquals(List.of("<a.Main: void main(java.lang.String[])> VIRTUAL", "<a.Main: void run()> VIRTUAL"), callers);
+
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.getSuccessor(main, 2));
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.getOutDegree(4));
+        }
+    }
+
+    @Test
+    void testLayoutRejectsOversizedGraph() throws IOException {
+        int[] offsets = CsrCallGraphWriter.layout(3, 2, 4, 100);
+        assertEquals(CsrCallGraphWriter.HEADER_SIZE, offsets[0]);
+
+        // 边数组或字符串表超过 Integer.MAX_VALUE 字节时不能写出无法映射的文件
+        assertThrows(IOException.class, () -> CsrCallGraphWriter.layout(1000, 300_000_000, 1000, 100));
+        assertThrows(IOException.class, () -> CsrCallGraphWriter.layout(1000, 1000, 1000, Integer.MAX_VALUE));
+    }
+}
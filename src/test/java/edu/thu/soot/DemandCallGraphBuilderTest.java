@@ -0,0 +1,74 @@
+package edu.thu.soot;
+
+import edu.thu.soot.CallGraphGenerator.DemandResolution;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import soot.SootMethod;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DemandCallGraphBuilderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<SootMethod> loadEntryPoints() throws IOException {
+        TestProjects.loadWholeProgram(TestProjects.compileShapes(tempDir));
+        return CallGraphGenerator.resolveEntryPoints(List.of(TestProjects.SHAPES_ENTRY_POINT));
+    }
+
+    private static Set<String> edges(CallGraph callGraph) {
+        Set<String> edges = new HashSet<>();
+        for (Edge edge : callGraph) {
+            edges.add(edge.src().getDeclaringClass().getShortJavaStyleName() + "." + edge.src().getName()
+                    + " -> " + edge.tgt().getDeclaringClass().getShortJavaStyleName() + "." + edge.tgt().getName());
+        }
+        return edges;
+    }
+
+    @Test
+    void testChaAndRta() throws IOException {
+        List<SootMethod> entryPoints = loadEntryPoints();
+        assertEquals(1, entryPoints.size());
+
+        Set<String> cha = edges(new DemandCallGraphBuilder(DemandResolution.CHA, -1).build(entryPoints));
+        // CHA连接所有实现类，包括未实例化的Unused
+        assertTrue(cha.contains("Shapes.main -> Shapes$Square.area"), cha.toString());
+        assertTrue(cha.contains("Shapes.main -> Shapes$Circle.area"));
+        assertTrue(cha.contains("Shapes.main -> Shapes$Unused.area"));
+        assertTrue(cha.contains("Shapes$Square.area -> Shapes$Square.helper"));
+        // lambda经由库接口Runnable调用
+        assertTrue(cha.contains("Shapes.lambda$main$0 -> Shapes.level1"), cha.toString());
+        assertTrue(cha.contains("Shapes.level2 -> Shapes.level3"));
+        // 不从入口点可达的方法不出现
+        assertTrue(cha.stream().noneMatch(edge -> edge.startsWith("Shapes.other")));
+
+        Set<String> rta = edges(new DemandCallGraphBuilder(DemandResolution.RTA, -1).build(entryPoints));
+        assertTrue(rta.contains("Shapes.main -> Shapes$Square.area"));
+        assertTrue(rta.contains("Shapes.main -> Shapes$Circle.area"));
+        assertFalse(rta.contains("Shapes.main -> Shapes$Unused.area"));
+        assertTrue(rta.contains("Shapes.level2 -> Shapes.level3"));
+    }
+
+    @Test
+    void testMaxDepth() throws IOException {
+        List<SootMethod> entryPoints = loadEntryPoints();
+
+        // main(0) → lambda.run(1) → lambda$main$0(2) → level1(3)，深度3的方法不再展开
+        Set<String> limited = edges(new DemandCallGraphBuilder(DemandResolution.CHA, 3).build(entryPoints));
+        assertTrue(limited.contains("Shapes.lambda$main$0 -> Shapes.level1"), limited.toString());
+        assertFalse(limited.contains("Shapes.level1 -> Shapes.level2"));
+
+        DemandCallGraphBuilder entryOnly = new DemandCallGraphBuilder(DemandResolution.CHA, 0);
+        assertEquals(0, entryOnly.build(entryPoints).size());
+        assertEquals(1, entryOnly.getReachableMethodCount());
+    }
+}
@@ -0,0 +1,56 @@
+package edu.thu.soot;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import edu.thu.soot.SootCodeAnalyzer.IndexEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexJsonWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Map<String, List<IndexEntry>> sampleIndex() {
+        Map<String, List<IndexEntry>> index = new HashMap<>();
+        List<IndexEntry> process = new ArrayList<>();
+        process.add(new IndexEntry("com.example.Service", "process", "<com.example.Service: void process(java.lang.String)>", "com.example.Service.java", 12));
+        process.add(new IndexEntry("com.example.Service", "process", "<com.example.Service: void process(byte[])>", null, -1));
+        index.put("process", process);
+        index.put("<init>", List.of(new IndexEntry("com.example.Service$Inner", "<init>", "<com.example.Service$Inner: void <init>()>", "com.example.Service$Inner.java", 3)));
+        index.put("empty", new ArrayList<>());
+        return index;
+    }
+
+    @Test
+    void testPrettyOutputMatchesGson() throws IOException {
+        Map<String, List<IndexEntry>> index = sampleIndex();
+        Path file = tempDir.resolve("index.json");
+
+        new IndexJsonWriter(true).write(index, file);
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+        assertEquals(gson.toJson(index), Files.readString(file));
+    }
+
+    @Test
+    void testCompactOutputMatchesGson() throws IOException {
+        Map<String, List<IndexEntry>> index = sampleIndex();
+        Path file = tempDir.resolve("index.json");
+
+        new IndexJsonWriter(false).write(index, file);
+
+        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        assertEquals(gson.toJson(index), Files.readString(file));
+    }
+}
@@ -0,0 +1,84 @@
+package edu.thu.soot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MethodLineNumbersTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReadLineNumberTableAndReuseCache() throws IOException {
+        Path sourceDir = TestProjects.writeSampleSources(tempDir);
+        Path classesDir = TestProjects.compile(sourceDir, tempDir.resolve("classes"));
+        Path cacheFile = tempDir.resolve("output").resolve(CallGraphGenerator.LINE_NUMBER_CACHE_FILE);
+
+        MethodLineNumbers lineNumbers = MethodLineNumbers.load(classesDir.toString(), cacheFile);
+        assertEquals(4, lineNumbers.getParsedClassCount());
+        assertEquals(0, lineNumbers.getReusedClassCount());
+
+        // 重载方法按描述符区分，行号为方法体第一条语句所在行
+        assertEquals(8, lineNumbers.get("com.example.app.Service", "process(Ljava/lang/String;)V"));
+        assertEquals(13, lineNumbers.get("com.example.app.Service", "process([B)V"));
+        assertEquals(17, lineNumbers.get("com.example.app.Service", "count()I"));
+        assertEquals(5, lineNumbers.get("com.example.app.Main", "main([Ljava/lang/String;)V"));
+        assertEquals(MethodLineNumbers.UNKNOWN, lineNumbers.get("com.example.app.Service", "missing()V"));
+        assertEquals(MethodLineNumbers.UNKNOWN, lineNumbers.get("com.example.app.Missing", "run()V"));
+        assertEquals("count()I", MethodLineNumbers.methodKey("<com.example.app.Service: count()I>"));
+        lineNumbers.save(cacheFile);
+
+        MethodLineNumbers cached = MethodLineNumbers.load(classesDir.toString(), cacheFile);
+        assertEquals(0, cached.getParsedClassCount());
+        assertEquals(4, cached.getReusedClassCount());
+        assertEquals(8, cached.get("com.example.app.Service", "process(Ljava/lang/String;)V"));
+
+        // 修改Service后只重新解析Service及其内部类
+        Path service = sourceDir.resolve("com/example/app/Service.java");
+        Files.writeString(service, "// changed\n" + Files.readString(service));
+        TestProjects.compile(sourceDir, classesDir);
+
+        MethodLineNumbers changed = MethodLineNumbers.load(classesDir.toString(), cacheFile);
+        assertEquals(2, changed.getParsedClassCount());
+        assertEquals(2, changed.getReusedClassCount());
+        assertEquals(9, changed.get("com.example.app.Service", "process(Ljava/lang/String;)V"));
+    }
+
+    @Test
+    void testParallelLoadMatchesSerial() throws IOException {
+        Path classesDir = TestProjects.compileSample(tempDir);
+        Path serialFile = tempDir.resolve("serial.json");
+        Path parallelFile = tempDir.resolve("parallel.json");
+
+        MethodLineNumbers.load(classesDir.toString(), null, 1).save(serialFile);
+        MethodLineNumbers parallel = MethodLineNumbers.load(classesDir.toString(), null, 4);
+        parallel.save(parallelFile);
+
+        assertEquals(4, parallel.getParsedClassCount());
+        assertEquals(Files.readString(serialFile), Files.readString(parallelFile));
+    }
+
+    @Test
+    void testClassesWithoutLineNumbers() throws IOException {
+        Path sourceDir = TestProjects.writeSampleSources(tempDir);
+        Path classesDir = Files.createDirectories(tempDir.resolve("classes"));
+        int result = ToolProvider.getSystemJavaCompiler().run(null, null, null, "-g:none", "-d", classesDir.toString(),
+                sourceDir.resolve("com/example/app/Repository.java").toString());
+        assertEquals(0, result);
+
+        MethodLineNumbers lineNumbers = MethodLineNumbers.load(classesDir.toString(), null);
+        assertEquals(MethodLineNumbers.NEEDS_SOURCE, lineNumbers.get("com.example.app.Repository", "findAll()Ljava/util/List;"));
+
+        lineNumbers.put("com.example.app.Repository", "findAll()Ljava/util/List;", 20);
+        assertEquals(20, lineNumbers.get("com.example.app.Repository", "findAll()Ljava/util/List;"));
+        lineNumbers.put("com.example.app.Repository", "save(Ljava/lang/String;)V", -1);
+        assertEquals(MethodLineNumbers.UNKNOWN, lineNumbers.get("com.example.app.Repository", "save(Ljava/lang/String;)V"));
+    }
+}
@@ -0,0 +1,318 @@
+package edu.thu.soot;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SootCodeAnalyzerTest {
+
+    private static final List<String> INDEX_FILES = List.of(
+            "index/method_definitions.json",
+            "index/method_invocations.json",
+            "index/field_definitions.json",
+            "index/field_references.json",
+            "call_graph.json");
+
+    @TempDir
+    Path tempDir;
+
+    private static void runIndex(Path classesDir, Path outputDir, int threads) {
+        runIndex(classesDir, outputDir, threads, false);
+    }
+
+    private static void runIndex(Path classesDir, Path outputDir, int threads, boolean incremental) {
+        runIndex(classesDir, outputDir, threads, incremental, true);
+    }
+
+    private static void runIndex(Path classesDir, Path outputDir, int threads, boolean incremental, boolean callGraph) {
+        SootCodeAnalyzer analyzer = new SootCodeAnalyzer(classesDir.toString(), outputDir.toString());
+        analyzer.setGenerateIndex(true);
+        analyzer.setGenerateCallGraph(callGraph);
+        analyzer.setThreads(threads);
+        analyzer.setIncremental(incremental);
+        analyzer.analyze();
+    }
+
+    /**
+     * 将索引或调用图文件规范化为与顺序无关的形式：键排序，每个键下的元素排序
+     */
+    private static Map<String, List<String>> normalize(Path file) throws IOException {
+        Gson gson = new Gson();
+        Map<String, List<String>> result = new TreeMap<>();
+        for (Map.Entry<String, JsonElement> entry : JsonParser.parseString(Files.readString(file)).getAsJsonObject().entrySet()) {
+            List<String> values = new ArrayList<>();
+            entry.getValue().getAsJsonArray().forEach(value -> values.add(gson.toJson(value)));
+            Collections.sort(values);
+            result.put(entry.getKey(), values);
+        }
+        return result;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (var paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void testParallelIndexMatchesSequential() throws IOException {
+        Path classesDir = TestProjects.compileSample(tempDir);
+        Path sequentialOutput = tempDir.resolve("sequential");
+        Path parallelOutput = tempDir.resolve("parallel");
+
+        runIndex(classesDir, sequentialOutput, 1);
+        runIndex(classesDir, parallelOutput, 4);
+
+        for (String file : INDEX_FILES) {
+            byte[] expected = Files.readAllBytes(sequentialOutput.resolve(file));
+            byte[] actual = Files.readAllBytes(parallelOutput.resolve(file));
+            assertArrayEquals(expected, actual, "并行输出与串行输出不一致：" + file);
+        }
+
+        String definitions = Files.readString(sequentialOutput.resolve("index/method_definitions.json"));
+        assertTrue(definitions.contains("<com.example.app.Service: void process(java.lang.String)>"));
+        assertTrue(definitions.contains("com.example.app.Service$Listener.java"));
+    }
+
+    @Test
+    void testPointsToReferencesAllocationSites() throws IOException {
+        Path classesDir = TestProjects.compileSample(tempDir);
+        Path outputDir = tempDir.resolve("output");
+        SootCodeAnalyzer analyzer = new SootCodeAnalyzer(classesDir.toString(), outputDir.toString());
+        analyzer.setGeneratePointsToAnalysis(true);
+        analyzer.setEntryPoints(List.of("com.example.app.Main:main"));
+        // 按需细化只作用于查询，全量提取的结果不受影响
+        analyzer.setDemandPointsTo(true);
+        analyzer.analyze();
+
+        JsonObject results = JsonParser.parseString(Files.readString(outputDir.resolve("points_to_analysis.json")))
+                .getAsJsonObject();
+        JsonArray allocSites = results.getAsJsonArray("allocSites");
+        JsonObject fields = results.getAsJsonObject("instanceFields");
+        assertEquals(List.of("Object com.example.app.Repository"), resolveSites(allocSites,
+                fields.getAsJsonArray("com.example.app.Service.repository (com.example.app.Repository)")));
+        assertEquals(List.of("Object java.util.ArrayList"), resolveSites(allocSites,
+                fields.getAsJsonArray("com.example.app.Repository.items (java.util.List)")));
+
+        JsonObject mainLocals = results.getAsJsonObject("locals").getAsJsonObject("com.example.app.Main.main");
+        JsonArray args = mainLocals.getAsJsonArray("args (java.lang.String[])");
+        assertEquals(List.of("Array java.lang.String[]"), resolveSites(allocSites, args));
+        assertEquals(args, results.getAsJsonObject("arrays").getAsJsonObject("com.example.app.Main.main.args")
+                .getAsJsonArray("pointsTo"));
+
+        // 每个分配点只出现一次
+        Set<String> distinct = new HashSet<>();
+        for (int site = 0; site < allocSites.size(); site++) {
+            JsonObject allocSite = allocSites.get(site).getAsJsonObject();
+            assertEquals(site, allocSite.get("id").getAsInt());
+            assertTrue(distinct.add(allocSite.toString().replaceFirst("\\{\"id\":\\d+,", "{")));
+        }
+
+        // 并行提取的结果与串行提取完全一致（SPARK已求解，只重新提取）
+        byte[] sequential = Files.readAllBytes(outputDir.resolve("points_to_analysis.json"));
+        analyzer.setPtaThreads(4);
+        analyzer.generatePointsToAnalysis();
+        assertArrayEquals(sequential, Files.readAllBytes(outputDir.resolve("points_to_analysis.json")));
+
+        // 查询模式只提取指定的方法和变量，并用 DemandCSPointsTo 细化
+        analyzer.setPointsToQueries(List.of(
+                "<com.example.app.Service: void process(java.lang.String)>:value",
+                "<com.example.app.Repository: void save(java.lang.String)>",
+                "<com.example.app.Missing: void m()>"));
+        analyzer.generatePointsToAnalysis();
+        JsonObject queried = JsonParser.parseString(Files.readString(outputDir.resolve("points_to_analysis.json")))
+                .getAsJsonObject();
+        JsonObject queriedLocals = queried.getAsJsonObject("locals");
+        assertEquals(Set.of("com.example.app.Service.process", "com.example.app.Repository.save"), queriedLocals.keySet());
+        assertEquals(Set.of("value (java.lang.String)"),
+                queriedLocals.getAsJsonObject("com.example.app.Service.process").keySet());
+        assertEquals(Set.of("this (com.example.app.Repository)", "item (java.lang.String)"),
+                queriedLocals.getAsJsonObject("com.example.app.Repository.save").keySet());
+        assertEquals(List.of("Object com.example.app.Repository"), resolveSites(queried.getAsJsonArray("allocSites"),
+                queriedLocals.getAsJsonObject("com.example.app.Repository.save").getAsJsonArray("this (com.example.app.Repository)")));
+        assertEquals(Set.of("com.example.app.Repository.items (java.util.List)"),
+                queried.getAsJsonObject("instanceFields").keySet());
+    }
+
+    private static List<String> resolveSites(JsonArray allocSites, JsonArray ids) {
+        List<String> sites = new ArrayList<>();
+        for (JsonElement id : ids) {
+            JsonObject allocSite = allocSites.get(id.getAsInt()).getAsJsonObject();
+            sites.add(allocSite.get("kind").getAsString() + " " + allocSite.get("type").getAsString());
+        }
+        return sites;
+    }
+
+    @Test
+    void testPointsToRequiresSpark() {
+        SootCodeAnalyzer analyzer = new SootCodeAnalyzer(tempDir.toString(), tempDir.resolve("output").toString());
+        analyzer.setGeneratePointsToAnalysis(true);
+        // CHA会关闭SPARK，RTA/VTA会使PAG退化，都不能用于指针分析
+        for (CallGraphGenerator.CallGraphAlgorithm algorithm : List.of(CallGraphGenerator.CallGraphAlgorithm.CHA,
+                CallGraphGenerator.CallGraphAlgorithm.RTA, CallGraphGenerator.CallGraphAlgorithm.VTA)) {
+            analyzer.setCallGraphAlgorithm(algorithm);
+            assertThrows(IllegalArgumentException.class, analyzer::analyze, algorithm.name());
+        }
+    }
+
+    @Test
+    void testSparkBudgetFallsBackToCha() throws IOException {
+        Path classesDir = TestProjects.compileSample(tempDir);
+        Path outputDir = tempDir.resolve("output");
+        SootCodeAnalyzer analyzer = new SootCodeAnalyzer(classesDir.toString(), outputDir.toString());
+        analyzer.setGenerateCallGraph(true);
+        analyzer.setGeneratePointsToAnalysis(true);
+        analyzer.setEntryPoints(List.of("com.example.app.Main:main"));
+        // 1 MB的堆内存预算使SPARK在传播开始时中止
+        analyzer.setSparkProfile(SparkProfile.builtin(SparkProfile.POINTS_TO).withBudget(0, 1));
+        analyzer.analyze();
+
+        // 调用图由CHA构建，指向关系不输出
+        Map<String, List<String>> callGraph = normalize(outputDir.resolve("call_graph.json"));
+        assertTrue(callGraph.containsKey("<com.example.app.Main: void main(java.lang.String[])>"), callGraph.keySet().toString());
+        assertFalse(Files.exists(outputDir.resolve("points_to_analysis.json")));
+    }
+
+    @Test
+    void testIncrementalIndexMatchesFullRun() throws IOException {
+        Path projectDir = tempDir.resolve("project");
+        Path sourceDir = TestProjects.writeSampleSources(projectDir);
+        Path classesDir = TestProjects.compile(sourceDir, projectDir.resolve("classes"));
+        Path incrementalOutput = tempDir.resolve("incremental");
+
+        // 第一次运行没有上次的结果，执行完整分析并保存类哈希清单
+        runIndex(classesDir, incrementalOutput, 1, true);
+        assertTrue(Files.exists(incrementalOutput.resolve("index/class_hashes.json")));
+
+        // 修改一个类、新增一个类、删除一个类
+        Path packageDir = sourceDir.resolve("com/example/app");
+        Files.writeString(packageDir.resolve("Repository.java"),
+                "package com.example.app;\n\n" +
+                "public class Repository {\n" +
+                "    private String last;\n\n" +
+                "    public void save(String item) {\n" +
+                "        last = item;\n" +
+                "        Audit.record(item);\n" +
+                "    }\n\n" +
+                "    public void save(byte[] data) {\n" +
+                "        save(new String(data));\n" +
+                "    }\n\n" +
+                "    public java.util.List<String> findAll() {\n" +
+                "        return java.util.Collections.singletonList(last);\n" +
+                "    }\n" +
+                "}\n");
+        Files.writeString(packageDir.resolve("Audit.java"),
+                "package com.example.app;\n\n" +
+                "public class Audit {\n" +
+                "    static int records;\n\n" +
+                "    static void record(String item) {\n" +
+                "        records++;\n" +
+                "    }\n" +
+                "}\n");
+        Files.delete(packageDir.resolve("Main.java"));
+        deleteRecursively(classesDir);
+        TestProjects.compile(sourceDir, classesDir);
+
+        Path fullOutput = tempDir.resolve("full");
+        runIndex(classesDir, incrementalOutput, 1, true);
+        runIndex(classesDir, fullOutput, 1, false);
+
+        for (String file : INDEX_FILES) {
+            assertEquals(normalize(fullOutput.resolve(file)), normalize(incrementalOutput.resolve(file)),
+                    "增量输出与完整分析不一致：" + file);
+        }
+
+        String definitions = Files.readString(incrementalOutput.resolve("index/method_definitions.json"));
+        assertFalse(definitions.contains("com.example.app.Main"));
+        assertTrue(definitions.contains("<com.example.app.Audit: void record(java.lang.String)>"));
+
+        // 不带 -c 的增量运行之后，输出目录中的调用图已经过期，再次带 -c 运行时应重新完整分析
+        Files.writeString(packageDir.resolve("Audit.java"),
+                "package com.example.app;\n\n" +
+                "public class Audit {\n" +
+                "    static int records;\n\n" +
+                "    static void record(String item) {\n" +
+                "        records += item.length();\n" +
+                "    }\n" +
+                "}\n");
+        deleteRecursively(classesDir);
+        TestProjects.compile(sourceDir, classesDir);
+        runIndex(classesDir, incrementalOutput, 1, true, false);
+        runIndex(classesDir, incrementalOutput, 1, true, true);
+        runIndex(classesDir, fullOutput, 1, false);
+        assertEquals(normalize(fullOutput.resolve("call_graph.json")), normalize(incrementalOutput.resolve("call_graph.json")));
+        assertTrue(Files.readString(incrementalOutput.resolve("call_graph.json")).contains("java.lang.String: int length()"));
+    }
+
+    @Test
+    void testIncrementalIndexFollowsOverrides() throws IOException {
+        Path sourceDir = tempDir.resolve("src/com/example/shop");
+        Files.createDirectories(sourceDir);
+        Files.writeString(sourceDir.resolve("Base.java"),
+                "package com.example.shop;\n\npublic class Base {\n    public void price() {}\n}\n");
+        Files.writeString(sourceDir.resolve("Item.java"),
+                "package com.example.shop;\n\npublic class Item extends Base {\n}\n");
+        Files.writeString(sourceDir.resolve("Cart.java"),
+                "package com.example.shop;\n\npublic class Cart {\n" +
+                "    void total(Item item) {\n        item.price();\n    }\n}\n");
+        Path classesDir = TestProjects.compile(tempDir.resolve("src"), tempDir.resolve("classes"));
+        Path incrementalOutput = tempDir.resolve("incremental");
+        runIndex(classesDir, incrementalOutput, 1, true);
+
+        // 只有Item变化：重写继承的方法后，未变化的Cart中的调用应解析到Item
+        Files.writeString(sourceDir.resolve("Item.java"),
+                "package com.example.shop;\n\npublic class Item extends Base {\n    public void price() {}\n}\n");
+        deleteRecursively(classesDir);
+        TestProjects.compile(tempDir.resolve("src"), classesDir);
+
+        Path fullOutput = tempDir.resolve("full");
+        runIndex(classesDir, incrementalOutput, 1, true);
+        runIndex(classesDir, fullOutput, 1, false);
+        for (String file : INDEX_FILES) {
+            assertEquals(normalize(fullOutput.resolve(file)), normalize(incrementalOutput.resolve(file)),
+                    "增量输出与完整分析不一致：" + file);
+        }
+        String invocations = Files.readString(incrementalOutput.resolve("index/method_invocations.json"));
+        assertTrue(invocations.contains("<com.example.shop.Item: void price()>"));
+        assertFalse(invocations.contains("<com.example.shop.Base: void price()>"));
+    }
+
+    @Test
+    void testBatchExtractMethodSources() throws IOException {
+        Path sourceDir = TestProjects.writeSampleSources(tempDir);
+        Path signaturesFile = tempDir.resolve("signatures.txt");
+        Files.writeString(signaturesFile,
+                "# 批量提取\n" +
+                "<com.example.app.Service: int count()>\n" +
+                "\n" +
+                "<com.example.app.Repository: java.util.List findAll()>\n" +
+                "<com.example.app.Repository: void missing()>\n");
+
+        Path outputDir = tempDir.resolve("out");
+        SootCodeAnalyzer analyzer = new SootCodeAnalyzer(tempDir.resolve("classes").toString(), outputDir.toString());
+        analyzer.setExtractMethodSource(true);
+        analyzer.setSignaturesFile(signaturesFile.toString());
+        analyzer.setSourcePath(sourceDir.toString());
+        analyzer.analyze();
+
+        Path methodSourceDir = outputDir.resolve("method_source");
+        try (var files = Files.list(methodSourceDir)) {
+            assertEquals(2, files.count());
+        }
+        assertTrue(Files.readString(methodSourceDir.resolve("com_example_app_Service__int_count__.java"))
+                .contains("repository.findAll().size()"));
+    }
+}
@@ -0,0 +1,66 @@
+package edu.thu.soot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SparkProfileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testLoadProperties() throws IOException {
+        Path file = tempDir.resolve("nightly.properties");
+        Files.writeString(file, "# 基于fast，限制时间和内存\n" +
+                "base=fast\n" +
+                "timeout-seconds=600\n" +
+                "max-heap-mb=4096\n" +
+                "set-impl=hybrid\n" +
+                "simplify-sccs=true\n");
+
+        SparkProfile profile = SparkProfile.resolve(file.toString());
+        assertEquals("nightly", profile.getName());
+        assertEquals("hybrid", profile.getOptions().get("set-impl"));
+        assertEquals("true", profile.getOptions().get("field-based"));
+        assertEquals("true", profile.getOptions().get("simplify-sccs"));
+        assertEquals(600, profile.getTimeoutSeconds());
+        assertEquals(4096, profile.getMaxHeapMb());
+        assertTrue(profile.newTransformer() instanceof BudgetedSparkTransformer);
+
+        // 命令行的预算覆盖文件中的值，负数保留原值
+        SparkProfile overridden = profile.withBudget(0, -1);
+        assertEquals(0, overridden.getTimeoutSeconds());
+        assertEquals(4096, overridden.getMaxHeapMb());
+
+        SparkProfile pointsTo = SparkProfile.resolve("PointsTo");
+        assertEquals(SparkProfile.POINTS_TO, pointsTo.getName());
+        assertEquals("true", pointsTo.getOptions().get("types-for-sites"));
+        assertFalse(pointsTo.hasBudget());
+
+        // precise 不合并分配点
+        SparkProfile precise = SparkProfile.resolve("precise");
+        assertEquals("false", precise.getOptions().get("types-for-sites"));
+        assertEquals("false", precise.getOptions().get("merge-stringbuffer"));
+        assertEquals("true", precise.getOptions().get("string-constants"));
+        assertEquals("false", precise.getOptions().get("field-based"));
+    }
+
+    @Test
+    void testRejectsUnknownOptions() throws IOException {
+        Path file = tempDir.resolve("bad.properties");
+        Files.writeString(file, "set-implementation=bit\n");
+        assertThrows(IllegalArgumentException.class, () -> SparkProfile.load(file));
+
+        Files.writeString(file, "base=slow\n");
+        assertThrows(IllegalArgumentException.class, () -> SparkProfile.load(file));
+
+        Files.writeString(file, "timeout-seconds=-5\n");
+        assertThrows(IllegalArgumentException.class, () -> SparkProfile.load(file));
+    }
+}
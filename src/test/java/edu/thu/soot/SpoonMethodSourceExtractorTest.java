@@ -3,6 +3,7 @@ package edu.thu.soot;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import spoon.Launcher;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -149,6 +150,146 @@ class SpoonMethodSourceExtractorTest {
         assertTrue(testMethodContent.contains("testMethod"));
         assertTrue(addMethodContent.contains("add(int a, int b)"));
     }
-}
 
+    @Test
+    void testForSourceRootReusesModel() {
+        SpoonMethodSourceExtractor cached = SpoonMethodSourceExtractor.forSourceRoot(testSourcePath);
+        assertSame(cached, SpoonMethodSourceExtractor.forSourceRoot(testSourcePath + "/."));
+        assertTrue(cached.getMethodSource("<com.example.TestClass: int add(int,int)>").contains("return a + b"));
+
+        SpoonMethodSourceExtractor.evict(testSourcePath);
+        assertNotSame(cached, SpoonMethodSourceExtractor.forSourceRoot(testSourcePath));
+        SpoonMethodSourceExtractor.evict(testSourcePath);
+    }
+
+    @Test
+    void testExtractParsesOnlyTheClassFile() throws IOException {
+        SpoonMethodSourceExtractor.MethodSource method = extractor.extract("<com.example.TestClass: int add(int,int)>");
+        assertTrue(method.getSource().contains("return a + b"));
+        assertEquals(15, method.getStartLine());
+        assertEquals(17, method.getEndLine());
+        assertTrue(method.getSourceFile().endsWith("TestClass.java"));
+        assertFalse(extractor.isFullModelBuilt());
+
+        // 与文件名不对应的类无法按类名定位，回退到完整模型
+        Files.writeString(Paths.get(testSourcePath, "com", "example", "Util.java"),
+                "package com.example;\n\n" +
+                "public class Util {\n" +
+                "}\n\n" +
+                "class Hidden {\n" +
+                "    int value() {\n" +
+                "        return 42;\n" +
+                "    }\n" +
+                "}\n");
+        assertTrue(extractor.getMethodSource("<com.example.Hidden: int value()>").contains("return 42"));
+        assertTrue(extractor.isFullModelBuilt());
+    }
+
+    @Test
+    void testOverloadsResolvedByParameterTypes() throws IOException {
+        Files.writeString(Paths.get(testSourcePath, "com", "example", "Calculator.java"),
+                "package com.example;\n\n" +
+                "public class Calculator {\n" +
+                "    public int sum(int a, int b) {\n" +
+                "        return a + b;\n" +
+                "    }\n\n" +
+                "    public int sum(java.util.List<Integer> values) {\n" +
+                "        return values.stream().mapToInt(Integer::intValue).sum();\n" +
+                "    }\n" +
+                "}\n");
+
+        assertTrue(extractor.getMethodSource("<com.example.Calculator: int sum(int,int)>").contains("return a + b"));
+        assertTrue(extractor.getMethodSource("<com.example.Calculator: int sum(java.util.List)>").contains("values.stream()"));
+        assertThrows(IllegalArgumentException.class,
+                () -> extractor.getMethodSource("<com.example.Calculator: int sum(long)>"));
+    }
+
+    @Test
+    void testMismatchedParametersDoNotFallBack() {
+        Launcher launcher = new Launcher();
+        launcher.addInputResource(testSourcePath);
+        launcher.getEnvironment().setNoClasspath(true);
+        launcher.buildModel();
+        MethodSignatureIndex index = new MethodSignatureIndex(launcher.getFactory());
+
+        // 只有 add(int,int) 一个同名方法，参数明确不匹配时不能退回到它
+        assertNull(index.find(MethodSignatureIndex.Signature.parse("<com.example.TestClass: int add(long)>")));
+        assertNull(index.find(MethodSignatureIndex.Signature.parse("<com.example.TestClass: int add()>")));
+        assertThrows(IllegalArgumentException.class,
+                () -> extractor.getMethodSource("<com.example.TestClass: int add(long)>"));
+
+        // 没有参数列表的签名仍按方法名和返回类型查找唯一的声明
+        assertNotNull(index.find(MethodSignatureIndex.Signature.parse("com.example.TestClass: int add")));
+    }
 
+    @Test
+    void testCanonicalSignatureResolution() throws IOException {
+        Files.writeString(Paths.get(testSourcePath, "com", "example", "Overloads.java"),
+                "package com.example;\n\n" +
+                "import java.util.List;\n\n" +
+                "public class Overloads<T extends Number> {\n" +
+                "    static int counter;\n\n" +
+                "    static {\n" +
+                "        counter = 1;\n" +
+                "    }\n\n" +
+                "    public Overloads() {\n" +
+                "        this(0);\n" +
+                "    }\n\n" +
+                "    public Overloads(int start) {\n" +
+                "        counter = start;\n" +
+                "    }\n\n" +
+                "    void process(String value) {\n" +
+                "        System.out.println(\"string\");\n" +
+                "    }\n\n" +
+                "    static {\n" +
+                "        counter += 2;\n" +
+                "    }\n\n" +
+                "    void process(byte[] value) {\n" +
+                "        System.out.println(\"bytes\");\n" +
+                "    }\n\n" +
+                "    void process(String... values) {\n" +
+                "        System.out.println(\"varargs\");\n" +
+                "    }\n\n" +
+                "    void process(List<String> values) {\n" +
+                "        System.out.println(\"list\");\n" +
+                "    }\n\n" +
+                "    T first(T[][] values) {\n" +
+                "        return values[0][0];\n" +
+                "    }\n\n" +
+                "    class Inner {\n" +
+                "        Inner(String name) {\n" +
+                "            System.out.println(\"inner \" + name);\n" +
+                "        }\n\n" +
+                "        void process(Inner other) {\n" +
+                "            System.out.println(\"inner process\");\n" +
+                "        }\n" +
+                "    }\n" +
+                "}\n");
+
+        String type = "com.example.Overloads";
+        assertTrue(extractor.getMethodSource("<" + type + ": void process(java.lang.String)>").contains("\"string\""));
+        assertTrue(extractor.getMethodSource("<" + type + ": void process(byte[])>").contains("\"bytes\""));
+        assertTrue(extractor.getMethodSource("<" + type + ": void process(java.lang.String[])>").contains("\"varargs\""));
+        assertTrue(extractor.getMethodSource(type + ": void process(java.lang.String...)").contains("\"varargs\""));
+        assertTrue(extractor.getMethodSource("<" + type + ": void process(java.util.List)>").contains("\"list\""));
+        assertTrue(extractor.getMethodSource(type + ": void process(java.util.List<java.lang.String>)").contains("\"list\""));
+        assertTrue(extractor.getMethodSource("<" + type + ": java.lang.Number first(java.lang.Number[][])>").contains("values[0][0]"));
+
+        // 构造函数和静态初始化块
+        assertTrue(extractor.getMethodSource("<" + type + ": void <init>()>").contains("this(0)"));
+        assertTrue(extractor.getMethodSource("<" + type + ": void <init>(int)>").contains("counter = start"));
+        // 字节码中的<clinit>包含所有静态初始化块
+        SpoonMethodSourceExtractor.MethodSource clinit = extractor.extract("<" + type + ": void <clinit>()>");
+        assertTrue(clinit.getSource().contains("counter = 1"));
+        assertTrue(clinit.getSource().contains("counter += 2"));
+        assertTrue(clinit.getEndLine() - clinit.getStartLine() > 10);
+
+        // 内部类：字节码中的构造函数带有外部类实例参数
+        String inner = type + "$Inner";
+        assertTrue(extractor.getMethodSource("<" + inner + ": void <init>(com.example.Overloads,java.lang.String)>").contains("\"inner \""));
+        assertTrue(extractor.getMethodSource("<" + inner + ": void process(com.example.Overloads$Inner)>").contains("inner process"));
+
+        assertThrows(IllegalArgumentException.class, () -> extractor.getMethod("<" + type + ": void <init>(int)>"));
+        assertFalse(extractor.isFullModelBuilt());
+    }
+}
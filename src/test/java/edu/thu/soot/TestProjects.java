@@ -0,0 +1,189 @@
+package edu.thu.soot;
+
+import soot.G;
+import soot.Scene;
+import soot.options.Options;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 测试用的示例项目：写出源码并编译为class文件，供Soot分析
+ */
+final class TestProjects {
+
+    /** Shapes 示例的入口点 */
+    static final String SHAPES_ENTRY_POINT = "d.Shapes:main";
+
+    /**
+     * 调用图算法的示例：接口的三个实现中 Unused 从未在入口点可达的代码中实例化，
+     * measure 只以 Square 调用，lambda 经由库接口 Runnable 调用 level1 → level2 → level3
+     */
+    private static final String SHAPES_SOURCE =
+            "package d;\n\n" +
+            "public class Shapes {\n" +
+            "    interface Shape { int area(); }\n" +
+            "    static class Square implements Shape { public int area() { return helper(); } int helper() { return 4; } }\n" +
+            "    static class Circle implements Shape { public int area() { return 3; } }\n" +
+            "    static class Unused implements Shape { public int area() { return 0; } }\n\n" +
+            "    static int measure(Shape shape) { return shape.area(); }\n\n" +
+            "    static int level1() { return level2(); }\n" +
+            "    static int level2() { return level3(); }\n" +
+            "    static int level3() { return 1; }\n\n" +
+            "    public static int main(String[] args) {\n" +
+            "        measure(new Square());\n" +
+            "        Shape s = args.length > 0 ? new Square() : new Circle();\n" +
+            "        Runnable r = () -> level1();\n" +
+            "        r.run();\n" +
+            "        return s.area();\n" +
+            "    }\n\n" +
+            "    public static void other() { new Unused().area(); }\n" +
+            "}\n";
+
+    private TestProjects() {
+    }
+
+    /**
+     * 写出示例项目源码
+     *
+     * @param root 项目根目录
+     * @return 源码目录
+     */
+    static Path writeSampleSources(Path root) throws IOException {
+        Path sourceDir = root.resolve("src");
+        Path packageDir = sourceDir.resolve("com/example/app");
+        Files.createDirectories(packageDir);
+
+        Files.writeString(packageDir.resolve("Repository.java"),
+                "package com.example.app;\n\n" +
+                "import java.util.ArrayList;\n" +
+                "import java.util.List;\n\n" +
+                "public class Repository {\n" +
+                "    private final List<String> items = new ArrayList<>();\n" +
+                "    static int instances;\n\n" +
+                "    public Repository() {\n" +
+                "        instances++;\n" +
+                "    }\n\n" +
+                "    public void save(String item) {\n" +
+                "        items.add(item);\n" +
+                "    }\n\n" +
+                "    public void save(byte[] data) {\n" +
+                "        save(new String(data));\n" +
+                "    }\n\n" +
+                "    public List<String> findAll() {\n" +
+                "        return items;\n" +
+                "    }\n" +
+                "}\n");
+
+        Files.writeString(packageDir.resolve("Service.java"),
+                "package com.example.app;\n\n" +
+                "public class Service {\n" +
+                "    private Repository repository = new Repository();\n" +
+                "    private Listener listener = new Listener();\n\n" +
+                "    public void process(String value) {\n" +
+                "        repository.save(value);\n" +
+                "        listener.onSaved(value);\n" +
+                "    }\n\n" +
+                "    public void process(byte[] value) {\n" +
+                "        repository.save(value);\n" +
+                "    }\n\n" +
+                "    public int count() {\n" +
+                "        return repository.findAll().size();\n" +
+                "    }\n\n" +
+                "    class Listener {\n" +
+                "        int saved;\n\n" +
+                "        void onSaved(String value) {\n" +
+                "            saved++;\n" +
+                "        }\n" +
+                "    }\n" +
+                "}\n");
+
+        Files.writeString(packageDir.resolve("Main.java"),
+                "package com.example.app;\n\n" +
+                "public class Main {\n" +
+                "    public static void main(String[] args) {\n" +
+                "        Service service = new Service();\n" +
+                "        for (String arg : args) {\n" +
+                "            service.process(arg);\n" +
+                "        }\n" +
+                "        System.out.println(service.count());\n" +
+                "    }\n" +
+                "}\n");
+
+        return sourceDir;
+    }
+
+    /**
+     * 写出并编译示例项目
+     *
+     * @param root 项目根目录
+     * @return class文件目录
+     */
+    static Path compileSample(Path root) throws IOException {
+        return compile(writeSampleSources(root), root.resolve("classes"));
+    }
+
+    /**
+     * 写出并编译 Shapes 示例
+     *
+     * @param root 项目根目录
+     * @return class文件目录
+     */
+    static Path compileShapes(Path root) throws IOException {
+        Path sourceDir = root.resolve("shapes-src");
+        Path sourceFile = sourceDir.resolve("d/Shapes.java");
+        Files.createDirectories(sourceFile.getParent());
+        Files.writeString(sourceFile, SHAPES_SOURCE);
+        return compile(sourceDir, root.resolve("shapes-classes"));
+    }
+
+    /**
+     * 重置Soot并以whole-program模式加载class目录，JDK类只作为没有方法体的库类
+     */
+    static void loadWholeProgram(Path classesDir) {
+        G.reset();
+        Options.v().set_prepend_classpath(true);
+        Options.v().set_allow_phantom_refs(true);
+        Options.v().set_whole_program(true);
+        Options.v().set_output_format(Options.output_format_none);
+        Options.v().set_process_dir(Collections.singletonList(classesDir.toString()));
+        Options.v().set_exclude(List.of("java.*", "javax.*", "sun.*", "jdk.*"));
+        Options.v().set_no_bodies_for_excluded(true);
+        Scene.v().loadNecessaryClasses();
+    }
+
+    /**
+     * 编译源码目录下的所有Java文件（保留调试信息）
+     */
+    static Path compile(Path sourceDir, Path classesDir) throws IOException {
+        Files.createDirectories(classesDir);
+
+        List<String> sourceFiles;
+        try (Stream<Path> paths = Files.walk(sourceDir)) {
+            sourceFiles = paths.filter(p -> p.toString().endsWith(".java"))
+                    .map(Path::toString)
+                    .collect(Collectors.toList());
+        }
+
+        List<String> args = new ArrayList<>();
+        args.add("-g");
+        args.add("-d");
+        args.add(classesDir.toString());
+        args.addAll(sourceFiles);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int result = compiler.run(null, null, null, args.toArray(new String[0]));
+        if (result != 0) {
+            throw new IllegalStateException("编译示例项目失败：" + sourceDir);
+        }
+        return classesDir;
+    }
+}